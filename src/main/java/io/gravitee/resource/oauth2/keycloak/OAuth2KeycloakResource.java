@@ -21,36 +21,77 @@ import com.fasterxml.jackson.databind.node.ObjectNode;
 import io.gravitee.common.http.HttpHeaders;
 import io.gravitee.common.http.HttpStatusCode;
 import io.gravitee.common.http.MediaType;
-import io.gravitee.common.utils.UUID;
 import io.gravitee.gateway.api.handler.Handler;
 import io.gravitee.node.api.Node;
+import io.gravitee.node.api.cache.CacheConfiguration;
+import io.gravitee.node.api.cache.CacheManager;
 import io.gravitee.node.api.utils.NodeUtils;
 import io.gravitee.resource.oauth2.api.OAuth2Resource;
 import io.gravitee.resource.oauth2.api.OAuth2ResourceMetadata;
 import io.gravitee.resource.oauth2.api.OAuth2Response;
 import io.gravitee.resource.oauth2.api.openid.UserInfoResponse;
+import io.gravitee.resource.oauth2.keycloak.cache.ClusteredTokenCache;
+import io.gravitee.resource.oauth2.keycloak.cache.RejectedTokenFilter;
+import io.gravitee.resource.oauth2.keycloak.cache.TokenCache;
+import io.gravitee.resource.oauth2.keycloak.cache.TokenHash;
+import io.gravitee.resource.oauth2.keycloak.client.CircuitBreaker;
+import io.gravitee.resource.oauth2.keycloak.client.ConcurrencyLimiter;
+import io.gravitee.resource.oauth2.keycloak.client.FormBodies;
+import io.gravitee.resource.oauth2.keycloak.client.HedgingPolicy;
+import io.gravitee.resource.oauth2.keycloak.client.KeycloakEndpoints;
+import io.gravitee.resource.oauth2.keycloak.client.IntrospectionResult;
+import io.gravitee.resource.oauth2.keycloak.client.RequestIds;
+import io.gravitee.resource.oauth2.keycloak.client.SingleFlight;
 import io.gravitee.resource.oauth2.keycloak.configuration.OAuth2KeycloakResourceConfiguration;
-import io.vertx.core.AsyncResult;
+import io.gravitee.resource.oauth2.keycloak.configuration.TokenValidationMode;
+import io.gravitee.resource.oauth2.keycloak.jwks.JwksKeyStore;
+import io.gravitee.resource.oauth2.keycloak.jwt.ClaimProjection;
+import io.gravitee.resource.oauth2.keycloak.jwt.JsonWebTokens;
+import io.gravitee.resource.oauth2.keycloak.jwt.JwtVerifier;
+import io.gravitee.resource.oauth2.keycloak.jwt.TokenClaims;
+import io.gravitee.resource.oauth2.keycloak.metrics.ResourceMetrics;
+import io.gravitee.resource.oauth2.keycloak.metrics.ResourceMetrics.FastRejection;
+import io.gravitee.resource.oauth2.keycloak.metrics.ResourceMetrics.IntrospectionOutcome;
+import io.gravitee.resource.oauth2.keycloak.metrics.ResourceMetrics.UserInfoOutcome;
+import io.gravitee.resource.oauth2.keycloak.metrics.ResourceMetrics.Validation;
+import io.gravitee.resource.oauth2.keycloak.revocation.RevocationList;
+import io.gravitee.resource.oauth2.keycloak.revocation.TokenIdentity;
+import io.gravitee.resource.oauth2.keycloak.shared.SharedResources;
+import io.gravitee.resource.oauth2.keycloak.tracing.ResourceSpan;
+import io.gravitee.resource.oauth2.keycloak.tracing.ResourceTracer;
+import io.gravitee.resource.oauth2.keycloak.tracing.SpanExporter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
 import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
 import io.vertx.core.http.*;
+import io.vertx.core.json.JsonObject;
+import io.vertx.micrometer.backends.BackendRegistries;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Base64;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import lombok.AccessLevel;
+import lombok.Getter;
 import lombok.Setter;
 import org.keycloak.adapters.KeycloakDeployment;
 import org.keycloak.adapters.KeycloakDeploymentBuilder;
-import org.keycloak.adapters.rotation.AdapterTokenVerifier;
 import org.keycloak.common.VerificationException;
-import org.keycloak.representations.AccessToken;
 import org.keycloak.representations.adapters.config.AdapterConfig;
-import org.keycloak.util.JsonSerialization;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.BeansException;
@@ -67,6 +108,7 @@ public class OAuth2KeycloakResource extends OAuth2Resource<OAuth2KeycloakResourc
 
     private static final String KEYCLOAK_INTROSPECTION_ENDPOINT = "/protocol/openid-connect/token/introspect";
     private static final String KEYCLOAK_USERINFO_ENDPOINT = "/protocol/openid-connect/userinfo";
+    private static final String KEYCLOAK_CERTS_ENDPOINT = "/protocol/openid-connect/certs";
 
     private static final String HTTPS_SCHEME = "https";
 
@@ -74,10 +116,50 @@ public class OAuth2KeycloakResource extends OAuth2Resource<OAuth2KeycloakResourc
     private static final String AUTHORIZATION_HEADER_BEARER_SCHEME = "Bearer ";
     private static final char AUTHORIZATION_HEADER_VALUE_BASE64_SEPARATOR = ':';
 
+    private static final String REQUEST_ID_HEADER = "X-Gravitee-Request-Id";
+
+    private static final String ACCESS_DENIED_PAYLOAD = "{\"error\": \"access_denied\"}";
+    private static final String CIRCUIT_OPEN_MESSAGE = "Keycloak circuit is open";
+    private static final String CONCURRENCY_LIMIT_MESSAGE = "Keycloak concurrency limit reached";
+
+    private static final int HYBRID_TRACKED_TOKENS_MAX_SIZE = 10_000;
+    private static final long REALM_URLS_RETRY_MIN_DELAY = 1000;
+    private static final long REALM_URLS_RETRY_MAX_DELAY = 60_000;
+    private static final int CLUSTER_CACHE_MAX_PENDING_WRITES = 10_000;
+
+    private static final String INTROSPECT_SPAN = "keycloak.introspect";
+    private static final String USERINFO_SPAN = "keycloak.userinfo";
+    private static final String REVALIDATE_SPAN = "keycloak.revalidate";
+    private static final String VERIFY_SPAN = "keycloak.verify";
+    private static final String INTROSPECTION_REQUEST_SPAN = "keycloak.http.introspection";
+    private static final String USERINFO_REQUEST_SPAN = "keycloak.http.userinfo";
+    private static final String MODE_ATTRIBUTE = "keycloak.validation.mode";
+    private static final String VALIDATION_ATTRIBUTE = "keycloak.validation";
+    private static final String OUTCOME_ATTRIBUTE = "keycloak.outcome";
+    private static final String CACHE_HIT_ATTRIBUTE = "keycloak.cache.hit";
+    private static final String REQUEST_ID_ATTRIBUTE = "keycloak.request.id";
+    private static final String STATUS_ATTRIBUTE = "http.response.status_code";
+    private static final String STALE_ATTRIBUTE = "keycloak.stale";
+    private static final String SERVER_ATTRIBUTE = "server.address";
+    private static final String HEDGE_ATTRIBUTE = "keycloak.hedge";
+    private static final String FAST_REJECTION_ATTRIBUTE = "keycloak.fast.rejection";
+
+    // Claims of the userinfo response built from an access token (OpenID Connect profile and email scopes)
+    private static final List<String> USERINFO_CLAIMS = List.of(
+        "sub",
+        "name",
+        "given_name",
+        "family_name",
+        "preferred_username",
+        "email",
+        "email_verified"
+    );
+
     private ApplicationContext applicationContext;
 
-    private final Map<Thread, HttpClient> httpClients = new ConcurrentHashMap<>();
+    private HttpClient httpClient;
 
+    @Getter(AccessLevel.PACKAGE)
     private HttpClientOptions httpClientOptions;
 
     private Vertx vertx;
@@ -86,26 +168,90 @@ public class OAuth2KeycloakResource extends OAuth2Resource<OAuth2KeycloakResourc
     private String introspectionEndpointAuthorization;
     private String userInfoEndpointURI;
 
+    // Immutable once the resource is started: only the per-call headers are added to each request
+    private KeycloakEndpoints keycloakEndpoints;
+    // Request options of each Keycloak node, by endpoint index
+    private RequestOptions[] introspectionRequestOptions;
+    private RequestOptions[] userInfoRequestOptions;
+    private RequestOptions[] healthCheckRequestOptions;
+    private long healthCheckTimerId = -1;
+    private final RequestIds requestIds = new RequestIds();
+
     private static final ObjectMapper MAPPER = new ObjectMapper();
 
     @Setter(AccessLevel.PACKAGE)
     private String realmUrl;
 
     private KeycloakDeployment keycloakDeployment;
+    private TokenValidationMode validationMode;
     private boolean checkTokenLocally;
+    private JwksKeyStore jwksKeyStore;
+    private Future<Void> deploymentReady;
+    // Resolved on a worker thread: the adapter resolves it with a blocking call otherwise
+    private volatile String realmInfoUrl;
+    private long realmUrlsRetryDelay;
+    private long realmUrlsRetryTimerId = -1;
+    private volatile boolean stopped;
+    private JwtVerifier jwtVerifier;
+    private ClaimProjection claimProjection = ClaimProjection.disabled();
 
     private String userAgent;
 
+    private TokenCache<CachedIntrospection> introspectionCache;
+    private TokenCache<JwtVerifier.VerifiedToken> verifiedTokenCache;
+    private TokenCache<UserInfoResponse> userInfoCache;
+    private List<String> userInfoClaims;
+
+    // Cluster tier of the introspection and userinfo caches, when shared across the gateway nodes
+    private ClusteredTokenCache<CachedIntrospection> clusteredIntrospectionCache;
+    private ClusteredTokenCache<UserInfoResponse> clusteredUserInfoCache;
+
+    // Hybrid mode: tokens found inactive by a background revalidation, and the next revalidation of the other ones
+    private TokenCache<Boolean> deniedTokens;
+    private TokenCache<Boolean> revalidatedTokens;
+    private long revalidationInterval;
+
+    private final SingleFlight<OAuth2Response> introspectionFlights = new SingleFlight<>();
+    private final SingleFlight<UserInfoResponse> userInfoFlights = new SingleFlight<>();
+
+    private CircuitBreaker circuitBreaker = CircuitBreaker.disabled();
+    private ConcurrencyLimiter concurrencyLimiter = ConcurrencyLimiter.disabled();
+    private HedgingPolicy hedgingPolicy = HedgingPolicy.disabled();
+    private TokenCache<CachedIntrospection> knownGoodResults;
+    private RejectedTokenFilter rejectedTokenFilter;
+    private RevocationList revocations;
+
+    private SharedResources sharedResources;
+    private final List<SharedResources.Lease<?>> leases = new ArrayList<>();
+    private Runnable keysChangedListener;
+
+    private ResourceMetrics metrics = ResourceMetrics.disabled();
+    private ResourceTracer tracer = ResourceTracer.disabled();
+    private String validationModeName;
+
     @Override
     protected void doStart() throws Exception {
         super.doStart();
 
         logger.info("Starting a Keycloak Adapter resource");
 
-        checkTokenLocally = configuration().isValidateTokenLocally();
+        validationMode = configuration().getValidationMode();
+        if (validationMode == null) {
+            validationMode = configuration().isValidateTokenLocally() ? TokenValidationMode.LOCAL : TokenValidationMode.REMOTE;
+        }
+        checkTokenLocally = validationMode != TokenValidationMode.REMOTE;
+        validationModeName = validationMode.name().toLowerCase(Locale.ROOT);
         InputStream configStream = new ByteArrayInputStream(configuration().getKeycloakConfiguration().getBytes(StandardCharsets.UTF_8));
         AdapterConfig adapterConfig = KeycloakDeploymentBuilder.loadAdapterConfig(configStream);
         keycloakDeployment = KeycloakDeploymentBuilder.build(adapterConfig);
+        claimProjection = ClaimProjection.of(projectedClaims());
+        jwtVerifier =
+            new JwtVerifier(
+                kid -> keycloakDeployment.getPublicKeyLocator().getPublicKey(kid, keycloakDeployment),
+                () -> realmInfoUrl,
+                keycloakDeployment.isVerifyTokenAudience() ? keycloakDeployment.getResourceName() : null,
+                claimProjection
+            );
 
         realmUrl = adapterConfig.getAuthServerUrl() + "/realms/" + adapterConfig.getRealm();
 
@@ -119,10 +265,47 @@ public class OAuth2KeycloakResource extends OAuth2Resource<OAuth2KeycloakResourc
         httpClientOptions = new HttpClientOptions().setDefaultPort(authorizationServerPort).setDefaultHost(authorizationServerHost);
 
         // Use SSL connection if authorization schema is set to HTTPS
-        if (HTTPS_SCHEME.equalsIgnoreCase(introspectionUri.getScheme())) {
+        final boolean ssl = HTTPS_SCHEME.equalsIgnoreCase(introspectionUri.getScheme());
+        if (ssl) {
             httpClientOptions.setSsl(true).setVerifyHost(configuration().isVerifyHost()).setTrustAll(configuration().isTrustAll());
         }
 
+        // Multiplex calls over a few HTTP/2 connections: negotiated with ALPN over TLS, or h2c upgrade in clear text
+        if (configuration().isHttp2Enabled()) {
+            httpClientOptions.setProtocolVersion(HttpVersion.HTTP_2);
+            if (ssl) {
+                httpClientOptions.setUseAlpn(true);
+            } else {
+                httpClientOptions.setHttp2ClearTextUpgrade(true).setHttp2ClearTextUpgradeWithPreflightRequest(true);
+            }
+            if (configuration().getHttp2MaxConcurrentStreams() > 0) {
+                httpClientOptions.setHttp2MultiplexingLimit(configuration().getHttp2MaxConcurrentStreams());
+            }
+            if (configuration().getHttp2MaxPoolSize() > 0) {
+                httpClientOptions.setHttp2MaxPoolSize(configuration().getHttp2MaxPoolSize());
+            }
+        }
+
+        // Connection pool shared by all the calls made by this resource
+        httpClientOptions.setKeepAlive(configuration().isKeepAlive());
+        if (configuration().getKeepAliveTimeout() > 0) {
+            httpClientOptions
+                .setKeepAliveTimeout(configuration().getKeepAliveTimeout())
+                .setHttp2KeepAliveTimeout(configuration().getKeepAliveTimeout());
+        }
+        if (configuration().getIdleTimeout() > 0) {
+            httpClientOptions.setIdleTimeout(configuration().getIdleTimeout()).setIdleTimeoutUnit(TimeUnit.SECONDS);
+        }
+        if (configuration().getMaxPoolSize() > 0) {
+            httpClientOptions.setMaxPoolSize(configuration().getMaxPoolSize());
+        }
+        if (configuration().getMaxWaitQueueSize() != 0) {
+            httpClientOptions.setMaxWaitQueueSize(configuration().getMaxWaitQueueSize());
+        }
+        if (configuration().getConnectTimeout() > 0) {
+            httpClientOptions.setConnectTimeout(configuration().getConnectTimeout());
+        }
+
         introspectionEndpointAuthorization =
             AUTHORIZATION_HEADER_BASIC_SCHEME +
             Base64.getEncoder().encodeToString(
@@ -137,200 +320,1396 @@ public class OAuth2KeycloakResource extends OAuth2Resource<OAuth2KeycloakResourc
         // Prepare introspection endpoint calls
         introspectionEndpointURI = introspectionUri.getPath() + KEYCLOAK_INTROSPECTION_ENDPOINT;
         userAgent = NodeUtils.userAgent(applicationContext.getBean(Node.class));
+
+        final RequestOptions introspectionRequest = new RequestOptions()
+            .setMethod(HttpMethod.POST)
+            .setURI(introspectionEndpointURI)
+            .putHeader(HttpHeaders.USER_AGENT, userAgent)
+            .putHeader(HttpHeaders.AUTHORIZATION, introspectionEndpointAuthorization)
+            .putHeader(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON)
+            .putHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_FORM_URLENCODED);
+        final RequestOptions userInfoRequest = new RequestOptions()
+            .setMethod(HttpMethod.GET)
+            .setURI(userInfoEndpointURI)
+            .putHeader(HttpHeaders.USER_AGENT, userAgent)
+            .putHeader(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON);
+        final RequestOptions healthCheckRequest = new RequestOptions()
+            .setMethod(HttpMethod.GET)
+            .setURI(introspectionUri.getPath())
+            .putHeader(HttpHeaders.USER_AGENT, userAgent)
+            .putHeader(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON);
+        if (configuration().getRequestTimeout() > 0) {
+            introspectionRequest.setTimeout(configuration().getRequestTimeout());
+            userInfoRequest.setTimeout(configuration().getRequestTimeout());
+            healthCheckRequest.setTimeout(configuration().getRequestTimeout());
+        }
+
+        // Spread the calls across the Keycloak nodes, if several are configured
+        keycloakEndpoints =
+            new KeycloakEndpoints(
+                keycloakEndpointUris(introspectionUri),
+                configuration().getOutlierFailureThreshold(),
+                TimeUnit.SECONDS.toMillis(configuration().getOutlierEjectionTime())
+            );
+        introspectionRequestOptions = new RequestOptions[keycloakEndpoints.size()];
+        userInfoRequestOptions = new RequestOptions[keycloakEndpoints.size()];
+        healthCheckRequestOptions = new RequestOptions[keycloakEndpoints.size()];
+        for (KeycloakEndpoints.Endpoint endpoint : keycloakEndpoints.all()) {
+            introspectionRequestOptions[endpoint.index()] = targeting(introspectionRequest, endpoint);
+            userInfoRequestOptions[endpoint.index()] = targeting(userInfoRequest, endpoint);
+            healthCheckRequestOptions[endpoint.index()] = targeting(healthCheckRequest, endpoint);
+        }
+
+        // Stop calling Keycloak while it is unhealthy
+        if (configuration().isCircuitBreakerEnabled()) {
+            circuitBreaker =
+                new CircuitBreaker(
+                    configuration().getCircuitBreakerFailureThreshold(),
+                    TimeUnit.SECONDS.toMillis(configuration().getCircuitBreakerResetTimeout())
+                );
+        }
         vertx = applicationContext.getBean(Vertx.class);
+
+        // Protect Keycloak from traffic spikes
+        if (configuration().isConcurrencyLimitEnabled()) {
+            concurrencyLimiter =
+                new ConcurrencyLimiter(
+                    vertx,
+                    configuration().getConcurrencyLimitInitial(),
+                    configuration().getConcurrencyLimitMax(),
+                    configuration().getConcurrencyLimitQueueSize(),
+                    configuration().getConcurrencyLimitQueueTimeout(),
+                    configuration().getConcurrencyLimitLatencyThreshold()
+                );
+        }
+        // Cut the introspection tail latency with a second call when the first one is slow
+        if (configuration().isHedgingEnabled()) {
+            hedgingPolicy = new HedgingPolicy(configuration().getHedgingDelay(), configuration().getHedgingBudget() / 100.0);
+        }
+        final MeterRegistry meterRegistry = meterRegistry();
+        if (meterRegistry != null) {
+            metrics =
+                new ResourceMetrics(
+                    meterRegistry,
+                    Objects.requireNonNullElse(adapterConfig.getRealm(), ""),
+                    Objects.requireNonNullElse(adapterConfig.getResource(), "")
+                );
+        }
+
+        if (concurrencyLimiter != ConcurrencyLimiter.disabled()) {
+            metrics.concurrencyLimiter(concurrencyLimiter);
+        }
+
+        if (configuration().isTracingEnabled()) {
+            tracer = new ResourceTracer(gatewayTracer(), spanExporter());
+        }
+
+        // Resources declared with the same Keycloak settings share their connection pool, realm keys and caches
+        sharedResources = configuration().isSharedClients() ? SharedResources.of(vertx) : new SharedResources();
+        final String settingsKey = SharedResources.key(adapterConfig, httpClientOptions.toJson().encode());
+        // The caches of token payloads are only shared by the resources passing the same claims to the policies
+        final String payloadKey = settingsKey + "/" + SharedResources.key(projectedClaims());
+
+        httpClient =
+            shared(
+                settingsKey + "/http-client",
+                () -> {
+                    final HttpClient client = vertx.createHttpClient(httpClientOptions);
+                    if (metrics.isEnabled()) {
+                        client.connectionHandler(metrics::connectionOpened);
+                    }
+                    return client;
+                },
+                this::close
+            );
+
+        if (keycloakEndpoints.size() > 1 && configuration().getHealthCheckInterval() > 0) {
+            healthCheckTimerId =
+                vertx.setPeriodic(TimeUnit.SECONDS.toMillis(configuration().getHealthCheckInterval()), timerId -> checkHealth());
+        }
+
+        if (checkTokenLocally) {
+            resolveRealmUrls();
+        }
+
+        if (checkTokenLocally && configuration().isVerifiedTokenCacheEnabled()) {
+            verifiedTokenCache = sharedCache(payloadKey + "/verified-tokens", configuration().getVerifiedTokenCacheMaxSize(), 0);
+        }
+
+        // Serve realm keys from memory, unless a realm public key is hardcoded in the adapter configuration
+        if (checkTokenLocally && adapterConfig.getRealmKey() == null) {
+            jwksKeyStore =
+                shared(
+                    settingsKey + "/jwks",
+                    () -> {
+                        final JwksKeyStore keyStore = new JwksKeyStore(
+                            vertx,
+                            httpClient,
+                            new RequestOptions()
+                                .setMethod(HttpMethod.GET)
+                                .setURI(introspectionUri.getPath() + KEYCLOAK_CERTS_ENDPOINT)
+                                .putHeader(HttpHeaders.USER_AGENT, userAgent)
+                                .putHeader(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON),
+                            keycloakDeployment.getMinTimeBetweenJwksRequests(),
+                            keycloakDeployment.getPublicKeyCacheTtl()
+                        );
+                        keyStore.start();
+                        return keyStore;
+                    },
+                    JwksKeyStore::stop
+                );
+            keycloakDeployment.setPublicKeyLocator(jwksKeyStore);
+            if (verifiedTokenCache != null) {
+                // A token verified with a key that has been rotated out must be verified again
+                keysChangedListener = verifiedTokenCache::clear;
+                jwksKeyStore.onKeysChanged(keysChangedListener);
+            }
+        }
+
+        if (configuration().isIntrospectionCacheEnabled()) {
+            introspectionCache =
+                sharedCache(
+                    payloadKey + "/introspection",
+                    configuration().getIntrospectionCacheMaxSize(),
+                    configuration().getIntrospectionCacheTtl()
+                );
+        }
+
+        if (configuration().isServeStaleOnError()) {
+            knownGoodResults =
+                sharedCache(
+                    payloadKey + "/known-good",
+                    Math.max(configuration().getIntrospectionCacheMaxSize(), 1),
+                    configuration().getStaleGracePeriod()
+                );
+        }
+
+        // Deny the tokens replayed after Keycloak found them inactive without calling it again
+        if (configuration().isRejectedTokenFilterEnabled()) {
+            final int capacity = configuration().getRejectedTokenFilterCapacity();
+            final double falsePositiveRate = configuration().getRejectedTokenFilterFalsePositiveRate();
+            final long window = TimeUnit.SECONDS.toMillis(configuration().getRejectedTokenFilterWindow());
+            rejectedTokenFilter =
+                shared(
+                    settingsKey + "/rejected-tokens/" + capacity + "/" + falsePositiveRate + "/" + window,
+                    () -> new RejectedTokenFilter(capacity, falsePositiveRate, window),
+                    filter -> {}
+                );
+            metrics.rejectedTokenFilter(rejectedTokenFilter);
+        }
+
+        // Deny cached and locally validated tokens as soon as Keycloak reports their session revoked
+        if (configuration().getRevocationEventsAddress() != null && !configuration().getRevocationEventsAddress().isBlank()) {
+            final String address = configuration().getRevocationEventsAddress().trim();
+            final long retention = TimeUnit.SECONDS.toMillis(configuration().getRevocationRetention());
+            revocations =
+                shared(
+                    settingsKey + "/revocations/" + address + "/" + retention,
+                    () -> {
+                        final RevocationList revocationList = new RevocationList(adapterConfig.getRealm(), retention);
+                        revocationList.listen(vertx.eventBus(), address);
+                        return revocationList;
+                    },
+                    RevocationList::stop
+                );
+        }
+
+        if (configuration().isUserInfoCacheEnabled()) {
+            userInfoCache =
+                sharedCache(settingsKey + "/userinfo", configuration().getUserInfoCacheMaxSize(), configuration().getUserInfoCacheTtl());
+        }
+
+        if (configuration().isClusterCacheEnabled() && (introspectionCache != null || userInfoCache != null)) {
+            startClusterCaches(settingsKey, payloadKey);
+        }
+
+        if (checkTokenLocally && configuration().isUserInfoFromToken()) {
+            userInfoClaims = new ArrayList<>(USERINFO_CLAIMS);
+            if (configuration().getUserInfoExtraClaims() != null) {
+                configuration().getUserInfoExtraClaims().stream().filter(claim -> !userInfoClaims.contains(claim)).forEach(userInfoClaims::add);
+            }
+        }
+
+        if (validationMode == TokenValidationMode.HYBRID) {
+            deniedTokens = new TokenCache<>(HYBRID_TRACKED_TOKENS_MAX_SIZE);
+            revalidatedTokens = new TokenCache<>(HYBRID_TRACKED_TOKENS_MAX_SIZE);
+            revalidationInterval = TimeUnit.SECONDS.toMillis(configuration().getRevalidationInterval());
+        }
+    }
+
+    /**
+     * The Keycloak adapter resolves the realm URLs (issuer, ...) from the OpenID discovery endpoint with a blocking
+     * call, and leaves them unresolved when the discovery fails: resolve them on a worker thread before validating any
+     * token, and retry with an exponential backoff until they are resolved. Tokens are not validated locally meanwhile.
+     */
+    private void resolveRealmUrls() {
+        final Future<Void> resolution = vertx.executeBlocking(
+            () -> {
+                final String url = keycloakDeployment.getRealmInfoUrl();
+                if (url == null) {
+                    throw new IllegalStateException("Unable to resolve the URLs of realm " + keycloakDeployment.getRealm());
+                }
+                realmInfoUrl = url;
+                return null;
+            },
+            false
+        );
+        deploymentReady = resolution;
+
+        resolution.onFailure(cause -> {
+            if (stopped) {
+                return;
+            }
+            realmUrlsRetryDelay =
+                realmUrlsRetryDelay == 0 ? REALM_URLS_RETRY_MIN_DELAY : Math.min(realmUrlsRetryDelay * 2, REALM_URLS_RETRY_MAX_DELAY);
+            logger.warn("{}, retry in {} ms", cause.getMessage(), realmUrlsRetryDelay);
+            realmUrlsRetryTimerId =
+                vertx.setTimer(
+                    realmUrlsRetryDelay,
+                    timerId -> {
+                        realmUrlsRetryTimerId = -1;
+                        resolveRealmUrls();
+                    }
+                );
+        });
     }
 
     @Override
     protected void doStop() throws Exception {
         super.doStop();
-        httpClients
-            .values()
-            .forEach(httpClient -> {
-                try {
-                    httpClient.close();
-                } catch (IllegalStateException ise) {
-                    logger.warn(ise.getMessage());
-                }
-            });
+        stopped = true;
+        // Requests waiting for the concurrency limit would otherwise never complete
+        concurrencyLimiter.close();
+        metrics.close();
+        if (realmUrlsRetryTimerId != -1) {
+            vertx.cancelTimer(realmUrlsRetryTimerId);
+            realmUrlsRetryTimerId = -1;
+        }
+
+        if (keysChangedListener != null) {
+            jwksKeyStore.removeKeysChangedListener(keysChangedListener);
+            keysChangedListener = null;
+        }
+
+        if (healthCheckTimerId != -1) {
+            vertx.cancelTimer(healthCheckTimerId);
+            healthCheckTimerId = -1;
+        }
+
+        // Released in reverse order: the realm keys are fetched with the HTTP client
+        for (int i = leases.size() - 1; i >= 0; i--) {
+            leases.get(i).release();
+        }
+        leases.clear();
+
+        if (deniedTokens != null) {
+            deniedTokens.clear();
+            revalidatedTokens.clear();
+        }
+    }
+
+    /**
+     * Acquires the object shared under the given key, released when this resource is stopped.
+     */
+    private <T> T shared(String key, Supplier<T> factory, Consumer<T> disposer) {
+        final SharedResources.Lease<T> lease = sharedResources.acquire(key, factory, disposer);
+        leases.add(lease);
+        return lease.get();
+    }
+
+    /**
+     * Puts the cluster cache of the gateway node behind the introspection and userinfo caches, so that a token
+     * validated by a node is not sent to Keycloak again by the other ones.
+     */
+    private void startClusterCaches(String settingsKey, String payloadKey) {
+        final CacheManager cacheManager = gatewayCacheManager();
+        if (cacheManager == null) {
+            logger.warn("No cache manager available on the gateway node, results are only cached locally");
+            return;
+        }
+
+        if (introspectionCache != null) {
+            clusteredIntrospectionCache =
+                clusteredCache(
+                    cacheManager,
+                    payloadKey + "/introspection",
+                    introspectionCache,
+                    configuration().getIntrospectionCacheMaxSize(),
+                    configuration().getIntrospectionCacheTtl(),
+                    OAuth2KeycloakResource::encodeIntrospection,
+                    OAuth2KeycloakResource::decodeIntrospection
+                );
+        }
+
+        if (userInfoCache != null) {
+            clusteredUserInfoCache =
+                clusteredCache(
+                    cacheManager,
+                    settingsKey + "/userinfo",
+                    userInfoCache,
+                    configuration().getUserInfoCacheMaxSize(),
+                    configuration().getUserInfoCacheTtl(),
+                    response -> new JsonObject().put("success", response.isSuccess()).put("payload", response.getPayload()),
+                    json -> new UserInfoResponse(json.getBoolean("success"), json.getString("payload"))
+                );
+        }
+    }
+
+    /**
+     * The cluster tier of a near cache. The cluster cache is named after the key of the near cache, derived from the
+     * Keycloak settings, so that the nodes declaring the same resource share it.
+     */
+    private <V> ClusteredTokenCache<V> clusteredCache(
+        CacheManager cacheManager,
+        String key,
+        TokenCache<V> nearCache,
+        int maxSize,
+        long ttl,
+        Function<V, JsonObject> encoder,
+        Function<JsonObject, V> decoder
+    ) {
+        final String cacheName = "gravitee-resource-keycloak-" + key;
+        return shared(
+            key + "/cluster/" + maxSize + "/" + ttl,
+            () ->
+                new ClusteredTokenCache<>(
+                    vertx,
+                    cacheManager.getOrCreateCache(
+                        cacheName,
+                        CacheConfiguration
+                            .builder()
+                            .distributed(true)
+                            .maxSize(maxSize)
+                            .timeToLiveInMs(TimeUnit.SECONDS.toMillis(ttl))
+                            .build()
+                    ),
+                    nearCache,
+                    encoder,
+                    decoder,
+                    CLUSTER_CACHE_MAX_PENDING_WRITES
+                ),
+            ClusteredTokenCache::close
+        );
+    }
+
+    /**
+     * A token cache shared by the resources with the same settings: its size and entry lifetime are part of the key
+     * as the entries expire according to the settings of the resource storing them.
+     */
+    private <V> TokenCache<V> sharedCache(String key, int maxSize, long ttl) {
+        return shared(key + "/" + maxSize + "/" + ttl, () -> new TokenCache<>(maxSize), TokenCache::clear);
+    }
+
+    private void close(HttpClient client) {
+        try {
+            client.close();
+        } catch (IllegalStateException ise) {
+            logger.warn(ise.getMessage());
+        }
     }
 
     @Override
     public void introspect(String accessToken, Handler<OAuth2Response> responseHandler) {
-        if (checkTokenLocally) {
-            try {
-                AccessToken token = AdapterTokenVerifier.verifyToken(accessToken, keycloakDeployment);
-                // Not optimal
-                ObjectNode tokenMetadata = JsonSerialization.createObjectNode(token);
-                tokenMetadata.put("client_id", token.getIssuedFor());
-                tokenMetadata.put("username", token.getPreferredUsername());
-                responseHandler.handle(new OAuth2Response(true, MAPPER.writeValueAsString(tokenMetadata)));
-            } catch (VerificationException ve) {
-                logger.error("Unable to verify access token", ve);
-                responseHandler.handle(new OAuth2Response(false, "{\"error\": \"access_denied\"}"));
-            } catch (IOException e) {
-                logger.error("Unable to transform access token", e);
+        final ResourceSpan span = tracer.start(INTROSPECT_SPAN).attribute(MODE_ATTRIBUTE, validationModeName);
+        final Handler<OAuth2Response> handler = traced(span, responseHandler);
+
+        if (rejectedTokenFilter != null && rejectFast(accessToken, span, handler)) {
+            return;
+        }
+
+        if (validationMode == TokenValidationMode.HYBRID) {
+            introspectHybrid(accessToken, span, measuredLocally(handler));
+        } else if (validationMode == TokenValidationMode.AUTO) {
+            if (isLocallyVerifiable(accessToken)) {
+                introspectLocally(accessToken, span, measuredLocally(handler));
+            } else {
+                introspectWithEndpoint(accessToken, span, handler);
             }
+        } else if (checkTokenLocally) {
+            introspectLocally(accessToken, span, measuredLocally(handler));
         } else {
-            HttpClient httpClient = httpClients.computeIfAbsent(Thread.currentThread(), context ->
-                vertx.createHttpClient(httpClientOptions)
-            );
+            introspectWithEndpoint(accessToken, span, handler);
+        }
+    }
+
+    /**
+     * Denies, without calling Keycloak nor verifying any signature, the tokens which cannot be active: missing,
+     * malformed or expired JWTs, and the tokens recently found inactive by Keycloak or invalid by the local
+     * verification.
+     *
+     * @return <code>true</code> if the response handler has been called.
+     */
+    private boolean rejectFast(String accessToken, ResourceSpan span, Handler<OAuth2Response> responseHandler) {
+        final FastRejection reason = fastRejection(accessToken);
+        if (reason == null) {
+            return false;
+        }
 
-            logger.debug("Introspect access token by requesting {}", introspectionEndpointURI);
+        logger.debug("Access token denied without introspection: {}", reason);
+        metrics.fastRejection(reason);
+        span.attribute(FAST_REJECTION_ATTRIBUTE, reason.name().toLowerCase(Locale.ROOT));
+        responseHandler.handle(new OAuth2Response(false, ACCESS_DENIED_PAYLOAD));
+        return true;
+    }
+
+    private FastRejection fastRejection(String accessToken) {
+        if (accessToken == null || accessToken.isEmpty()) {
+            return FastRejection.MALFORMED;
+        }
+        // Opaque tokens and JWE are left to Keycloak
+        if (JsonWebTokens.hasJwsShape(accessToken)) {
+            final TokenClaims claims = JsonWebTokens.unverifiedClaims(accessToken);
+            if (claims == null) {
+                return FastRejection.MALFORMED;
+            }
+            if (claims.getExpiration() != 0 && System.currentTimeMillis() / 1000 > claims.getExpiration()) {
+                return FastRejection.EXPIRED;
+            }
+        }
+        return rejectedTokenFilter.mightContain(TokenHash.of(accessToken)) ? FastRejection.FILTERED : null;
+    }
 
-            final RequestOptions reqOptions = new RequestOptions()
-                .setMethod(HttpMethod.POST)
-                .setURI(introspectionEndpointURI)
-                .putHeader(HttpHeaders.USER_AGENT, userAgent)
-                .putHeader("X-Gravitee-Request-Id", UUID.toString(UUID.random()))
-                .putHeader(HttpHeaders.AUTHORIZATION, introspectionEndpointAuthorization)
-                .putHeader(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON)
-                .putHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_FORM_URLENCODED);
+    /**
+     * Ends the span of an introspection, once the response handler is called.
+     */
+    private Handler<OAuth2Response> traced(ResourceSpan span, Handler<OAuth2Response> responseHandler) {
+        if (!span.isRecording()) {
+            return responseHandler;
+        }
 
-            httpClient
-                .request(reqOptions)
-                .onFailure(
-                    new io.vertx.core.Handler<Throwable>() {
-                        @Override
-                        public void handle(Throwable event) {
-                            logger.error("An error occurs while introspecting access token", event);
-                            responseHandler.handle(new OAuth2Response(false, event.getMessage()));
+        return response -> {
+            span.attribute(OUTCOME_ATTRIBUTE, outcome(response).name().toLowerCase(Locale.ROOT)).end();
+            responseHandler.handle(response);
+        };
+    }
+
+    /**
+     * Measures a local introspection, once the response handler is called.
+     */
+    private Handler<OAuth2Response> measuredLocally(Handler<OAuth2Response> responseHandler) {
+        if (!metrics.isEnabled()) {
+            return responseHandler;
+        }
+
+        final long start = System.nanoTime();
+        return response -> {
+            metrics.introspection(Validation.LOCAL, response.isSuccess() ? IntrospectionOutcome.ACTIVE : IntrospectionOutcome.INACTIVE, start);
+            responseHandler.handle(response);
+        };
+    }
+
+    /**
+     * Whether a token can be validated locally: a JWS signed with a key already known by the resource. Opaque tokens
+     * and tokens signed with an unknown key are introspected by Keycloak (in the latter case, the realm keys are
+     * refreshed so that the next tokens signed with a newly published key are validated locally). Tokens are also
+     * introspected by Keycloak as long as the realm URLs are not resolved.
+     */
+    private boolean isLocallyVerifiable(String accessToken) {
+        final JsonWebTokens.Header header = JsonWebTokens.header(accessToken);
+        if (header == null) {
+            return false;
+        }
+
+        if (jwksKeyStore == null || jwksKeyStore.containsKey(header.kid())) {
+            return deploymentReady.succeeded();
+        }
+
+        jwksKeyStore.refresh();
+        return false;
+    }
+
+    private void introspectWithEndpoint(String accessToken, ResourceSpan span, Handler<OAuth2Response> responseHandler) {
+        span.attribute(VALIDATION_ATTRIBUTE, "remote");
+        final String tokenHash = TokenHash.of(accessToken);
+        if (introspectionCache != null) {
+            CachedIntrospection cached = introspectionCache.get(tokenHash);
+            if (cached != null && isUncheckable(cached)) {
+                cached = null;
+            }
+            metrics.cache(ResourceMetrics.Cache.INTROSPECTION, cached != null);
+            span.attribute(CACHE_HIT_ATTRIBUTE, cached != null);
+            if (cached != null) {
+                logger.debug("Introspection result found in cache");
+                responseHandler.handle(cachedIntrospectionResponse(tokenHash, cached));
+                return;
+            }
+        }
+
+        if (clusteredIntrospectionCache == null) {
+            introspectionFlights.execute(tokenHash, responseHandler, handler -> introspectRemotely(accessToken, tokenHash, span, handler));
+            return;
+        }
+
+        introspectionFlights.execute(
+            tokenHash,
+            responseHandler,
+            handler ->
+                clusteredIntrospectionCache
+                    .get(tokenHash)
+                    .onComplete(lookup -> {
+                        final CachedIntrospection cached = lookup.result();
+                        metrics.cache(ResourceMetrics.Cache.INTROSPECTION_CLUSTER, cached != null);
+                        if (cached == null || isUncheckable(cached)) {
+                            introspectRemotely(accessToken, tokenHash, span, handler);
+                            return;
                         }
-                    }
-                )
-                .onSuccess(
-                    new io.vertx.core.Handler<HttpClientRequest>() {
-                        @Override
-                        public void handle(HttpClientRequest request) {
-                            request
-                                .response(
-                                    new io.vertx.core.Handler<AsyncResult<HttpClientResponse>>() {
-                                        @Override
-                                        public void handle(AsyncResult<HttpClientResponse> asyncResponse) {
-                                            if (asyncResponse.failed()) {
-                                                logger.error("An error occurs while introspecting access token", asyncResponse.cause());
-                                                responseHandler.handle(new OAuth2Response(false, asyncResponse.cause().getMessage()));
-                                            } else {
-                                                final HttpClientResponse response = asyncResponse.result();
-                                                response.bodyHandler(buffer -> {
-                                                    logger.debug(
-                                                        "Keycloak introspection endpoint returns a response with a {} status code",
-                                                        response.statusCode()
-                                                    );
-                                                    String body = buffer.toString();
-                                                    if (response.statusCode() == HttpStatusCode.OK_200) {
-                                                        JsonNode introspectPayload = readPayload(body);
-                                                        boolean active =
-                                                            introspectPayload != null && introspectPayload.path("active").asBoolean(false);
-                                                        if (active) {
-                                                            responseHandler.handle(new OAuth2Response(true, body));
-                                                        } else {
-                                                            responseHandler.handle(
-                                                                new OAuth2Response(false, "{\"error\": \"access_denied\"}")
-                                                            );
-                                                        }
-                                                    } else {
-                                                        responseHandler.handle(new OAuth2Response(false, body));
-                                                    }
-                                                });
-                                            }
-                                        }
-                                    }
-                                )
-                                .exceptionHandler(
-                                    new io.vertx.core.Handler<Throwable>() {
-                                        @Override
-                                        public void handle(Throwable event) {
-                                            logger.error("An error occurs while introspecting access token", event);
-                                            responseHandler.handle(new OAuth2Response(false, event.getMessage()));
-                                        }
-                                    }
-                                )
-                                .end("token=" + accessToken);
+                        logger.debug("Introspection result found in cluster cache");
+                        span.attribute(CACHE_HIT_ATTRIBUTE, true);
+                        handler.handle(cachedIntrospectionResponse(tokenHash, cached));
+                    })
+        );
+    }
+
+    /**
+     * The cached result of an introspection, unless the token has been revoked since it has been introspected.
+     */
+    private OAuth2Response cachedIntrospectionResponse(String tokenHash, CachedIntrospection cached) {
+        if (isRevoked(cached.identity())) {
+            logger.debug("Access token revoked since it has been introspected");
+            if (clusteredIntrospectionCache != null) {
+                clusteredIntrospectionCache.invalidate(tokenHash);
+            } else {
+                introspectionCache.invalidate(tokenHash);
+            }
+            return new OAuth2Response(false, ACCESS_DENIED_PAYLOAD);
+        }
+        return cached.response();
+    }
+
+    /**
+     * Answers from the local validation and, once per revalidation interval, checks in the background that the token
+     * is still active according to the introspection endpoint. Tokens found inactive are denied until they expire.
+     */
+    private void introspectHybrid(String accessToken, ResourceSpan span, Handler<OAuth2Response> responseHandler) {
+        final String tokenHash = TokenHash.of(accessToken);
+        if (deniedTokens.get(tokenHash) != null) {
+            logger.debug("Access token has been revoked");
+            responseHandler.handle(new OAuth2Response(false, ACCESS_DENIED_PAYLOAD));
+            return;
+        }
+
+        introspectLocally(
+            accessToken,
+            span,
+            response -> {
+                if (response.isSuccess()) {
+                    revalidate(accessToken, tokenHash, response.getPayload());
+                }
+                responseHandler.handle(response);
+            }
+        );
+    }
+
+    private void revalidate(String accessToken, String tokenHash, String payload) {
+        if (revalidatedTokens.get(tokenHash) != null) {
+            return;
+        }
+
+        final long now = System.currentTimeMillis();
+        final long expireAt = tokenExpiration(payload);
+        revalidatedTokens.put(tokenHash, Boolean.TRUE, expireAt > 0 ? Math.min(now + revalidationInterval, expireAt) : now + revalidationInterval);
+
+        logger.debug("Revalidate access token against the introspection endpoint");
+        final ResourceSpan span = tracer.start(REVALIDATE_SPAN);
+        introspectionFlights.execute(
+            tokenHash,
+            traced(
+                span,
+                response -> {
+                    // Only an inactive token is denied: errors (network, credentials, ...) keep the local validation result
+                    if (!response.isSuccess() && ACCESS_DENIED_PAYLOAD.equals(response.getPayload())) {
+                        deniedTokens.put(tokenHash, Boolean.TRUE, expireAt > 0 ? expireAt : now + revalidationInterval);
+                        if (verifiedTokenCache != null) {
+                            verifiedTokenCache.invalidate(tokenHash);
                         }
                     }
-                );
+                }
+            ),
+            handler -> introspectRemotely(accessToken, tokenHash, span, handler)
+        );
+    }
+
+    /**
+     * Reads the expiration time of a locally validated token from its payload, in milliseconds, or 0 if it has none.
+     */
+    private long tokenExpiration(String payload) {
+        try {
+            return TimeUnit.SECONDS.toMillis(TokenClaims.parse(payload.getBytes(StandardCharsets.UTF_8)).getExpiration());
+        } catch (IOException ioe) {
+            return 0;
         }
     }
 
-    @Override
-    public void userInfo(String accessToken, Handler<UserInfoResponse> responseHandler) {
-        HttpClient httpClient = httpClients.computeIfAbsent(Thread.currentThread(), context -> vertx.createHttpClient(httpClientOptions));
+    private void introspectLocally(String accessToken, ResourceSpan span, Handler<OAuth2Response> responseHandler) {
+        span.attribute(VALIDATION_ATTRIBUTE, "local");
+        if (verifiedTokenCache != null && introspectFromVerifiedTokenCache(accessToken, span, responseHandler)) {
+            return;
+        }
 
-        logger.debug("Get userinfo from {}", userInfoEndpointURI);
+        final List<Future<?>> pending = localValidationPrerequisites(accessToken);
+        if (pending.isEmpty()) {
+            verifyLocally(accessToken, span, responseHandler);
+        } else {
+            final Context context = Vertx.currentContext();
+            Future
+                .join(pending)
+                .onComplete(result -> {
+                    if (context != null && context != Vertx.currentContext()) {
+                        context.runOnContext(v -> verifyLocally(accessToken, span, responseHandler));
+                    } else {
+                        verifyLocally(accessToken, span, responseHandler);
+                    }
+                });
+        }
+    }
 
-        final RequestOptions reqOptions = new RequestOptions()
-            .setMethod(HttpMethod.GET)
-            .setURI(userInfoEndpointURI)
-            .putHeader(HttpHeaders.USER_AGENT, userAgent)
-            .putHeader("X-Gravitee-Request-Id", UUID.toString(UUID.random()))
-            .putHeader(HttpHeaders.AUTHORIZATION, AUTHORIZATION_HEADER_BEARER_SCHEME + accessToken)
-            .putHeader(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON);
+    /**
+     * Returns what must be completed before a token can be validated locally without blocking: the realm URLs
+     * resolution and, if the token is signed with a key that is not known yet, a (rate-limited) refresh of the realm
+     * keys.
+     */
+    private List<Future<?>> localValidationPrerequisites(String accessToken) {
+        List<Future<?>> pending = List.of();
+        if (!deploymentReady.isComplete()) {
+            pending = new ArrayList<>(2);
+            pending.add(deploymentReady);
+        }
+        if (jwksKeyStore != null && !jwksKeyStore.containsKey(JsonWebTokens.kid(accessToken))) {
+            pending = pending.isEmpty() ? new ArrayList<>(1) : pending;
+            pending.add(jwksKeyStore.refresh());
+        }
+        return pending;
+    }
 
+    /**
+     * Answers from the tokens whose signature has already been verified: only the token lifetime is checked again.
+     *
+     * @return <code>true</code> if the response handler has been called.
+     */
+    private boolean introspectFromVerifiedTokenCache(String accessToken, ResourceSpan span, Handler<OAuth2Response> responseHandler) {
+        final String tokenHash = TokenHash.of(accessToken);
+        final JwtVerifier.VerifiedToken token = verifiedTokenCache.get(tokenHash);
+        metrics.cache(ResourceMetrics.Cache.VERIFIED_TOKEN, token != null);
+        span.attribute(CACHE_HIT_ATTRIBUTE, token != null);
+        if (token == null) {
+            return false;
+        }
+
+        try {
+            JwtVerifier.verifyLifetime(token.claims());
+        } catch (VerificationException ve) {
+            verifiedTokenCache.invalidate(tokenHash);
+            return false;
+        }
+
+        if (isRevoked(token.claims())) {
+            logger.debug("Access token revoked since it has been verified");
+            verifiedTokenCache.invalidate(tokenHash);
+            responseHandler.handle(new OAuth2Response(false, ACCESS_DENIED_PAYLOAD));
+            return true;
+        }
+
+        logger.debug("Verified token found in cache");
+        responseHandler.handle(new OAuth2Response(true, token.payload()));
+        return true;
+    }
+
+    private void verifyLocally(String accessToken, ResourceSpan span, Handler<OAuth2Response> responseHandler) {
+        final ResourceSpan verifySpan = span.child(VERIFY_SPAN);
+        final long start = System.nanoTime();
+        try {
+            JwtVerifier.VerifiedToken token = jwtVerifier.verify(accessToken);
+            metrics.verification(true, start);
+            verifySpan.attribute(OUTCOME_ATTRIBUTE, "valid").end();
+            if (isRevoked(token.claims())) {
+                logger.debug("Access token has been revoked");
+                responseHandler.handle(new OAuth2Response(false, ACCESS_DENIED_PAYLOAD));
+                return;
+            }
+            if (verifiedTokenCache != null && token.claims().getExpiration() != 0) {
+                verifiedTokenCache.put(TokenHash.of(accessToken), token, TimeUnit.SECONDS.toMillis(token.claims().getExpiration()));
+            }
+            responseHandler.handle(new OAuth2Response(true, token.payload()));
+        } catch (VerificationException ve) {
+            metrics.verification(false, start);
+            verifySpan.attribute(OUTCOME_ATTRIBUTE, "invalid").error(ve).end();
+            logger.error("Unable to verify access token", ve);
+            // The realm keys have been refreshed for an unknown key before the verification: the token stays invalid
+            if (rejectedTokenFilter != null) {
+                rejectedTokenFilter.add(TokenHash.of(accessToken));
+            }
+            responseHandler.handle(new OAuth2Response(false, ACCESS_DENIED_PAYLOAD));
+        }
+    }
+
+    private void introspectRemotely(String accessToken, String tokenHash, ResourceSpan span, Handler<OAuth2Response> responseHandler) {
+        logger.debug("Introspect access token by requesting {}", introspectionEndpointURI);
+
+        final ResourceSpan requestSpan = span.child(INTROSPECTION_REQUEST_SPAN);
+        final long start = System.nanoTime();
+        concurrencyLimiter.acquire(
+            permit -> {
+                if (!circuitBreaker.tryAcquire()) {
+                    logger.debug("Keycloak circuit is open, introspection endpoint is not called");
+                    permit.cancel();
+                    rejectIntrospection(tokenHash, span, requestSpan, start, CIRCUIT_OPEN_MESSAGE, responseHandler);
+                } else {
+                    sendIntrospection(accessToken, tokenHash, span, requestSpan, start, permit, responseHandler);
+                }
+            },
+            () -> {
+                logger.debug("Keycloak concurrency limit reached, introspection endpoint is not called");
+                rejectIntrospection(tokenHash, span, requestSpan, start, CONCURRENCY_LIMIT_MESSAGE, responseHandler);
+            }
+        );
+    }
+
+    private void rejectIntrospection(
+        String tokenHash,
+        ResourceSpan span,
+        ResourceSpan requestSpan,
+        long start,
+        String message,
+        Handler<OAuth2Response> responseHandler
+    ) {
+        metrics.introspection(Validation.REMOTE, IntrospectionOutcome.ERROR, start);
+        requestSpan.attribute(OUTCOME_ATTRIBUTE, "rejected").end();
+        responseHandler.handle(unavailable(tokenHash, span, message));
+    }
+
+    /**
+     * Sends an introspection call and, if it is hedged, a second identical call once the hedging delay has elapsed
+     * without response: the first response wins and the other call is cancelled. A failed call, including a Keycloak
+     * server error, waits for the other one, if any.
+     *
+     * The hedge is a call of its own: it is only sent if the circuit breaker and the concurrency limit allow it at
+     * once, and each call releases its own permit when it completes.
+     */
+    private void sendIntrospection(
+        String accessToken,
+        String tokenHash,
+        ResourceSpan span,
+        ResourceSpan requestSpan,
+        long start,
+        ConcurrencyLimiter.Permit permit,
+        Handler<OAuth2Response> responseHandler
+    ) {
+        final Promise<OAuth2Response> winner = Promise.promise();
+        final AtomicInteger pendingCalls = new AtomicInteger(1);
+        final IntrospectionCall primary = new IntrospectionCall(requestSpan, select(requestSpan), permit);
+        final AtomicReference<IntrospectionCall> hedged = new AtomicReference<>();
+        final long hedgingDelay = hedgingPolicy.onCall();
+
+        send(accessToken, tokenHash, span, primary, winner, pendingCalls);
+
+        if (hedgingDelay >= 0) {
+            final long timerId = vertx.setTimer(
+                hedgingDelay,
+                id -> {
+                    if (winner.future().isComplete()) {
+                        return;
+                    }
+                    final ConcurrencyLimiter.Permit hedgePermit = concurrencyLimiter.tryAcquire();
+                    if (hedgePermit == null) {
+                        logger.debug("Keycloak concurrency limit reached, introspection call is not hedged");
+                        return;
+                    }
+                    if (!hedgingPolicy.tryHedge() || !circuitBreaker.tryAcquire()) {
+                        hedgePermit.cancel();
+                        return;
+                    }
+                    logger.debug("No introspection response after {} ms, hedge the call", hedgingDelay);
+                    final ResourceSpan hedgeSpan = span.child(INTROSPECTION_REQUEST_SPAN).attribute(HEDGE_ATTRIBUTE, true);
+                    final IntrospectionCall hedge = new IntrospectionCall(
+                        hedgeSpan,
+                        selectOther(primary.endpoint, hedgeSpan),
+                        hedgePermit
+                    );
+                    pendingCalls.incrementAndGet();
+                    hedged.set(hedge);
+                    send(accessToken, tokenHash, span, hedge, winner, pendingCalls);
+                }
+            );
+            winner.future().onComplete(result -> vertx.cancelTimer(timerId));
+        }
+
+        winner
+            .future()
+            .onComplete(result -> {
+                final IntrospectionCall hedge = hedged.get();
+                if (hedge != null && result.succeeded()) {
+                    final boolean hedgeWon = hedge.completed && !primary.completed;
+                    metrics.hedge(hedgeWon);
+                    (hedgeWon ? primary : hedge).cancel();
+                }
+                if (result.succeeded()) {
+                    metrics.introspection(Validation.REMOTE, outcome(result.result()), start);
+                    responseHandler.handle(result.result());
+                } else {
+                    metrics.introspection(Validation.REMOTE, IntrospectionOutcome.ERROR, start);
+                    logger.error("An error occurs while introspecting access token", result.cause());
+                    responseHandler.handle(unavailable(tokenHash, span, result.cause().getMessage()));
+                }
+            });
+    }
+
+    private void send(
+        String accessToken,
+        String tokenHash,
+        ResourceSpan span,
+        IntrospectionCall call,
+        Promise<OAuth2Response> winner,
+        AtomicInteger pendingCalls
+    ) {
+        final KeycloakEndpoints.Endpoint endpoint = call.endpoint;
+        final long start = System.nanoTime();
+        metrics.requestQueued();
         httpClient
-            .request(reqOptions)
-            .onFailure(
-                new io.vertx.core.Handler<Throwable>() {
-                    @Override
-                    public void handle(Throwable event) {
-                        logger.error("An error occurs while getting userinfo from access token", event);
-                        responseHandler.handle(new UserInfoResponse(false, event.getMessage()));
+            .request(introspectionRequestOptions[endpoint.index()])
+            .andThen(connected -> metrics.requestDequeued())
+            .compose(request -> {
+                if (!call.attach(request)) {
+                    return Future.failedFuture(new IllegalStateException("Introspection call cancelled"));
+                }
+                return prepare(request, call.span).send(FormBodies.token(accessToken));
+            })
+            .compose(response -> {
+                logger.debug("Keycloak introspection endpoint returns a response with a {} status code", response.statusCode());
+                metrics.response(ResourceMetrics.Endpoint.INTROSPECTION, response.statusCode());
+                call.span.attribute(STATUS_ATTRIBUTE, response.statusCode());
+                if (response.statusCode() >= HttpStatusCode.INTERNAL_SERVER_ERROR_500) {
+                    // A failed call, which must not win against the other one
+                    return response.body().compose(buffer -> Future.failedFuture(new IllegalStateException(buffer.toString())));
+                }
+                recordAvailability(response.statusCode(), call.permit, endpoint);
+                if (response.statusCode() == HttpStatusCode.OK_200) {
+                    return response.body().map(buffer -> introspectionResponse(tokenHash, buffer));
+                }
+                return response.body().map(buffer -> new OAuth2Response(false, buffer.toString()));
+            })
+            .onComplete(result -> {
+                metrics.requestCompleted();
+                endpoint.requestCompleted();
+                if (result.succeeded()) {
+                    call.completed = true;
+                    call.permit.release(false);
+                    hedgingPolicy.record(System.nanoTime() - start);
+                    call.span.end();
+                    winner.tryComplete(result.result());
+                    return;
+                }
+
+                if (call.cancelled) {
+                    // The other call won: this one says nothing about Keycloak health
+                    call.permit.cancel();
+                    call.span.attribute(OUTCOME_ATTRIBUTE, "cancelled").end();
+                } else {
+                    circuitBreaker.onFailure();
+                    call.permit.release(true);
+                    endpoint.record(false);
+                    call.span.error(result.cause()).end();
+                }
+                if (pendingCalls.decrementAndGet() == 0) {
+                    winner.tryFail(result.cause());
+                }
+            });
+    }
+
+    /**
+     * Reports to the circuit breaker, the concurrency limiter and the node health whether Keycloak answered a call:
+     * server errors count as failures, any other status as a success.
+     */
+    private void recordAvailability(int statusCode, ConcurrencyLimiter.Permit permit, KeycloakEndpoints.Endpoint endpoint) {
+        if (statusCode >= HttpStatusCode.INTERNAL_SERVER_ERROR_500) {
+            circuitBreaker.onFailure();
+            permit.release(true);
+            endpoint.record(false);
+        } else {
+            circuitBreaker.onSuccess();
+            endpoint.record(true);
+        }
+    }
+
+    /**
+     * Selects the Keycloak node a call is sent to.
+     */
+    private KeycloakEndpoints.Endpoint select(ResourceSpan requestSpan) {
+        final KeycloakEndpoints.Endpoint endpoint = keycloakEndpoints.select();
+        endpoint.requestStarted();
+        requestSpan.attribute(SERVER_ATTRIBUTE, endpoint.host());
+        return endpoint;
+    }
+
+    /**
+     * Selects the Keycloak node a hedged call is sent to: another node than the first call, if there is one.
+     */
+    private KeycloakEndpoints.Endpoint selectOther(KeycloakEndpoints.Endpoint excluded, ResourceSpan requestSpan) {
+        final KeycloakEndpoints.Endpoint endpoint = keycloakEndpoints.selectOther(excluded);
+        endpoint.requestStarted();
+        requestSpan.attribute(SERVER_ATTRIBUTE, endpoint.host());
+        return endpoint;
+    }
+
+    /**
+     * Checks that each Keycloak node serves the realm: a node failing health checks is ejected like a node failing
+     * calls, a healthy node is brought back at once.
+     */
+    private void checkHealth() {
+        for (KeycloakEndpoints.Endpoint endpoint : keycloakEndpoints.all()) {
+            httpClient
+                .request(healthCheckRequestOptions[endpoint.index()])
+                .compose(HttpClientRequest::send)
+                .compose(response -> response.body().map(body -> response.statusCode()))
+                .onComplete(result -> {
+                    final boolean healthy = result.succeeded() && result.result() == HttpStatusCode.OK_200;
+                    if (!healthy) {
+                        logger.debug("Health check of Keycloak node {} failed", endpoint);
                     }
+                    endpoint.record(healthy);
+                });
+        }
+    }
+
+    /**
+     * The base URLs of the Keycloak nodes: the configured ones, or the auth-server-url.
+     */
+    private List<URI> keycloakEndpointUris(URI realmUri) {
+        final List<URI> uris = new ArrayList<>();
+        if (configuration().getKeycloakEndpoints() != null) {
+            for (String endpoint : configuration().getKeycloakEndpoints()) {
+                if (endpoint != null && !endpoint.isBlank()) {
+                    uris.add(URI.create(endpoint.trim()));
                 }
-            )
-            .onSuccess(
-                new io.vertx.core.Handler<HttpClientRequest>() {
-                    @Override
-                    public void handle(HttpClientRequest request) {
-                        request
-                            .response(
-                                new io.vertx.core.Handler<AsyncResult<HttpClientResponse>>() {
-                                    @Override
-                                    public void handle(AsyncResult<HttpClientResponse> asyncResponse) {
-                                        if (asyncResponse.failed()) {
-                                            logger.error("An error occurs while introspecting access token", asyncResponse.cause());
-                                            responseHandler.handle(new UserInfoResponse(false, asyncResponse.cause().getMessage()));
-                                        } else {
-                                            final HttpClientResponse response = asyncResponse.result();
-                                            response.bodyHandler(buffer -> {
-                                                logger.debug(
-                                                    "Userinfo endpoint returns a response with a {} status code",
-                                                    response.statusCode()
-                                                );
-
-                                                if (response.statusCode() == HttpStatusCode.OK_200) {
-                                                    responseHandler.handle(new UserInfoResponse(true, buffer.toString()));
-                                                } else {
-                                                    responseHandler.handle(new UserInfoResponse(false, buffer.toString()));
-                                                }
-                                            });
-                                        }
-                                    }
-                                }
-                            )
-                            .exceptionHandler(
-                                new io.vertx.core.Handler<Throwable>() {
-                                    @Override
-                                    public void handle(Throwable event) {
-                                        logger.error("An error occurs while introspecting access token", event);
-                                        responseHandler.handle(new UserInfoResponse(false, event.getMessage()));
-                                    }
-                                }
-                            )
-                            .end();
+            }
+        }
+        if (uris.isEmpty()) {
+            uris.add(realmUri);
+        }
+        return uris;
+    }
+
+    private static RequestOptions targeting(RequestOptions options, KeycloakEndpoints.Endpoint endpoint) {
+        return new RequestOptions(options).setHost(endpoint.host()).setPort(endpoint.port()).setSsl(endpoint.ssl());
+    }
+
+    /**
+     * The response to an introspection that Keycloak could not answer: the last known-good active result of the token
+     * if stale results can be served, an error otherwise.
+     */
+    private OAuth2Response unavailable(String tokenHash, ResourceSpan span, String message) {
+        if (knownGoodResults != null) {
+            final CachedIntrospection knownGoodResult = knownGoodResults.get(tokenHash);
+            if (knownGoodResult != null && !isUncheckable(knownGoodResult) && !isRevoked(knownGoodResult.identity())) {
+                logger.debug("Keycloak is unavailable, serve the last known-good introspection result");
+                span.attribute(STALE_ATTRIBUTE, true);
+                return knownGoodResult.response();
+            }
+        }
+        return new OAuth2Response(false, message);
+    }
+
+    /**
+     * Adds the per-call headers to a request to Keycloak: a request identifier, recorded on the request span when
+     * traced. The trace context of the gateway is added by its Vert.x tracer, if any.
+     */
+    private HttpClientRequest prepare(HttpClientRequest request, ResourceSpan requestSpan) {
+        final String requestId = requestIds.next();
+        request.putHeader(REQUEST_ID_HEADER, requestId);
+        if (requestSpan.isRecording()) {
+            requestSpan.attribute(REQUEST_ID_ATTRIBUTE, requestId);
+        }
+        return request;
+    }
+
+    /**
+     * Whether a token has been revoked by an event pushed by Keycloak since it has been introspected.
+     */
+    private boolean isRevoked(TokenIdentity identity) {
+        return revocations != null && revocations.isRevoked(identity);
+    }
+
+    private boolean isRevoked(TokenClaims claims) {
+        return revocations != null && !revocations.isEmpty() && revocations.isRevoked(TokenIdentity.of(claims));
+    }
+
+    /**
+     * Whether a cached active result can not be checked against the revocation events because the identity of its
+     * token is unknown (for instance when cached by a node of a previous version): the token is introspected again.
+     */
+    private boolean isUncheckable(CachedIntrospection cached) {
+        return revocations != null && cached.identity() == null && cached.response().isSuccess();
+    }
+
+    /**
+     * An introspection response is either active, inactive (access denied), or an error returned by Keycloak.
+     */
+    private static IntrospectionOutcome outcome(OAuth2Response response) {
+        if (response.isSuccess()) {
+            return IntrospectionOutcome.ACTIVE;
+        }
+        return ACCESS_DENIED_PAYLOAD.equals(response.getPayload()) ? IntrospectionOutcome.INACTIVE : IntrospectionOutcome.ERROR;
+    }
+
+    private OAuth2Response introspectionResponse(String tokenHash, Buffer body) {
+        IntrospectionResult result = readIntrospectionResult(body);
+        boolean active = result != null && result.active();
+        OAuth2Response oAuth2Response = active
+            ? new OAuth2Response(true, introspectionPayload(body))
+            : new OAuth2Response(false, ACCESS_DENIED_PAYLOAD);
+        if (introspectionCache != null) {
+            cacheIntrospection(tokenHash, oAuth2Response, result);
+        }
+        if (knownGoodResults != null) {
+            keepKnownGood(tokenHash, oAuth2Response, result);
+        }
+        // Only an explicit answer of Keycloak is remembered: an unreadable response says nothing about the token
+        if (rejectedTokenFilter != null && result != null && !result.active()) {
+            rejectedTokenFilter.add(tokenHash);
+        }
+        return oAuth2Response;
+    }
+
+    /**
+     * The introspection response passed to the policies, reduced to the projected claims. The response body is only
+     * decoded to a string once, either by the projection or as is.
+     */
+    private String introspectionPayload(Buffer body) {
+        try {
+            return claimProjection.project(body);
+        } catch (IOException ioe) {
+            logger.warn("Unable to project the claims of the introspection response, pass it as is", ioe);
+            return body.toString();
+        }
+    }
+
+    /**
+     * The claims passed to the policies, or <code>null</code> to pass the whole token metadata. The user claim and the
+     * claims of the userinfo built from the token are always part of them.
+     */
+    private List<String> projectedClaims() {
+        final List<String> configuredClaims = configuration().getProjectedClaims();
+        if (configuredClaims == null || configuredClaims.isEmpty()) {
+            return null;
+        }
+
+        final List<String> claims = new ArrayList<>(configuredClaims);
+        if (configuration().getUserClaim() != null) {
+            claims.add(configuration().getUserClaim());
+        }
+        if (configuration().isUserInfoFromToken()) {
+            claims.addAll(USERINFO_CLAIMS);
+            if (configuration().getUserInfoExtraClaims() != null) {
+                claims.addAll(configuration().getUserInfoExtraClaims());
+            }
+        }
+        return claims;
+    }
+
+    @Override
+    public void userInfo(String accessToken, Handler<UserInfoResponse> userInfoHandler) {
+        final ResourceSpan span = tracer.start(USERINFO_SPAN).attribute(MODE_ATTRIBUTE, validationModeName);
+        final Handler<UserInfoResponse> responseHandler = tracedUserInfo(span, userInfoHandler);
+
+        if (userInfoClaims != null && (validationMode != TokenValidationMode.AUTO || isLocallyVerifiable(accessToken))) {
+            userInfoFromToken(accessToken, span, responseHandler);
+            return;
+        }
+
+        span.attribute(VALIDATION_ATTRIBUTE, "remote");
+        final String tokenHash = TokenHash.of(accessToken);
+        if (userInfoCache != null) {
+            UserInfoResponse cachedResponse = userInfoCache.get(tokenHash);
+            metrics.cache(ResourceMetrics.Cache.USERINFO, cachedResponse != null);
+            span.attribute(CACHE_HIT_ATTRIBUTE, cachedResponse != null);
+            if (cachedResponse != null) {
+                logger.debug("Userinfo found in cache");
+                responseHandler.handle(cachedResponse);
+                return;
+            }
+        }
+
+        userInfoFlights.execute(
+            tokenHash,
+            responseHandler,
+            handler -> {
+                final Handler<UserInfoResponse> cachingHandler = response -> {
+                    if (userInfoCache != null && response.isSuccess()) {
+                        cacheUserInfo(accessToken, tokenHash, response);
                     }
+                    handler.handle(response);
+                };
+
+                if (clusteredUserInfoCache == null) {
+                    requestUserInfo(accessToken, span, cachingHandler);
+                    return;
                 }
+
+                clusteredUserInfoCache
+                    .get(tokenHash)
+                    .onComplete(lookup -> {
+                        metrics.cache(ResourceMetrics.Cache.USERINFO_CLUSTER, lookup.result() != null);
+                        if (lookup.result() == null) {
+                            requestUserInfo(accessToken, span, cachingHandler);
+                            return;
+                        }
+                        logger.debug("Userinfo found in cluster cache");
+                        span.attribute(CACHE_HIT_ATTRIBUTE, true);
+                        handler.handle(lookup.result());
+                    });
+            }
+        );
+    }
+
+    /**
+     * Ends the span of a userinfo call, once the response handler is called.
+     */
+    private Handler<UserInfoResponse> tracedUserInfo(ResourceSpan span, Handler<UserInfoResponse> responseHandler) {
+        if (!span.isRecording()) {
+            return responseHandler;
+        }
+
+        return response -> {
+            span.attribute(OUTCOME_ATTRIBUTE, response.isSuccess() ? "success" : "failure").end();
+            responseHandler.handle(response);
+        };
+    }
+
+    /**
+     * Caches a userinfo response until the TTL elapses, or the access token expires if it is a JWT.
+     */
+    private void cacheUserInfo(String accessToken, String tokenHash, UserInfoResponse response) {
+        long expireAt = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(configuration().getUserInfoCacheTtl());
+        final TokenClaims claims = JsonWebTokens.unverifiedClaims(accessToken);
+        if (claims != null && claims.getExpiration() != 0) {
+            expireAt = Math.min(expireAt, TimeUnit.SECONDS.toMillis(claims.getExpiration()));
+        }
+        if (clusteredUserInfoCache != null) {
+            clusteredUserInfoCache.put(tokenHash, response, expireAt);
+        } else {
+            userInfoCache.put(tokenHash, response, expireAt);
+        }
+    }
+
+    /**
+     * Builds the userinfo response from the claims of the access token, once validated locally (including the
+     * revocation check of the hybrid mode). No call is made to Keycloak.
+     */
+    private void userInfoFromToken(String accessToken, ResourceSpan span, Handler<UserInfoResponse> responseHandler) {
+        final long start = System.nanoTime();
+        final Handler<OAuth2Response> tokenHandler = response -> {
+            if (!response.isSuccess()) {
+                metrics.userInfo(Validation.LOCAL, UserInfoOutcome.FAILURE, start);
+                responseHandler.handle(new UserInfoResponse(false, response.getPayload()));
+                return;
+            }
+
+            try {
+                final JsonNode claims = MAPPER.readTree(response.getPayload());
+                final ObjectNode userInfo = MAPPER.createObjectNode();
+                for (String claim : userInfoClaims) {
+                    if (claims.has(claim)) {
+                        userInfo.set(claim, claims.get(claim));
+                    }
+                }
+                final UserInfoResponse userInfoResponse = new UserInfoResponse(true, MAPPER.writeValueAsString(userInfo));
+                metrics.userInfo(Validation.LOCAL, UserInfoOutcome.SUCCESS, start);
+                responseHandler.handle(userInfoResponse);
+            } catch (IOException ioe) {
+                metrics.userInfo(Validation.LOCAL, UserInfoOutcome.ERROR, start);
+                logger.error("Unable to build userinfo from access token", ioe);
+                responseHandler.handle(new UserInfoResponse(false, ioe.getMessage()));
+            }
+        };
+
+        if (validationMode == TokenValidationMode.HYBRID) {
+            introspectHybrid(accessToken, span, tokenHandler);
+        } else {
+            introspectLocally(accessToken, span, tokenHandler);
+        }
+    }
+
+    private void requestUserInfo(String accessToken, ResourceSpan span, Handler<UserInfoResponse> responseHandler) {
+        logger.debug("Get userinfo from {}", userInfoEndpointURI);
+
+        final ResourceSpan requestSpan = span.child(USERINFO_REQUEST_SPAN);
+        final long start = System.nanoTime();
+        concurrencyLimiter.acquire(
+            permit -> {
+                if (!circuitBreaker.tryAcquire()) {
+                    logger.debug("Keycloak circuit is open, userinfo endpoint is not called");
+                    permit.cancel();
+                    rejectUserInfo(requestSpan, start, CIRCUIT_OPEN_MESSAGE, responseHandler);
+                } else {
+                    sendUserInfo(accessToken, requestSpan, start, permit, responseHandler);
+                }
+            },
+            () -> {
+                logger.debug("Keycloak concurrency limit reached, userinfo endpoint is not called");
+                rejectUserInfo(requestSpan, start, CONCURRENCY_LIMIT_MESSAGE, responseHandler);
+            }
+        );
+    }
+
+    private void rejectUserInfo(ResourceSpan requestSpan, long start, String message, Handler<UserInfoResponse> responseHandler) {
+        metrics.userInfo(Validation.REMOTE, UserInfoOutcome.ERROR, start);
+        requestSpan.attribute(OUTCOME_ATTRIBUTE, "rejected").end();
+        responseHandler.handle(new UserInfoResponse(false, message));
+    }
+
+    private void sendUserInfo(
+        String accessToken,
+        ResourceSpan requestSpan,
+        long start,
+        ConcurrencyLimiter.Permit permit,
+        Handler<UserInfoResponse> responseHandler
+    ) {
+        final KeycloakEndpoints.Endpoint endpoint = select(requestSpan);
+        metrics.requestQueued();
+        httpClient
+            .request(userInfoRequestOptions[endpoint.index()])
+            .andThen(connected -> metrics.requestDequeued())
+            .compose(request ->
+                prepare(request, requestSpan).putHeader(HttpHeaders.AUTHORIZATION, AUTHORIZATION_HEADER_BEARER_SCHEME.concat(accessToken)).send()
+            )
+            .compose(response -> {
+                logger.debug("Userinfo endpoint returns a response with a {} status code", response.statusCode());
+                metrics.response(ResourceMetrics.Endpoint.USERINFO, response.statusCode());
+                requestSpan.attribute(STATUS_ATTRIBUTE, response.statusCode());
+                recordAvailability(response.statusCode(), permit, endpoint);
+                final boolean success = response.statusCode() == HttpStatusCode.OK_200;
+                return response.body().map(buffer -> new UserInfoResponse(success, buffer.toString()));
+            })
+            .onComplete(result -> {
+                metrics.requestCompleted();
+                endpoint.requestCompleted();
+                permit.release(result.failed());
+                if (result.succeeded()) {
+                    metrics.userInfo(Validation.REMOTE, result.result().isSuccess() ? UserInfoOutcome.SUCCESS : UserInfoOutcome.FAILURE, start);
+                    requestSpan.end();
+                    responseHandler.handle(result.result());
+                } else {
+                    circuitBreaker.onFailure();
+                    endpoint.record(false);
+                    metrics.userInfo(Validation.REMOTE, UserInfoOutcome.ERROR, start);
+                    requestSpan.error(result.cause()).end();
+                    logger.error("An error occurs while getting userinfo from access token", result.cause());
+                    responseHandler.handle(new UserInfoResponse(false, result.cause().getMessage()));
+                }
+            });
+    }
+
+    private void cacheIntrospection(String tokenHash, OAuth2Response oAuth2Response, IntrospectionResult result) {
+        final long now = System.currentTimeMillis();
+
+        if (oAuth2Response.isSuccess()) {
+            long expireAt = now + TimeUnit.SECONDS.toMillis(configuration().getIntrospectionCacheTtl());
+            if (result.expiration() != 0) {
+                expireAt = Math.min(expireAt, TimeUnit.SECONDS.toMillis(result.expiration()));
+            }
+            putIntrospection(tokenHash, new CachedIntrospection(oAuth2Response, result.identity()), expireAt);
+        } else if (configuration().getIntrospectionCacheNegativeTtl() > 0) {
+            putIntrospection(
+                tokenHash,
+                new CachedIntrospection(oAuth2Response, null),
+                now + TimeUnit.SECONDS.toMillis(configuration().getIntrospectionCacheNegativeTtl())
             );
+        }
+    }
+
+    private void putIntrospection(String tokenHash, CachedIntrospection cached, long expireAt) {
+        if (clusteredIntrospectionCache != null) {
+            clusteredIntrospectionCache.put(tokenHash, cached, expireAt);
+        } else {
+            introspectionCache.put(tokenHash, cached, expireAt);
+        }
+    }
+
+    /**
+     * Keeps an active result for the grace period (bounded by the token expiration), and forgets the token as soon
+     * as Keycloak reports it inactive.
+     */
+    private void keepKnownGood(String tokenHash, OAuth2Response oAuth2Response, IntrospectionResult result) {
+        if (!oAuth2Response.isSuccess()) {
+            knownGoodResults.invalidate(tokenHash);
+            return;
+        }
+
+        long expireAt = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(configuration().getStaleGracePeriod());
+        if (result.expiration() != 0) {
+            expireAt = Math.min(expireAt, TimeUnit.SECONDS.toMillis(result.expiration()));
+        }
+        knownGoodResults.put(tokenHash, new CachedIntrospection(oAuth2Response, result.identity()), expireAt);
     }
 
-    private JsonNode readPayload(String oauthPayload) {
+    private IntrospectionResult readIntrospectionResult(Buffer body) {
         try {
-            return MAPPER.readTree(oauthPayload);
+            // The token expiration is only needed to bound the lifetime of a cached result, and its identity to check
+            // later whether it has been revoked. The identity is recorded even without revocation events: cached
+            // results may be shared with resources which receive them.
+            final boolean cached = introspectionCache != null || knownGoodResults != null;
+            return IntrospectionResult.parse(body, cached, cached);
         } catch (IOException ioe) {
-            logger.error("Unable to check required scope from introspection endpoint payload: {}", oauthPayload);
+            logger.error("Unable to check required scope from introspection endpoint payload: {}", body);
+            return null;
+        }
+    }
+
+    private static JsonObject encodeIntrospection(CachedIntrospection cached) {
+        final JsonObject json = new JsonObject().put("success", cached.response().isSuccess()).put("payload", cached.response().getPayload());
+        final TokenIdentity identity = cached.identity();
+        if (identity != null) {
+            json.put("identity", new JsonObject().put("sid", identity.sessionId()).put("iat", identity.issuedAt()));
+        }
+        return json;
+    }
+
+    private static CachedIntrospection decodeIntrospection(JsonObject json) {
+        final JsonObject identity = json.getJsonObject("identity");
+        return new CachedIntrospection(
+            new OAuth2Response(json.getBoolean("success"), json.getString("payload")),
+            identity == null
+                ? null
+                : new TokenIdentity(identity.getString("sid"), identity.getLong("iat", 0L))
+        );
+    }
+
+    /**
+     * The cache manager of the gateway node, or <code>null</code> if there is none.
+     */
+    private CacheManager gatewayCacheManager() {
+        try {
+            return applicationContext.getBean(CacheManager.class);
+        } catch (BeansException be) {
+            return null;
+        }
+    }
+
+    /**
+     * The tracer of the gateway, or <code>null</code> if the gateway does not trace requests.
+     */
+    private io.gravitee.node.api.tracing.Tracer gatewayTracer() {
+        try {
+            return applicationContext.getBean(io.gravitee.node.api.tracing.Tracer.class);
+        } catch (BeansException be) {
             return null;
         }
     }
 
+    /**
+     * An additional exporter of the resource spans, besides the gateway tracer, or <code>null</code> (the default) to
+     * only mirror them to the gateway tracer.
+     */
+    SpanExporter spanExporter() {
+        return null;
+    }
+
+    /**
+     * The registry of the gateway metrics, or <code>null</code> if metrics are disabled.
+     */
+    MeterRegistry meterRegistry() {
+        return BackendRegistries.getDefaultNow();
+    }
+
     @Override
     public String getUserClaim() {
         return configuration().getUserClaim();
@@ -345,4 +1724,52 @@ public class OAuth2KeycloakResource extends OAuth2Resource<OAuth2KeycloakResourc
     public OAuth2ResourceMetadata getProtectedResourceMetadata(String protectedResourceUri, List<String> scopesSupported) {
         return new OAuth2ResourceMetadata(protectedResourceUri, List.of(realmUrl), scopesSupported);
     }
+
+    /**
+     * One of the calls made for an introspection: a single one, or two when the introspection is hedged.
+     */
+    private static class IntrospectionCall {
+
+        private final ResourceSpan span;
+        private final KeycloakEndpoints.Endpoint endpoint;
+        private final ConcurrencyLimiter.Permit permit;
+        private HttpClientRequest request;
+        private volatile boolean cancelled;
+        private volatile boolean completed;
+
+        private IntrospectionCall(ResourceSpan span, KeycloakEndpoints.Endpoint endpoint, ConcurrencyLimiter.Permit permit) {
+            this.span = span;
+            this.endpoint = endpoint;
+            this.permit = permit;
+        }
+
+        /**
+         * Attaches the request sent for this call.
+         *
+         * @return <code>false</code> if the call has been cancelled in the meantime: the request must not be sent.
+         */
+        private synchronized boolean attach(HttpClientRequest request) {
+            if (cancelled) {
+                request.reset();
+                return false;
+            }
+            this.request = request;
+            return true;
+        }
+
+        private synchronized void cancel() {
+            if (completed || cancelled) {
+                return;
+            }
+            cancelled = true;
+            if (request != null) {
+                request.reset();
+            }
+        }
+    }
+
+    /**
+     * An introspection result kept in cache, with the identity of the token when revocations are tracked.
+     */
+    private record CachedIntrospection(OAuth2Response response, TokenIdentity identity) {}
 }
@@ -0,0 +1,191 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.resource.oauth2.keycloak.cache;
+
+import io.gravitee.node.api.cache.Cache;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.WorkerExecutor;
+import io.vertx.core.json.JsonObject;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The cluster tier of a two-tier token cache: a {@link TokenCache} in the process (the near cache) in front of a
+ * cache of the node {@link io.gravitee.node.api.cache.CacheManager}, distributed across the gateway nodes when the
+ * cluster cache is backed by Hazelcast for instance.
+ *
+ * The cluster cache may block, so it is never called from an event loop: lookups run on a dedicated worker pool and
+ * complete asynchronously, and writes are queued then flushed in the background (write-behind). Pending writes of a
+ * same token are coalesced, and writes are dropped when the queue is full: the cluster tier only saves calls to
+ * Keycloak. Values are stored as JSON strings, along with their absolute expiration time, so that any cache
+ * implementation can hold them.
+ *
+ * @author GraviteeSource Team
+ */
+public class ClusteredTokenCache<V> {
+
+    private static final int WORKER_POOL_SIZE = 4;
+
+    private static final PendingWrite EVICTION = new PendingWrite(null, 0);
+
+    private final Logger logger = LoggerFactory.getLogger(ClusteredTokenCache.class);
+
+    private final Cache<String, String> cache;
+    private final TokenCache<V> nearCache;
+    private final Function<V, JsonObject> encoder;
+    private final Function<JsonObject, V> decoder;
+    private final WorkerExecutor executor;
+    private final int maxPendingWrites;
+
+    private final Map<String, PendingWrite> pendingWrites = new ConcurrentHashMap<>();
+    private final AtomicBoolean flushing = new AtomicBoolean();
+    private volatile boolean closed;
+
+    public ClusteredTokenCache(
+        Vertx vertx,
+        Cache<String, String> cache,
+        TokenCache<V> nearCache,
+        Function<V, JsonObject> encoder,
+        Function<JsonObject, V> decoder,
+        int maxPendingWrites
+    ) {
+        this.cache = cache;
+        this.nearCache = nearCache;
+        this.encoder = encoder;
+        this.decoder = decoder;
+        this.maxPendingWrites = maxPendingWrites;
+        this.executor = vertx.createSharedWorkerExecutor("gravitee-resource-keycloak-cache", WORKER_POOL_SIZE);
+    }
+
+    /**
+     * Looks up the cluster cache, and keeps the value found in the near cache until it expires. The returned future
+     * completes with <code>null</code> when the token is not cached, or the cluster cache can not be reached.
+     */
+    public Future<V> get(String key) {
+        return executor
+            .executeBlocking(() -> read(key), false)
+            .otherwise(throwable -> {
+                logger.debug("Unable to read the cluster token cache {}", cache.getName(), throwable);
+                return null;
+            });
+    }
+
+    /**
+     * Stores the value in the near cache, and queues its write to the cluster cache.
+     */
+    public void put(String key, V value, long expireAt) {
+        nearCache.put(key, value, expireAt);
+        if (expireAt > System.currentTimeMillis()) {
+            enqueue(key, new PendingWrite(new JsonObject().put("expireAt", expireAt).put("value", encoder.apply(value)).encode(), expireAt));
+        }
+    }
+
+    /**
+     * Removes the value from the near cache, and queues its eviction from the cluster cache.
+     */
+    public void invalidate(String key) {
+        nearCache.invalidate(key);
+        enqueue(key, EVICTION);
+    }
+
+    public int pendingWrites() {
+        return pendingWrites.size();
+    }
+
+    public void close() {
+        closed = true;
+        pendingWrites.clear();
+        executor.close();
+    }
+
+    private V read(String key) {
+        final String value = cache.get(key);
+        if (value == null) {
+            return null;
+        }
+
+        final JsonObject entry = new JsonObject(value);
+        final long expireAt = entry.getLong("expireAt", 0L);
+        if (expireAt <= System.currentTimeMillis()) {
+            return null;
+        }
+
+        final V cached = decoder.apply(entry.getJsonObject("value"));
+        nearCache.put(key, cached, expireAt);
+        return cached;
+    }
+
+    private void enqueue(String key, PendingWrite write) {
+        if (pendingWrites.size() >= maxPendingWrites && !pendingWrites.containsKey(key)) {
+            logger.debug("Too many pending writes to the cluster token cache {}, drop the write", cache.getName());
+            return;
+        }
+
+        pendingWrites.put(key, write);
+        flush();
+    }
+
+    private void flush() {
+        if (closed || !flushing.compareAndSet(false, true)) {
+            return;
+        }
+
+        executor
+            .<Void>executeBlocking(
+                () -> {
+                    pendingWrites.forEach((key, write) -> {
+                        // A newer write of the same token is left for the next flush
+                        if (pendingWrites.remove(key, write)) {
+                            write(key, write);
+                        }
+                    });
+                    return null;
+                },
+                false
+            )
+            .onComplete(result -> {
+                flushing.set(false);
+                // Writes queued while the last ones were flushed
+                if (!pendingWrites.isEmpty()) {
+                    flush();
+                }
+            });
+    }
+
+    private void write(String key, PendingWrite write) {
+        try {
+            if (write == EVICTION) {
+                cache.evict(key);
+                return;
+            }
+
+            final long ttl = write.expireAt() - System.currentTimeMillis();
+            if (ttl > 0) {
+                cache.put(key, write.value(), ttl, TimeUnit.MILLISECONDS);
+            }
+        } catch (RuntimeException re) {
+            logger.debug("Unable to write to the cluster token cache {}", cache.getName(), re);
+        }
+    }
+
+    private record PendingWrite(String value, long expireAt) {}
+}
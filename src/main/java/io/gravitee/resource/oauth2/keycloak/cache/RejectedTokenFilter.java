@@ -0,0 +1,198 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.resource.oauth2.keycloak.cache;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * A compact, time-windowed set of the tokens recently rejected by Keycloak, keyed by {@link TokenHash}, to reject the
+ * tokens replayed by bots and misconfigured clients without calling Keycloak again.
+ *
+ * Tokens are added to a Bloom filter, replaced by an empty one once it holds its capacity or is older than the
+ * window. The previous filter is still looked up, so a token is remembered between one and two windows. As any Bloom
+ * filter, it may report a token it has never seen (at the configured false positive rate), never the other way around.
+ *
+ * @author GraviteeSource Team
+ */
+public class RejectedTokenFilter {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final int capacity;
+    private final double falsePositiveRate;
+    private final int bits;
+    private final int hashFunctions;
+    private final long windowMs;
+    private final LongSupplier clock;
+
+    private volatile Generation current;
+    private volatile Generation previous;
+    private final LongAdder hits = new LongAdder();
+
+    /**
+     * @param capacity the number of tokens held by a filter before it is rotated.
+     * @param falsePositiveRate the probability for a filter holding its capacity to report a token it has never seen.
+     * @param windowMs the maximum age of a filter before it is rotated, in milliseconds.
+     */
+    public RejectedTokenFilter(int capacity, double falsePositiveRate, long windowMs) {
+        this(capacity, falsePositiveRate, windowMs, System::currentTimeMillis);
+    }
+
+    RejectedTokenFilter(int capacity, double falsePositiveRate, long windowMs, LongSupplier clock) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Rejected token filter capacity must be greater than 0");
+        }
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("Rejected token filter false positive rate must be between 0 and 1");
+        }
+        this.capacity = capacity;
+        this.falsePositiveRate = falsePositiveRate;
+        // Optimal size and number of hash functions for the expected insertions and false positive rate
+        final long optimalBits = (long) Math.ceil(-capacity * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        this.bits = (int) Math.min(Math.max(optimalBits, Long.SIZE), Integer.MAX_VALUE - Long.SIZE);
+        this.hashFunctions = Math.max(1, (int) Math.round((double) bits / capacity * Math.log(2)));
+        this.windowMs = windowMs;
+        this.clock = clock;
+        this.current = new Generation(bits, clock.getAsLong());
+        this.previous = new Generation(bits, clock.getAsLong());
+    }
+
+    public boolean mightContain(String tokenHash) {
+        rotateIfExpired();
+        final long hash1 = hash(tokenHash, FNV_OFFSET_BASIS);
+        final long hash2 = hash(tokenHash, hash1);
+        if (current.contains(hash1, hash2) || previous.contains(hash1, hash2)) {
+            hits.increment();
+            return true;
+        }
+        return false;
+    }
+
+    public void add(String tokenHash) {
+        rotateIfExpired();
+        final long hash1 = hash(tokenHash, FNV_OFFSET_BASIS);
+        final long hash2 = hash(tokenHash, hash1);
+        final Generation generation = current;
+        generation.add(hash1, hash2);
+        if (generation.insertions.incrementAndGet() >= capacity) {
+            rotate(generation);
+        }
+    }
+
+    /**
+     * The memory used by the filters, in bytes.
+     */
+    public long memory() {
+        return 2L * current.words.length() * Long.BYTES;
+    }
+
+    /**
+     * The probability, given the tokens currently held, for a token never seen to be reported by the filter.
+     */
+    public double falsePositiveRate() {
+        return 1 - (1 - current.falsePositiveRate()) * (1 - previous.falsePositiveRate());
+    }
+
+    /**
+     * The configured false positive rate of a filter holding its capacity.
+     */
+    public double maxFalsePositiveRate() {
+        return falsePositiveRate;
+    }
+
+    /**
+     * The number of lookups which found the token in the filter.
+     */
+    public long hits() {
+        return hits.sum();
+    }
+
+    private void rotateIfExpired() {
+        final Generation generation = current;
+        if (clock.getAsLong() - generation.createdAt >= windowMs) {
+            rotate(generation);
+        }
+    }
+
+    private synchronized void rotate(Generation expected) {
+        // Another thread may have rotated the filters already
+        if (current == expected) {
+            previous = expected;
+            current = new Generation(bits, clock.getAsLong());
+        }
+    }
+
+    /**
+     * FNV-1a followed by the MurmurHash3 finalizer: token hashes are already uniformly distributed, only the bits must
+     * be spread over 64 bits.
+     */
+    private static long hash(String value, long seed) {
+        long hash = seed;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= FNV_PRIME;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private final class Generation {
+
+        private final AtomicLongArray words;
+        private final AtomicInteger insertions = new AtomicInteger();
+        private final long createdAt;
+
+        private Generation(int bits, long createdAt) {
+            this.words = new AtomicLongArray((bits + Long.SIZE - 1) / Long.SIZE);
+            this.createdAt = createdAt;
+        }
+
+        private void add(long hash1, long hash2) {
+            for (int i = 0; i < hashFunctions; i++) {
+                final int bit = bit(hash1, hash2, i);
+                final long mask = 1L << bit;
+                words.getAndAccumulate(bit >>> 6, mask, (word, m) -> word | m);
+            }
+        }
+
+        private boolean contains(long hash1, long hash2) {
+            for (int i = 0; i < hashFunctions; i++) {
+                final int bit = bit(hash1, hash2, i);
+                if ((words.get(bit >>> 6) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private double falsePositiveRate() {
+            return Math.pow(1 - Math.exp(-(double) hashFunctions * insertions.get() / bits), hashFunctions);
+        }
+
+        // Double hashing (Kirsch and Mitzenmacher): the i-th bit is derived from two hashes only
+        private int bit(long hash1, long hash2, int i) {
+            return (int) Math.floorMod(hash1 + i * hash2, (long) bits);
+        }
+    }
+}
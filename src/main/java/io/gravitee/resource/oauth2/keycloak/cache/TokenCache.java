@@ -0,0 +1,97 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.resource.oauth2.keycloak.cache;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A size-bounded, in-memory cache of token validation results. Entries are keyed by a {@link TokenHash} of the
+ * access token (never the raw token) and carry their own absolute expiration time.
+ *
+ * When the cache is full, expired entries are purged first and, if that is not enough, arbitrary entries are evicted
+ * until the cache is back under its eviction threshold.
+ *
+ * @author GraviteeSource Team
+ */
+public class TokenCache<V> {
+
+    private static final float EVICTION_RATIO = 0.9f;
+
+    private final Map<String, Entry<V>> entries = new ConcurrentHashMap<>();
+
+    private final int maxSize;
+
+    public TokenCache(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Token cache max size must be greater than 0");
+        }
+        this.maxSize = maxSize;
+    }
+
+    public V get(String key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+
+        if (entry.expireAt <= System.currentTimeMillis()) {
+            entries.remove(key, entry);
+            return null;
+        }
+
+        return entry.value;
+    }
+
+    public void put(String key, V value, long expireAt) {
+        if (expireAt <= System.currentTimeMillis()) {
+            return;
+        }
+
+        entries.put(key, new Entry<>(value, expireAt));
+
+        if (entries.size() > maxSize) {
+            evict();
+        }
+    }
+
+    public void invalidate(String key) {
+        entries.remove(key);
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private void evict() {
+        final long now = System.currentTimeMillis();
+        entries.values().removeIf(entry -> entry.expireAt <= now);
+
+        final int threshold = (int) (maxSize * EVICTION_RATIO);
+        Iterator<String> keys = entries.keySet().iterator();
+        while (entries.size() > threshold && keys.hasNext()) {
+            keys.next();
+            keys.remove();
+        }
+    }
+
+    private record Entry<V>(V value, long expireAt) {}
+}
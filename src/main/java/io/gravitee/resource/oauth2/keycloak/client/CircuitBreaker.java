@@ -0,0 +1,114 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.resource.oauth2.keycloak.client;
+
+import java.util.function.LongSupplier;
+
+/**
+ * A circuit breaker counting consecutive failed calls to Keycloak. Once the failure threshold is reached, the circuit
+ * opens and calls are rejected without being sent. When the reset timeout has elapsed, a single trial call is let
+ * through (half-open): its success closes the circuit, its failure opens it again for another reset timeout.
+ *
+ * @author GraviteeSource Team
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN,
+    }
+
+    private static final CircuitBreaker DISABLED = new CircuitBreaker(Integer.MAX_VALUE, 0, System::currentTimeMillis);
+
+    private final int failureThreshold;
+    private final long resetTimeout;
+    private final LongSupplier clock;
+
+    private State state = State.CLOSED;
+    private int failures;
+    private long openedAt;
+
+    public CircuitBreaker(int failureThreshold, long resetTimeout) {
+        this(failureThreshold, resetTimeout, System::currentTimeMillis);
+    }
+
+    CircuitBreaker(int failureThreshold, long resetTimeout, LongSupplier clock) {
+        if (failureThreshold <= 0) {
+            throw new IllegalArgumentException("Circuit breaker failure threshold must be greater than 0");
+        }
+        this.failureThreshold = failureThreshold;
+        this.resetTimeout = resetTimeout;
+        this.clock = clock;
+    }
+
+    /**
+     * A circuit breaker that never opens.
+     */
+    public static CircuitBreaker disabled() {
+        return DISABLED;
+    }
+
+    /**
+     * Whether a call can be sent. When the circuit is half-open, only the first caller is allowed, and it must report
+     * the outcome of its call with {@link #onSuccess()} or {@link #onFailure()}.
+     */
+    public boolean tryAcquire() {
+        if (this == DISABLED) {
+            return true;
+        }
+
+        synchronized (this) {
+            if (state == State.CLOSED) {
+                return true;
+            }
+            if (state == State.OPEN && clock.getAsLong() - openedAt >= resetTimeout) {
+                state = State.HALF_OPEN;
+                return true;
+            }
+            return false;
+        }
+    }
+
+    public void onSuccess() {
+        if (this == DISABLED) {
+            return;
+        }
+
+        synchronized (this) {
+            failures = 0;
+            state = State.CLOSED;
+        }
+    }
+
+    public void onFailure() {
+        if (this == DISABLED) {
+            return;
+        }
+
+        synchronized (this) {
+            failures++;
+            if (state == State.HALF_OPEN || (state == State.CLOSED && failures >= failureThreshold)) {
+                state = State.OPEN;
+                openedAt = clock.getAsLong();
+            }
+        }
+    }
+
+    public synchronized State state() {
+        return state;
+    }
+}
@@ -0,0 +1,310 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.resource.oauth2.keycloak.client;
+
+import io.gravitee.gateway.api.handler.Handler;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caps the number of calls in flight to Keycloak with an AIMD (additive increase, multiplicative decrease) limit: the
+ * limit grows by one each time a call completes quickly while the limit is in use, and is cut down when a call fails
+ * or takes longer than the latency threshold. Calls above the limit wait in a bounded queue, and are rejected at once
+ * when the queue is full, once they have waited for the queue timeout, or when the limiter is closed.
+ *
+ * Each call is started with a {@link Permit} that must be released once, with the outcome of the call. Queued calls
+ * are started, or rejected, on the Vert.x context they were submitted from.
+ *
+ * @author GraviteeSource Team
+ */
+public class ConcurrencyLimiter {
+
+    private static final double BACKOFF_RATIO = 0.9;
+
+    private static final ConcurrencyLimiter DISABLED = new ConcurrencyLimiter(
+        null,
+        Integer.MAX_VALUE,
+        Integer.MAX_VALUE,
+        Integer.MAX_VALUE,
+        0,
+        0,
+        0
+    );
+
+    private final Vertx vertx;
+    private final int minLimit;
+    private final int maxLimit;
+    private final int maxQueueSize;
+    private final long queueTimeout;
+    private final long latencyThreshold;
+
+    private final Deque<Waiter> queue = new ArrayDeque<>();
+    private final AtomicLong rejections = new AtomicLong();
+
+    private double limit;
+    private int inFlight;
+    private boolean closed;
+
+    /**
+     * @param queueTimeout maximum time a call waits in the queue before being rejected, in milliseconds, or 0 to wait
+     *     until the limit allows it.
+     * @param latencyThreshold latency above which a call is considered as a sign of overload, in milliseconds.
+     */
+    public ConcurrencyLimiter(Vertx vertx, int initialLimit, int maxLimit, int maxQueueSize, long queueTimeout, long latencyThreshold) {
+        this(vertx, initialLimit, maxLimit, maxQueueSize, queueTimeout, latencyThreshold, 1);
+    }
+
+    private ConcurrencyLimiter(
+        Vertx vertx,
+        int initialLimit,
+        int maxLimit,
+        int maxQueueSize,
+        long queueTimeout,
+        long latencyThreshold,
+        int minLimit
+    ) {
+        if (initialLimit <= 0 || maxLimit < initialLimit) {
+            throw new IllegalArgumentException("Concurrency limit must be greater than 0 and lower than the max limit");
+        }
+        this.vertx = vertx;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.maxQueueSize = Math.max(maxQueueSize, 0);
+        this.queueTimeout = Math.max(queueTimeout, 0);
+        this.latencyThreshold = TimeUnit.MILLISECONDS.toNanos(latencyThreshold);
+        this.limit = initialLimit;
+    }
+
+    /**
+     * A limiter that starts every call at once.
+     */
+    public static ConcurrencyLimiter disabled() {
+        return DISABLED;
+    }
+
+    /**
+     * Starts the call if the limit allows it, queues it otherwise, or calls the rejection handler if the queue is full.
+     * A queued call is rejected if it is not started within the queue timeout, or if the limiter is closed.
+     */
+    public void acquire(Handler<Permit> call, Runnable rejected) {
+        if (this == DISABLED) {
+            call.handle(Permit.NOOP);
+            return;
+        }
+
+        final Permit permit;
+        synchronized (this) {
+            if (closed) {
+                permit = null;
+            } else if (inFlight < (int) limit) {
+                inFlight++;
+                permit = new Permit(this);
+            } else if (queue.size() < maxQueueSize) {
+                final Waiter waiter = new Waiter(call, rejected, Vertx.currentContext());
+                if (queueTimeout > 0) {
+                    waiter.timerId = vertx.setTimer(queueTimeout, timerId -> expire(waiter));
+                }
+                queue.add(waiter);
+                return;
+            } else {
+                permit = null;
+            }
+        }
+
+        if (permit != null) {
+            call.handle(permit);
+        } else {
+            rejections.incrementAndGet();
+            rejected.run();
+        }
+    }
+
+    /**
+     * Starts a call only if the limit allows it now, without queueing it.
+     *
+     * @return the permit of the call, or <code>null</code> if it must not be sent.
+     */
+    public Permit tryAcquire() {
+        if (this == DISABLED) {
+            return Permit.NOOP;
+        }
+
+        synchronized (this) {
+            if (closed || !queue.isEmpty() || inFlight >= (int) limit) {
+                return null;
+            }
+            inFlight++;
+            return new Permit(this);
+        }
+    }
+
+    public synchronized int limit() {
+        return (int) limit;
+    }
+
+    public synchronized int inFlight() {
+        return inFlight;
+    }
+
+    public synchronized int queueSize() {
+        return queue.size();
+    }
+
+    public long rejections() {
+        return rejections.get();
+    }
+
+    /**
+     * Rejects the queued calls, and any call submitted from now on.
+     */
+    public void close() {
+        if (this == DISABLED) {
+            return;
+        }
+
+        final List<Waiter> waiters;
+        synchronized (this) {
+            closed = true;
+            waiters = new ArrayList<>(queue);
+            queue.clear();
+        }
+        waiters.forEach(Waiter::reject);
+    }
+
+    private void expire(Waiter waiter) {
+        synchronized (this) {
+            // The call may have been started, or rejected, in the meantime
+            if (!queue.remove(waiter)) {
+                return;
+            }
+        }
+        waiter.timerId = -1;
+        rejections.incrementAndGet();
+        waiter.reject();
+    }
+
+    private void release(long latencyNanos, boolean dropped, boolean adjust) {
+        Waiter next;
+        synchronized (this) {
+            inFlight--;
+            if (adjust) {
+                if (dropped || latencyNanos > latencyThreshold) {
+                    limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+                } else if (inFlight * 2 >= limit) {
+                    // Only grow the limit when it is actually used
+                    limit = Math.min(maxLimit, limit + 1);
+                }
+            }
+            next = poll();
+        }
+
+        while (next != null) {
+            next.start(new Permit(this));
+            synchronized (this) {
+                next = poll();
+            }
+        }
+    }
+
+    private Waiter poll() {
+        if (inFlight >= (int) limit || queue.isEmpty()) {
+            return null;
+        }
+        inFlight++;
+        return queue.poll();
+    }
+
+    /**
+     * The right to make a call. Only the first release of a permit is taken into account.
+     */
+    public static class Permit {
+
+        private static final Permit NOOP = new Permit(null);
+
+        private final ConcurrencyLimiter limiter;
+        private final long start = System.nanoTime();
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(ConcurrencyLimiter limiter) {
+            this.limiter = limiter;
+        }
+
+        /**
+         * Releases the permit once the call is complete.
+         *
+         * @param dropped whether the call failed because of Keycloak (error, timeout or server error).
+         */
+        public void release(boolean dropped) {
+            if (limiter != null && released.compareAndSet(false, true)) {
+                limiter.release(System.nanoTime() - start, dropped, true);
+            }
+        }
+
+        /**
+         * Releases the permit of a call that has not been made: the limit is left unchanged.
+         */
+        public void cancel() {
+            if (limiter != null && released.compareAndSet(false, true)) {
+                limiter.release(0, false, false);
+            }
+        }
+    }
+
+    private final class Waiter {
+
+        private final Handler<Permit> call;
+        private final Runnable rejected;
+        private final Context context;
+        private long timerId = -1;
+
+        private Waiter(Handler<Permit> call, Runnable rejected, Context context) {
+            this.call = call;
+            this.rejected = rejected;
+            this.context = context;
+        }
+
+        void start(Permit permit) {
+            cancelTimer();
+            run(() -> call.handle(permit));
+        }
+
+        void reject() {
+            cancelTimer();
+            run(rejected);
+        }
+
+        private void cancelTimer() {
+            if (timerId != -1) {
+                vertx.cancelTimer(timerId);
+            }
+        }
+
+        private void run(Runnable action) {
+            if (context != null && context != Vertx.currentContext()) {
+                context.runOnContext(v -> action.run());
+            } else {
+                action.run();
+            }
+        }
+    }
+}
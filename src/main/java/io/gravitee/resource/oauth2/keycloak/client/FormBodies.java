@@ -0,0 +1,79 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.resource.oauth2.keycloak.client;
+
+import io.netty.buffer.Unpooled;
+import io.vertx.core.buffer.Buffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes <code>application/x-www-form-urlencoded</code> request bodies straight into a byte array sized for the
+ * content and wrapped in a {@link Buffer}, without intermediate strings.
+ *
+ * @author GraviteeSource Team
+ */
+public final class FormBodies {
+
+    private static final byte[] TOKEN_PARAMETER = "token=".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] HEX = "0123456789ABCDEF".getBytes(StandardCharsets.US_ASCII);
+
+    private FormBodies() {}
+
+    /**
+     * The body of a token introspection request: <code>token=&lt;url encoded token&gt;</code>.
+     */
+    @SuppressWarnings("deprecation")
+    public static Buffer token(String token) {
+        final int tokenLength = token.length();
+        int reserved = 0;
+        for (int i = 0; i < tokenLength; i++) {
+            if (!isUnreserved(token.charAt(i))) {
+                reserved++;
+            }
+        }
+
+        final byte[] body = new byte[TOKEN_PARAMETER.length + tokenLength + 2 * reserved];
+        System.arraycopy(TOKEN_PARAMETER, 0, body, 0, TOKEN_PARAMETER.length);
+        if (reserved == 0) {
+            // Common case (JWT, UUID...): the token only holds ASCII characters, copied as is
+            token.getBytes(0, tokenLength, body, TOKEN_PARAMETER.length);
+            return Buffer.buffer(Unpooled.wrappedBuffer(body));
+        }
+
+        int position = TOKEN_PARAMETER.length;
+        for (int i = 0; i < tokenLength; i++) {
+            final char c = token.charAt(i);
+            if (isUnreserved(c)) {
+                body[position++] = (byte) c;
+            } else {
+                // Bearer tokens are ASCII: non-ASCII characters are not expected and are encoded as '?'
+                final byte b = c < 0x80 ? (byte) c : (byte) '?';
+                body[position++] = '%';
+                body[position++] = HEX[(b >> 4) & 0x0F];
+                body[position++] = HEX[b & 0x0F];
+            }
+        }
+
+        // Wrap the array, do not copy it
+        return Buffer.buffer(Unpooled.wrappedBuffer(body));
+    }
+
+    private static boolean isUnreserved(char c) {
+        return (
+            (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '-' || c == '.' || c == '_' || c == '~'
+        );
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.resource.oauth2.keycloak.client;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides when a call to Keycloak is hedged: if it is still waiting for its response after the hedging delay, a second
+ * identical call is sent and the first response wins.
+ *
+ * The delay is either static, or the 95th percentile of the latest call latencies (no call is hedged until enough
+ * latencies are known). The extra load is capped by a budget: each call earns a fraction of a hedge (the budget ratio),
+ * and a hedge is only sent if a whole one has been earned, so that hedges never exceed this ratio of the calls.
+ *
+ * @author GraviteeSource Team
+ */
+public class HedgingPolicy {
+
+    private static final int SAMPLES = 256;
+    private static final int MIN_SAMPLES = 32;
+    private static final int PERCENTILE_REFRESH = 32;
+    private static final double MAX_BALANCE = 10;
+
+    private static final HedgingPolicy DISABLED = new HedgingPolicy(0, 0);
+
+    private final long delay;
+    private final double budgetRatio;
+
+    private final long[] latencies = new long[SAMPLES];
+    private int samples;
+    private int sinceRefresh;
+    private int next;
+    private long percentile = -1;
+    private double balance;
+
+    /**
+     * @param delay hedging delay in milliseconds, or 0 to use the 95th percentile of the latest call latencies.
+     * @param budgetRatio maximum ratio of hedges to calls.
+     */
+    public HedgingPolicy(long delay, double budgetRatio) {
+        this.delay = delay;
+        this.budgetRatio = budgetRatio;
+    }
+
+    /**
+     * A policy that never hedges.
+     */
+    public static HedgingPolicy disabled() {
+        return DISABLED;
+    }
+
+    /**
+     * Registers a call to Keycloak.
+     *
+     * @return the delay after which the call may be hedged, in milliseconds, or -1 if it must not be hedged.
+     */
+    public long onCall() {
+        if (this == DISABLED) {
+            return -1;
+        }
+
+        synchronized (this) {
+            balance = Math.min(MAX_BALANCE, balance + budgetRatio);
+            if (delay > 0) {
+                return delay;
+            }
+            return percentile >= 0 ? Math.max(1, TimeUnit.NANOSECONDS.toMillis(percentile)) : -1;
+        }
+    }
+
+    /**
+     * Whether the budget allows to hedge a call now. If it does, the hedge is charged to the budget.
+     */
+    public synchronized boolean tryHedge() {
+        if (balance < 1) {
+            return false;
+        }
+        balance--;
+        return true;
+    }
+
+    /**
+     * Records the latency of a call that got a response.
+     */
+    public void record(long latencyNanos) {
+        if (this == DISABLED || delay > 0) {
+            return;
+        }
+
+        synchronized (this) {
+            latencies[next] = latencyNanos;
+            next = (next + 1) % SAMPLES;
+            samples = Math.min(samples + 1, SAMPLES);
+            if (++sinceRefresh >= PERCENTILE_REFRESH && samples >= MIN_SAMPLES) {
+                final long[] sorted = Arrays.copyOf(latencies, samples);
+                Arrays.sort(sorted);
+                percentile = sorted[(int) Math.ceil(sorted.length * 0.95) - 1];
+                sinceRefresh = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.resource.oauth2.keycloak.client;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import io.gravitee.resource.oauth2.keycloak.revocation.TokenIdentity;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.vertx.core.buffer.Buffer;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * The fields of an introspection endpoint response the resource relies on: <code>active</code>, <code>exp</code>
+ * and, when revocations are tracked, the {@link TokenIdentity} of the token.
+ *
+ * They are read with a streaming parser, straight from the bytes of the response body: nested values (roles, groups,
+ * ...) are skipped without being materialized, and parsing stops as soon as the requested fields are known.
+ *
+ * @author GraviteeSource Team
+ */
+public record IntrospectionResult(boolean active, long expiration, TokenIdentity identity) {
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    /**
+     * @param withExpiration whether the <code>exp</code> field is needed, or parsing can stop once <code>active</code>
+     *     is read.
+     */
+    public static IntrospectionResult parse(Buffer body, boolean withExpiration) throws IOException {
+        return parse(body, withExpiration, false);
+    }
+
+    /**
+     * @param withExpiration whether the <code>exp</code> field is needed, or parsing can stop once <code>active</code>
+     *     is read.
+     * @param withIdentity whether the identity of an active token is needed, in which case the whole response is read.
+     */
+    public static IntrospectionResult parse(Buffer body, boolean withExpiration, boolean withIdentity) throws IOException {
+        try (JsonParser parser = createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Introspection response is not a JSON object");
+            }
+
+            Boolean active = null;
+            long expiration = 0;
+            boolean expirationRead = !withExpiration;
+            String sessionId = null;
+            long issuedAt = 0;
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String field = parser.currentName();
+                final JsonToken value = parser.nextToken();
+                if ("active".equals(field)) {
+                    active = value == JsonToken.VALUE_TRUE;
+                    if (!active) {
+                        // Nothing else matters for an inactive token
+                        break;
+                    }
+                } else if ("exp".equals(field) && value == JsonToken.VALUE_NUMBER_INT) {
+                    expiration = parser.getLongValue();
+                    expirationRead = true;
+                } else if (withIdentity && value == JsonToken.VALUE_STRING && ("sid".equals(field) || "session_state".equals(field))) {
+                    sessionId = parser.getText();
+                } else if (withIdentity && "iat".equals(field) && value == JsonToken.VALUE_NUMBER_INT) {
+                    issuedAt = parser.getLongValue();
+                } else {
+                    parser.skipChildren();
+                }
+
+                if (active != null && expirationRead && !withIdentity) {
+                    break;
+                }
+            }
+
+            final boolean isActive = Boolean.TRUE.equals(active);
+            final TokenIdentity identity = withIdentity && isActive ? new TokenIdentity(sessionId, issuedAt) : null;
+            return new IntrospectionResult(isActive, expiration, identity);
+        }
+    }
+
+    /**
+     * A parser reading the bytes of the response body in place, without copying them.
+     */
+    @SuppressWarnings("deprecation")
+    private static JsonParser createParser(Buffer body) throws IOException {
+        final ByteBuf byteBuf = body.getByteBuf();
+        if (byteBuf.hasArray()) {
+            return JSON_FACTORY.createParser(byteBuf.array(), byteBuf.arrayOffset() + byteBuf.readerIndex(), byteBuf.readableBytes());
+        }
+        return JSON_FACTORY.createParser((InputStream) new ByteBufInputStream(byteBuf));
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.resource.oauth2.keycloak.client;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * The Keycloak nodes serving a realm, and the selection of the node a call is sent to.
+ *
+ * Calls are spread with the power of two choices: two nodes are picked at random and the one with the fewest calls in
+ * flight wins. A node failing several calls (or health checks) in a row is ejected for a while; a successful call or
+ * health check brings it back at once. If every node is ejected, the one whose ejection ends first is used rather than
+ * failing the call.
+ *
+ * @author GraviteeSource Team
+ */
+public class KeycloakEndpoints {
+
+    private final List<Endpoint> endpoints;
+    private final int failureThreshold;
+    private final long ejectionTime;
+    private final LongSupplier clock;
+
+    /**
+     * @param ejectionTime how long a failing node is ejected, in milliseconds.
+     */
+    public KeycloakEndpoints(List<URI> uris, int failureThreshold, long ejectionTime) {
+        this(uris, failureThreshold, ejectionTime, System::currentTimeMillis);
+    }
+
+    KeycloakEndpoints(List<URI> uris, int failureThreshold, long ejectionTime, LongSupplier clock) {
+        if (uris.isEmpty()) {
+            throw new IllegalArgumentException("At least one Keycloak endpoint is required");
+        }
+        this.failureThreshold = Math.max(failureThreshold, 1);
+        this.ejectionTime = ejectionTime;
+        this.clock = clock;
+        this.endpoints = new ArrayList<>(uris.size());
+        for (URI uri : uris) {
+            endpoints.add(new Endpoint(this, endpoints.size(), uri));
+        }
+    }
+
+    public List<Endpoint> all() {
+        return endpoints;
+    }
+
+    public int size() {
+        return endpoints.size();
+    }
+
+    public Endpoint select() {
+        final int size = endpoints.size();
+        if (size == 1) {
+            return endpoints.get(0);
+        }
+
+        final long now = clock.getAsLong();
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final int first = random.nextInt(size);
+        int second = random.nextInt(size - 1);
+        if (second >= first) {
+            second++;
+        }
+
+        final Endpoint a = endpoints.get(first);
+        final Endpoint b = endpoints.get(second);
+        final boolean aAvailable = a.isAvailable(now);
+        final boolean bAvailable = b.isAvailable(now);
+        if (aAvailable && bAvailable) {
+            return a.outstanding() <= b.outstanding() ? a : b;
+        } else if (aAvailable) {
+            return a;
+        } else if (bAvailable) {
+            return b;
+        }
+        return fallback(now);
+    }
+
+    /**
+     * Selects a node other than the given one, if there is another one.
+     */
+    public Endpoint selectOther(Endpoint excluded) {
+        final int size = endpoints.size();
+        if (size == 1) {
+            return excluded;
+        }
+
+        for (int i = 0; i < 2; i++) {
+            final Endpoint endpoint = select();
+            if (endpoint != excluded) {
+                return endpoint;
+            }
+        }
+        return endpoints.get((excluded.index + 1) % size);
+    }
+
+    /**
+     * Both picked nodes are ejected: use the least loaded available node, or the one whose ejection ends first.
+     */
+    private Endpoint fallback(long now) {
+        Endpoint selected = null;
+        for (Endpoint endpoint : endpoints) {
+            if (endpoint.isAvailable(now) && (selected == null || endpoint.outstanding() < selected.outstanding())) {
+                selected = endpoint;
+            }
+        }
+        if (selected != null) {
+            return selected;
+        }
+
+        selected = endpoints.get(0);
+        for (Endpoint endpoint : endpoints) {
+            if (endpoint.ejectedUntil < selected.ejectedUntil) {
+                selected = endpoint;
+            }
+        }
+        return selected;
+    }
+
+    public static class Endpoint {
+
+        private final KeycloakEndpoints endpoints;
+        private final int index;
+        private final String host;
+        private final int port;
+        private final boolean ssl;
+
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private final AtomicInteger consecutiveFailures = new AtomicInteger();
+        private volatile long ejectedUntil;
+
+        private Endpoint(KeycloakEndpoints endpoints, int index, URI uri) {
+            this.endpoints = endpoints;
+            this.index = index;
+            this.host = uri.getHost();
+            this.ssl = "https".equalsIgnoreCase(uri.getScheme());
+            this.port = uri.getPort() != -1 ? uri.getPort() : (ssl ? 443 : 80);
+        }
+
+        public int index() {
+            return index;
+        }
+
+        public String host() {
+            return host;
+        }
+
+        public int port() {
+            return port;
+        }
+
+        public boolean ssl() {
+            return ssl;
+        }
+
+        public int outstanding() {
+            return outstanding.get();
+        }
+
+        public boolean isEjected() {
+            return !isAvailable(endpoints.clock.getAsLong());
+        }
+
+        /**
+         * A call is sent to this node.
+         */
+        public void requestStarted() {
+            outstanding.incrementAndGet();
+        }
+
+        public void requestCompleted() {
+            outstanding.decrementAndGet();
+        }
+
+        /**
+         * Records the outcome of a call or health check.
+         *
+         * @param available whether the node answered (a server error or a network failure counts as unavailable).
+         */
+        public void record(boolean available) {
+            if (available) {
+                consecutiveFailures.set(0);
+                ejectedUntil = 0;
+            } else if (consecutiveFailures.incrementAndGet() >= endpoints.failureThreshold) {
+                ejectedUntil = endpoints.clock.getAsLong() + endpoints.ejectionTime;
+            }
+        }
+
+        private boolean isAvailable(long now) {
+            return ejectedUntil <= now;
+        }
+
+        @Override
+        public String toString() {
+            return (ssl ? "https://" : "http://") + host + ':' + port;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.resource.oauth2.keycloak.client;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates the identifiers sent in the <code>X-Gravitee-Request-Id</code> header: a random prefix drawn once, followed
+ * by a counter. Identifiers are unique for the lifetime of the generator, without the cost of a random UUID per call.
+ *
+ * @author GraviteeSource Team
+ */
+public final class RequestIds {
+
+    private final String prefix;
+    private final AtomicLong counter = new AtomicLong();
+
+    public RequestIds() {
+        this.prefix = Long.toHexString(ThreadLocalRandom.current().nextLong() | Long.MIN_VALUE) + '-';
+    }
+
+    public String next() {
+        return prefix.concat(Long.toHexString(counter.incrementAndGet()));
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.resource.oauth2.keycloak.client;
+
+import io.gravitee.gateway.api.handler.Handler;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Coalesces concurrent calls sharing the same key: the first caller triggers the call, every caller arriving while
+ * it is in flight is subscribed to its result. Each handler is completed on the Vert.x context it was registered from.
+ *
+ * @author GraviteeSource Team
+ */
+public class SingleFlight<T> {
+
+    private final Logger logger = LoggerFactory.getLogger(SingleFlight.class);
+
+    private final Map<String, Flight<T>> flights = new ConcurrentHashMap<>();
+
+    public void execute(String key, Handler<T> handler, Consumer<Handler<T>> call) {
+        final Subscriber<T> subscriber = new Subscriber<>(handler, Vertx.currentContext());
+        final Flight<T> candidate = new Flight<>();
+
+        final Flight<T> flight = flights.compute(key, (k, current) -> {
+            Flight<T> target = current != null ? current : candidate;
+            // Subscribers are only added under the map lock, before the flight is removed from the map.
+            target.subscribers.add(subscriber);
+            return target;
+        });
+
+        if (flight == candidate) {
+            try {
+                call.accept(result -> complete(key, flight, result));
+            } catch (RuntimeException ex) {
+                flights.remove(key, flight);
+                throw ex;
+            }
+        }
+    }
+
+    public int size() {
+        return flights.size();
+    }
+
+    private void complete(String key, Flight<T> flight, T result) {
+        flights.remove(key, flight);
+
+        for (Subscriber<T> subscriber : flight.subscribers) {
+            try {
+                subscriber.handle(result);
+            } catch (Exception ex) {
+                logger.error("An error occurs while completing a coalesced call", ex);
+            }
+        }
+    }
+
+    private static class Flight<T> {
+
+        private final List<Subscriber<T>> subscribers = new ArrayList<>(1);
+    }
+
+    private record Subscriber<T>(Handler<T> handler, Context context) {
+        void handle(T result) {
+            if (context == null || context == Vertx.currentContext()) {
+                handler.handle(result);
+            } else {
+                context.runOnContext(v -> handler.handle(result));
+            }
+        }
+    }
+}
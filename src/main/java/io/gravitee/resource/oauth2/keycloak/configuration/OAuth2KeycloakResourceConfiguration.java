@@ -16,6 +16,7 @@
 package io.gravitee.resource.oauth2.keycloak.configuration;
 
 import io.gravitee.resource.api.ResourceConfiguration;
+import java.util.List;
 
 /**
  * @author David BRASSELY (david.brassely at graviteesource.com)
@@ -33,6 +34,108 @@ public class OAuth2KeycloakResourceConfiguration implements ResourceConfiguratio
 
     private boolean trustAll = true;
 
+    private int maxPoolSize = 100;
+
+    private int maxWaitQueueSize = -1;
+
+    private boolean keepAlive = true;
+
+    private int keepAliveTimeout = 60;
+
+    private int idleTimeout = 60;
+
+    private boolean http2Enabled;
+
+    private int http2MaxConcurrentStreams = 100;
+
+    private int http2MaxPoolSize = 2;
+
+    private boolean introspectionCacheEnabled;
+
+    private long introspectionCacheTtl = 60;
+
+    private long introspectionCacheNegativeTtl = 5;
+
+    private int introspectionCacheMaxSize = 10_000;
+
+    private boolean verifiedTokenCacheEnabled;
+
+    private int verifiedTokenCacheMaxSize = 10_000;
+
+    private TokenValidationMode validationMode;
+
+    private long revalidationInterval = 30;
+
+    private boolean userInfoCacheEnabled;
+
+    private long userInfoCacheTtl = 60;
+
+    private int userInfoCacheMaxSize = 10_000;
+
+    private boolean userInfoFromToken;
+
+    private List<String> userInfoExtraClaims;
+
+    private boolean tracingEnabled;
+
+    private int connectTimeout = 5000;
+
+    private long requestTimeout = 10000;
+
+    private boolean circuitBreakerEnabled;
+
+    private int circuitBreakerFailureThreshold = 5;
+
+    private long circuitBreakerResetTimeout = 30;
+
+    private boolean serveStaleOnError;
+
+    private long staleGracePeriod = 300;
+
+    private boolean concurrencyLimitEnabled;
+
+    private int concurrencyLimitInitial = 20;
+
+    private int concurrencyLimitMax = 200;
+
+    private int concurrencyLimitQueueSize = 100;
+
+    private long concurrencyLimitQueueTimeout = 1000;
+
+    private long concurrencyLimitLatencyThreshold = 500;
+
+    private List<String> keycloakEndpoints;
+
+    private int healthCheckInterval = 10;
+
+    private int outlierFailureThreshold = 3;
+
+    private long outlierEjectionTime = 30;
+
+    private boolean hedgingEnabled;
+
+    private long hedgingDelay;
+
+    private int hedgingBudget = 10;
+
+    private boolean sharedClients = true;
+
+    private boolean rejectedTokenFilterEnabled;
+
+    private int rejectedTokenFilterCapacity = 100_000;
+
+    private double rejectedTokenFilterFalsePositiveRate = 0.000001;
+
+    private long rejectedTokenFilterWindow = 300;
+
+    private String revocationEventsAddress;
+
+    private long revocationRetention = 86400;
+
+    private boolean clusterCacheEnabled;
+
+    private List<String> projectedClaims;
+
     public String getKeycloakConfiguration() {
         return keycloakConfiguration;
     }
@@ -72,4 +175,412 @@ public class OAuth2KeycloakResourceConfiguration implements ResourceConfiguratio
     public void setTrustAll(boolean trustAll) {
         this.trustAll = trustAll;
     }
+
+    public int getMaxPoolSize() {
+        return maxPoolSize;
+    }
+
+    public void setMaxPoolSize(int maxPoolSize) {
+        this.maxPoolSize = maxPoolSize;
+    }
+
+    public int getMaxWaitQueueSize() {
+        return maxWaitQueueSize;
+    }
+
+    public void setMaxWaitQueueSize(int maxWaitQueueSize) {
+        this.maxWaitQueueSize = maxWaitQueueSize;
+    }
+
+    public boolean isKeepAlive() {
+        return keepAlive;
+    }
+
+    public void setKeepAlive(boolean keepAlive) {
+        this.keepAlive = keepAlive;
+    }
+
+    public int getKeepAliveTimeout() {
+        return keepAliveTimeout;
+    }
+
+    public void setKeepAliveTimeout(int keepAliveTimeout) {
+        this.keepAliveTimeout = keepAliveTimeout;
+    }
+
+    public int getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    public void setIdleTimeout(int idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
+
+    public boolean isHttp2Enabled() {
+        return http2Enabled;
+    }
+
+    public void setHttp2Enabled(boolean http2Enabled) {
+        this.http2Enabled = http2Enabled;
+    }
+
+    public int getHttp2MaxConcurrentStreams() {
+        return http2MaxConcurrentStreams;
+    }
+
+    public void setHttp2MaxConcurrentStreams(int http2MaxConcurrentStreams) {
+        this.http2MaxConcurrentStreams = http2MaxConcurrentStreams;
+    }
+
+    public int getHttp2MaxPoolSize() {
+        return http2MaxPoolSize;
+    }
+
+    public void setHttp2MaxPoolSize(int http2MaxPoolSize) {
+        this.http2MaxPoolSize = http2MaxPoolSize;
+    }
+
+    public boolean isIntrospectionCacheEnabled() {
+        return introspectionCacheEnabled;
+    }
+
+    public void setIntrospectionCacheEnabled(boolean introspectionCacheEnabled) {
+        this.introspectionCacheEnabled = introspectionCacheEnabled;
+    }
+
+    public long getIntrospectionCacheTtl() {
+        return introspectionCacheTtl;
+    }
+
+    public void setIntrospectionCacheTtl(long introspectionCacheTtl) {
+        this.introspectionCacheTtl = introspectionCacheTtl;
+    }
+
+    public long getIntrospectionCacheNegativeTtl() {
+        return introspectionCacheNegativeTtl;
+    }
+
+    public void setIntrospectionCacheNegativeTtl(long introspectionCacheNegativeTtl) {
+        this.introspectionCacheNegativeTtl = introspectionCacheNegativeTtl;
+    }
+
+    public int getIntrospectionCacheMaxSize() {
+        return introspectionCacheMaxSize;
+    }
+
+    public void setIntrospectionCacheMaxSize(int introspectionCacheMaxSize) {
+        this.introspectionCacheMaxSize = introspectionCacheMaxSize;
+    }
+
+    public boolean isVerifiedTokenCacheEnabled() {
+        return verifiedTokenCacheEnabled;
+    }
+
+    public void setVerifiedTokenCacheEnabled(boolean verifiedTokenCacheEnabled) {
+        this.verifiedTokenCacheEnabled = verifiedTokenCacheEnabled;
+    }
+
+    public int getVerifiedTokenCacheMaxSize() {
+        return verifiedTokenCacheMaxSize;
+    }
+
+    public void setVerifiedTokenCacheMaxSize(int verifiedTokenCacheMaxSize) {
+        this.verifiedTokenCacheMaxSize = verifiedTokenCacheMaxSize;
+    }
+
+    public TokenValidationMode getValidationMode() {
+        return validationMode;
+    }
+
+    public void setValidationMode(TokenValidationMode validationMode) {
+        this.validationMode = validationMode;
+    }
+
+    public long getRevalidationInterval() {
+        return revalidationInterval;
+    }
+
+    public void setRevalidationInterval(long revalidationInterval) {
+        this.revalidationInterval = revalidationInterval;
+    }
+
+    public boolean isUserInfoCacheEnabled() {
+        return userInfoCacheEnabled;
+    }
+
+    public void setUserInfoCacheEnabled(boolean userInfoCacheEnabled) {
+        this.userInfoCacheEnabled = userInfoCacheEnabled;
+    }
+
+    public long getUserInfoCacheTtl() {
+        return userInfoCacheTtl;
+    }
+
+    public void setUserInfoCacheTtl(long userInfoCacheTtl) {
+        this.userInfoCacheTtl = userInfoCacheTtl;
+    }
+
+    public int getUserInfoCacheMaxSize() {
+        return userInfoCacheMaxSize;
+    }
+
+    public void setUserInfoCacheMaxSize(int userInfoCacheMaxSize) {
+        this.userInfoCacheMaxSize = userInfoCacheMaxSize;
+    }
+
+    public boolean isUserInfoFromToken() {
+        return userInfoFromToken;
+    }
+
+    public void setUserInfoFromToken(boolean userInfoFromToken) {
+        this.userInfoFromToken = userInfoFromToken;
+    }
+
+    public List<String> getUserInfoExtraClaims() {
+        return userInfoExtraClaims;
+    }
+
+    public void setUserInfoExtraClaims(List<String> userInfoExtraClaims) {
+        this.userInfoExtraClaims = userInfoExtraClaims;
+    }
+
+    public boolean isTracingEnabled() {
+        return tracingEnabled;
+    }
+
+    public void setTracingEnabled(boolean tracingEnabled) {
+        this.tracingEnabled = tracingEnabled;
+    }
+
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public void setConnectTimeout(int connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    public long getRequestTimeout() {
+        return requestTimeout;
+    }
+
+    public void setRequestTimeout(long requestTimeout) {
+        this.requestTimeout = requestTimeout;
+    }
+
+    public boolean isCircuitBreakerEnabled() {
+        return circuitBreakerEnabled;
+    }
+
+    public void setCircuitBreakerEnabled(boolean circuitBreakerEnabled) {
+        this.circuitBreakerEnabled = circuitBreakerEnabled;
+    }
+
+    public int getCircuitBreakerFailureThreshold() {
+        return circuitBreakerFailureThreshold;
+    }
+
+    public void setCircuitBreakerFailureThreshold(int circuitBreakerFailureThreshold) {
+        this.circuitBreakerFailureThreshold = circuitBreakerFailureThreshold;
+    }
+
+    public long getCircuitBreakerResetTimeout() {
+        return circuitBreakerResetTimeout;
+    }
+
+    public void setCircuitBreakerResetTimeout(long circuitBreakerResetTimeout) {
+        this.circuitBreakerResetTimeout = circuitBreakerResetTimeout;
+    }
+
+    public boolean isServeStaleOnError() {
+        return serveStaleOnError;
+    }
+
+    public void setServeStaleOnError(boolean serveStaleOnError) {
+        this.serveStaleOnError = serveStaleOnError;
+    }
+
+    public long getStaleGracePeriod() {
+        return staleGracePeriod;
+    }
+
+    public void setStaleGracePeriod(long staleGracePeriod) {
+        this.staleGracePeriod = staleGracePeriod;
+    }
+
+    public boolean isConcurrencyLimitEnabled() {
+        return concurrencyLimitEnabled;
+    }
+
+    public void setConcurrencyLimitEnabled(boolean concurrencyLimitEnabled) {
+        this.concurrencyLimitEnabled = concurrencyLimitEnabled;
+    }
+
+    public int getConcurrencyLimitInitial() {
+        return concurrencyLimitInitial;
+    }
+
+    public void setConcurrencyLimitInitial(int concurrencyLimitInitial) {
+        this.concurrencyLimitInitial = concurrencyLimitInitial;
+    }
+
+    public int getConcurrencyLimitMax() {
+        return concurrencyLimitMax;
+    }
+
+    public void setConcurrencyLimitMax(int concurrencyLimitMax) {
+        this.concurrencyLimitMax = concurrencyLimitMax;
+    }
+
+    public int getConcurrencyLimitQueueSize() {
+        return concurrencyLimitQueueSize;
+    }
+
+    public void setConcurrencyLimitQueueSize(int concurrencyLimitQueueSize) {
+        this.concurrencyLimitQueueSize = concurrencyLimitQueueSize;
+    }
+
+    public long getConcurrencyLimitQueueTimeout() {
+        return concurrencyLimitQueueTimeout;
+    }
+
+    public void setConcurrencyLimitQueueTimeout(long concurrencyLimitQueueTimeout) {
+        this.concurrencyLimitQueueTimeout = concurrencyLimitQueueTimeout;
+    }
+
+    public long getConcurrencyLimitLatencyThreshold() {
+        return concurrencyLimitLatencyThreshold;
+    }
+
+    public void setConcurrencyLimitLatencyThreshold(long concurrencyLimitLatencyThreshold) {
+        this.concurrencyLimitLatencyThreshold = concurrencyLimitLatencyThreshold;
+    }
+
+    public List<String> getKeycloakEndpoints() {
+        return keycloakEndpoints;
+    }
+
+    public void setKeycloakEndpoints(List<String> keycloakEndpoints) {
+        this.keycloakEndpoints = keycloakEndpoints;
+    }
+
+    public int getHealthCheckInterval() {
+        return healthCheckInterval;
+    }
+
+    public void setHealthCheckInterval(int healthCheckInterval) {
+        this.healthCheckInterval = healthCheckInterval;
+    }
+
+    public int getOutlierFailureThreshold() {
+        return outlierFailureThreshold;
+    }
+
+    public void setOutlierFailureThreshold(int outlierFailureThreshold) {
+        this.outlierFailureThreshold = outlierFailureThreshold;
+    }
+
+    public long getOutlierEjectionTime() {
+        return outlierEjectionTime;
+    }
+
+    public void setOutlierEjectionTime(long outlierEjectionTime) {
+        this.outlierEjectionTime = outlierEjectionTime;
+    }
+
+    public boolean isHedgingEnabled() {
+        return hedgingEnabled;
+    }
+
+    public void setHedgingEnabled(boolean hedgingEnabled) {
+        this.hedgingEnabled = hedgingEnabled;
+    }
+
+    public long getHedgingDelay() {
+        return hedgingDelay;
+    }
+
+    public void setHedgingDelay(long hedgingDelay) {
+        this.hedgingDelay = hedgingDelay;
+    }
+
+    public int getHedgingBudget() {
+        return hedgingBudget;
+    }
+
+    public void setHedgingBudget(int hedgingBudget) {
+        this.hedgingBudget = hedgingBudget;
+    }
+
+    public boolean isSharedClients() {
+        return sharedClients;
+    }
+
+    public void setSharedClients(boolean sharedClients) {
+        this.sharedClients = sharedClients;
+    }
+
+    public boolean isRejectedTokenFilterEnabled() {
+        return rejectedTokenFilterEnabled;
+    }
+
+    public void setRejectedTokenFilterEnabled(boolean rejectedTokenFilterEnabled) {
+        this.rejectedTokenFilterEnabled = rejectedTokenFilterEnabled;
+    }
+
+    public int getRejectedTokenFilterCapacity() {
+        return rejectedTokenFilterCapacity;
+    }
+
+    public void setRejectedTokenFilterCapacity(int rejectedTokenFilterCapacity) {
+        this.rejectedTokenFilterCapacity = rejectedTokenFilterCapacity;
+    }
+
+    public double getRejectedTokenFilterFalsePositiveRate() {
+        return rejectedTokenFilterFalsePositiveRate;
+    }
+
+    public void setRejectedTokenFilterFalsePositiveRate(double rejectedTokenFilterFalsePositiveRate) {
+        this.rejectedTokenFilterFalsePositiveRate = rejectedTokenFilterFalsePositiveRate;
+    }
+
+    public long getRejectedTokenFilterWindow() {
+        return rejectedTokenFilterWindow;
+    }
+
+    public void setRejectedTokenFilterWindow(long rejectedTokenFilterWindow) {
+        this.rejectedTokenFilterWindow = rejectedTokenFilterWindow;
+    }
+
+    public String getRevocationEventsAddress() {
+        return revocationEventsAddress;
+    }
+
+    public void setRevocationEventsAddress(String revocationEventsAddress) {
+        this.revocationEventsAddress = revocationEventsAddress;
+    }
+
+    public long getRevocationRetention() {
+        return revocationRetention;
+    }
+
+    public void setRevocationRetention(long revocationRetention) {
+        this.revocationRetention = revocationRetention;
+    }
+
+    public boolean isClusterCacheEnabled() {
+        return clusterCacheEnabled;
+    }
+
+    public void setClusterCacheEnabled(boolean clusterCacheEnabled) {
+        this.clusterCacheEnabled = clusterCacheEnabled;
+    }
+
+    public List<String> getProjectedClaims() {
+        return projectedClaims;
+    }
+
+    public void setProjectedClaims(List<String> projectedClaims) {
+        this.projectedClaims = projectedClaims;
+    }
 }
@@ -0,0 +1,45 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.resource.oauth2.keycloak.configuration;
+
+/**
+ * How access tokens are validated by the resource.
+ *
+ * @author GraviteeSource Team
+ */
+public enum TokenValidationMode {
+    /**
+     * Tokens are sent to the Keycloak introspection endpoint.
+     */
+    REMOTE,
+
+    /**
+     * Tokens are validated locally, with the realm keys. Revoked tokens are accepted until they expire.
+     */
+    LOCAL,
+
+    /**
+     * Tokens are validated locally and periodically revalidated against the introspection endpoint, in the
+     * background. Tokens found inactive are denied from then on.
+     */
+    HYBRID,
+
+    /**
+     * Each token is routed according to its format: JWS signed with a known realm key are validated locally, other
+     * tokens (opaque tokens, unknown keys, ...) are sent to the introspection endpoint.
+     */
+    AUTO,
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.resource.oauth2.keycloak.jwks;
+
+import io.gravitee.common.http.HttpStatusCode;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientRequest;
+import io.vertx.core.http.HttpClientResponse;
+import io.vertx.core.http.RequestOptions;
+import java.io.IOException;
+import java.security.PublicKey;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import org.keycloak.adapters.KeycloakDeployment;
+import org.keycloak.adapters.rotation.PublicKeyLocator;
+import org.keycloak.jose.jwk.JSONWebKeySet;
+import org.keycloak.jose.jwk.JWK;
+import org.keycloak.util.JWKSUtils;
+import org.keycloak.util.JsonSerialization;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the realm signing keys in memory so that local token validation never does any I/O.
+ *
+ * Keys are fetched asynchronously through the Vert.x HTTP client when the store is started, then refreshed
+ * periodically and whenever an unknown key identifier is requested. Refreshes are coalesced and rate-limited by
+ * the minimum time between JWKS requests defined in the Keycloak adapter configuration. Listeners can be notified
+ * when the key set changes, for instance to drop results computed with keys that are no longer published.
+ *
+ * @author GraviteeSource Team
+ */
+public class JwksKeyStore implements PublicKeyLocator {
+
+    private final Logger logger = LoggerFactory.getLogger(JwksKeyStore.class);
+
+    private final Vertx vertx;
+    private final HttpClient httpClient;
+    private final RequestOptions jwksRequestOptions;
+    private final long minTimeBetweenRequests;
+    private final long refreshInterval;
+
+    private volatile Map<String, PublicKey> keys = Map.of();
+    private final List<Runnable> keysChangedListeners = new CopyOnWriteArrayList<>();
+
+    private Future<Void> pendingRefresh;
+    private long lastRefresh;
+    private long refreshTimerId = -1;
+
+    /**
+     * @param minTimeBetweenRequests minimum time between two JWKS requests, in seconds.
+     * @param refreshInterval interval between two periodic refreshes of the keys, in seconds.
+     */
+    public JwksKeyStore(
+        Vertx vertx,
+        HttpClient httpClient,
+        RequestOptions jwksRequestOptions,
+        int minTimeBetweenRequests,
+        int refreshInterval
+    ) {
+        this.vertx = vertx;
+        this.httpClient = httpClient;
+        this.jwksRequestOptions = jwksRequestOptions;
+        this.minTimeBetweenRequests = TimeUnit.SECONDS.toMillis(minTimeBetweenRequests);
+        this.refreshInterval = TimeUnit.SECONDS.toMillis(refreshInterval);
+    }
+
+    /**
+     * Registers a listener called (on an event loop thread) each time the refreshed key set differs from the
+     * previous one.
+     */
+    public void onKeysChanged(Runnable listener) {
+        keysChangedListeners.add(listener);
+    }
+
+    public void removeKeysChangedListener(Runnable listener) {
+        keysChangedListeners.remove(listener);
+    }
+
+    public void start() {
+        refresh();
+        if (refreshInterval > 0) {
+            refreshTimerId = vertx.setPeriodic(refreshInterval, timerId -> refresh());
+        }
+    }
+
+    public void stop() {
+        if (refreshTimerId != -1) {
+            vertx.cancelTimer(refreshTimerId);
+            refreshTimerId = -1;
+        }
+    }
+
+    /**
+     * Whether the given key identifier can be resolved from memory. A <code>null</code> key identifier is resolvable
+     * only if the realm exposes a single signing key.
+     */
+    public boolean containsKey(String kid) {
+        return findKey(kid) != null;
+    }
+
+    /**
+     * Refreshes the keys, unless a refresh is already in progress (in which case the pending refresh is returned), or
+     * the last one happened less than the minimum time between JWKS requests ago.
+     */
+    public synchronized Future<Void> refresh() {
+        if (pendingRefresh != null) {
+            return pendingRefresh;
+        }
+
+        if (lastRefresh != 0 && System.currentTimeMillis() - lastRefresh < minTimeBetweenRequests) {
+            return Future.succeededFuture();
+        }
+
+        logger.debug("Refresh realm keys from {}", jwksRequestOptions.getURI());
+
+        final Promise<Void> promise = Promise.promise();
+        pendingRefresh = promise.future();
+
+        // A connection closed by Keycloak while the keys are being read is worth a second attempt: callers are
+        // waiting for the keys to validate tokens signed with a new key.
+        fetchKeys()
+            .recover(cause -> cause instanceof UnexpectedStatusException ? Future.failedFuture(cause) : fetchKeys())
+            .onComplete(result -> {
+                // Keys are published before the refresh is marked as done so that a caller never sees a completed
+                // refresh with the previous keys.
+                if (result.succeeded()) {
+                    updateKeys(result.result());
+                } else {
+                    logger.error("An error occurs while fetching realm keys", result.cause());
+                }
+
+                synchronized (this) {
+                    pendingRefresh = null;
+                    lastRefresh = System.currentTimeMillis();
+                }
+
+                promise.complete();
+            });
+
+        return promise.future();
+    }
+
+    @Override
+    public PublicKey getPublicKey(String kid, KeycloakDeployment deployment) {
+        PublicKey publicKey = findKey(kid);
+        if (publicKey == null) {
+            logger.debug("No realm key found for kid {}, trigger a refresh", kid);
+            refresh();
+        }
+        return publicKey;
+    }
+
+    @Override
+    public void reset(KeycloakDeployment deployment) {
+        synchronized (this) {
+            lastRefresh = 0;
+        }
+        refresh();
+    }
+
+    private PublicKey findKey(String kid) {
+        final Map<String, PublicKey> currentKeys = keys;
+        if (kid == null) {
+            return currentKeys.size() == 1 ? currentKeys.values().iterator().next() : null;
+        }
+        return currentKeys.get(kid);
+    }
+
+    private Future<JSONWebKeySet> fetchKeys() {
+        return httpClient.request(jwksRequestOptions).compose(HttpClientRequest::send).compose(this::readBody).compose(this::parseKeys);
+    }
+
+    private Future<Buffer> readBody(HttpClientResponse response) {
+        if (response.statusCode() != HttpStatusCode.OK_200) {
+            return Future.failedFuture(new UnexpectedStatusException(response.statusCode()));
+        }
+        return response.body();
+    }
+
+    private Future<JSONWebKeySet> parseKeys(Buffer body) {
+        try {
+            return Future.succeededFuture(JsonSerialization.readValue(body.getBytes(), JSONWebKeySet.class));
+        } catch (IOException ioe) {
+            return Future.failedFuture(ioe);
+        }
+    }
+
+    private void updateKeys(JSONWebKeySet jwks) {
+        final Map<String, PublicKey> previousKeys = keys;
+        final Map<String, PublicKey> newKeys = new HashMap<>();
+        JWKSUtils
+            .getKeyWrappersForUse(jwks, JWK.Use.SIG)
+            .getKeys()
+            .forEach(key -> newKeys.put(key.getKid(), (PublicKey) key.getPublicKey()));
+        keys = Collections.unmodifiableMap(newKeys);
+        logger.debug("Realm keys refreshed: {}", keys.keySet());
+
+        if (!previousKeys.isEmpty() && !previousKeys.equals(keys)) {
+            keysChangedListeners.forEach(Runnable::run);
+        }
+    }
+
+    private static class UnexpectedStatusException extends IllegalStateException {
+
+        private static final long serialVersionUID = 1L;
+
+        UnexpectedStatusException(int statusCode) {
+            super("JWKS endpoint returns a " + statusCode + " status code");
+        }
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.resource.oauth2.keycloak.jwt;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.vertx.core.buffer.Buffer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reduces the token metadata passed to the policies (the payload of a locally validated token, or the response of
+ * the introspection endpoint) to the listed claims.
+ *
+ * The payload is copied with a streaming parser and generator: the claims which are not listed are skipped without
+ * being materialized. A claim may be a path to a nested claim, the segments being separated by dots as in the
+ * Keycloak token mappers (for instance <code>resource_access.gravitee.roles</code>). The claims the gateway relies on
+ * are always kept.
+ *
+ * @author GraviteeSource Team
+ */
+public final class ClaimProjection {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private static final List<String> REQUIRED_CLAIMS = List.of("active", "sub", "exp", "client_id", "scope", "username");
+
+    private static final ClaimProjection DISABLED = new ClaimProjection(null);
+
+    private final Node root;
+
+    private ClaimProjection(Node root) {
+        this.root = root;
+    }
+
+    public static ClaimProjection disabled() {
+        return DISABLED;
+    }
+
+    /**
+     * A projection keeping the given claims, along with the ones the gateway relies on. No projection is applied when
+     * no claim is listed.
+     */
+    public static ClaimProjection of(Collection<String> claims) {
+        if (claims == null || claims.stream().allMatch(claim -> claim == null || claim.isBlank())) {
+            return DISABLED;
+        }
+
+        final Node root = new Node();
+        REQUIRED_CLAIMS.forEach(root::add);
+        claims.stream().filter(claim -> claim != null && !claim.isBlank()).map(String::trim).forEach(root::add);
+        return new ClaimProjection(root);
+    }
+
+    public boolean isEnabled() {
+        return root != null;
+    }
+
+    public String project(byte[] payload) throws IOException {
+        if (root == null) {
+            return new String(payload, StandardCharsets.UTF_8);
+        }
+
+        try (JsonParser parser = JSON_FACTORY.createParser(payload)) {
+            return project(parser, payload.length);
+        }
+    }
+
+    /**
+     * Projects a response body, read in place without copying its bytes.
+     */
+    @SuppressWarnings("deprecation")
+    public String project(Buffer body) throws IOException {
+        if (root == null) {
+            return body.toString();
+        }
+
+        final ByteBuf byteBuf = body.getByteBuf();
+        try (
+            JsonParser parser = byteBuf.hasArray()
+                ? JSON_FACTORY.createParser(byteBuf.array(), byteBuf.arrayOffset() + byteBuf.readerIndex(), byteBuf.readableBytes())
+                : JSON_FACTORY.createParser((InputStream) new ByteBufInputStream(byteBuf))
+        ) {
+            return project(parser, byteBuf.readableBytes());
+        }
+    }
+
+    private String project(JsonParser parser, int length) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new IOException("Token metadata is not a JSON object");
+        }
+
+        // The projected payload is usually a small part of the original one
+        final StringWriter writer = new StringWriter(Math.min(length, 512));
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(writer)) {
+            copy(parser, generator, root);
+        }
+        return writer.toString();
+    }
+
+    private static void copy(JsonParser parser, JsonGenerator generator, Node node) throws IOException {
+        generator.writeStartObject();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String name = parser.currentName();
+            final JsonToken value = parser.nextToken();
+            final Node child = node.children.get(name);
+            if (child != null && child.isLeaf()) {
+                generator.writeFieldName(name);
+                generator.copyCurrentStructure(parser);
+            } else if (child != null && value == JsonToken.START_OBJECT) {
+                generator.writeFieldName(name);
+                copy(parser, generator, child);
+            } else {
+                parser.skipChildren();
+            }
+        }
+        generator.writeEndObject();
+    }
+
+    /**
+     * A claim to keep: entirely when it has no children, otherwise only its listed children.
+     */
+    private static final class Node {
+
+        private final Map<String, Node> children = new HashMap<>();
+        private boolean leaf;
+
+        void add(String path) {
+            Node node = this;
+            for (String segment : path.split("\\.")) {
+                if (node.leaf) {
+                    // A parent claim is already kept entirely
+                    return;
+                }
+                node = node.children.computeIfAbsent(segment, s -> new Node());
+            }
+            node.leaf = true;
+            node.children.clear();
+        }
+
+        boolean isLeaf() {
+            return leaf;
+        }
+    }
+}
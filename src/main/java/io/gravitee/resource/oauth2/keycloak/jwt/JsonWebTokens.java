@@ -0,0 +1,113 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.resource.oauth2.keycloak.jwt;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import java.io.IOException;
+import java.util.Base64;
+
+/**
+ * Helpers to read a compact serialized JWT without fully parsing it.
+ *
+ * @author GraviteeSource Team
+ */
+public final class JsonWebTokens {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private JsonWebTokens() {}
+
+    /**
+     * Returns the <code>kid</code> header of the given token, or <code>null</code> if the token is not a JWS or has
+     * no key identifier.
+     */
+    public static String kid(String token) {
+        final Header header = header(token);
+        return header == null ? null : header.kid();
+    }
+
+    /**
+     * Whether the given token has the shape of a compact serialized JWS (three dot-separated segments), whether or not
+     * these segments can be decoded.
+     */
+    public static boolean hasJwsShape(String token) {
+        final int firstDot = token.indexOf('.');
+        final int secondDot = firstDot == -1 ? -1 : token.indexOf('.', firstDot + 1);
+        return secondDot != -1 && token.indexOf('.', secondDot + 1) == -1;
+    }
+
+    /**
+     * Reads the protected header of a compact serialized JWS: three non-empty Base64URL segments, the first one being
+     * a JSON object with an <code>alg</code> member. Returns <code>null</code> for any other token (opaque tokens,
+     * JWE, ...).
+     */
+    public static Header header(String token) {
+        final int firstDot = token.indexOf('.');
+        final int secondDot = firstDot <= 0 ? -1 : token.indexOf('.', firstDot + 1);
+        if (secondDot == -1 || secondDot == firstDot + 1 || secondDot == token.length() - 1 || token.indexOf('.', secondDot + 1) != -1) {
+            return null;
+        }
+
+        String alg = null;
+        String kid = null;
+        try {
+            byte[] header = Base64.getUrlDecoder().decode(token.substring(0, firstDot));
+            try (JsonParser parser = JSON_FACTORY.createParser(header)) {
+                if (parser.nextToken() != JsonToken.START_OBJECT) {
+                    return null;
+                }
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.currentName();
+                    JsonToken value = parser.nextToken();
+                    if ("alg".equals(field) && value == JsonToken.VALUE_STRING) {
+                        alg = parser.getText();
+                    } else if ("kid".equals(field) && value == JsonToken.VALUE_STRING) {
+                        kid = parser.getText();
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            }
+        } catch (IllegalArgumentException | IOException ex) {
+            // Not a JWS
+            return null;
+        }
+
+        return alg == null ? null : new Header(alg, kid);
+    }
+
+    /**
+     * Reads the registered claims of a compact serialized JWS <b>without verifying it</b>, or returns
+     * <code>null</code> if the token is not a JWS. Must only be used for decisions that do not grant access, like
+     * bounding the lifetime of a cache entry.
+     */
+    public static TokenClaims unverifiedClaims(String token) {
+        if (header(token) == null) {
+            return null;
+        }
+
+        final int firstDot = token.indexOf('.');
+        try {
+            return TokenClaims.parse(Base64.getUrlDecoder().decode(token.substring(firstDot + 1, token.indexOf('.', firstDot + 1))));
+        } catch (IllegalArgumentException | IOException ex) {
+            return null;
+        }
+    }
+
+    public record Header(String alg, String kid) {}
+}
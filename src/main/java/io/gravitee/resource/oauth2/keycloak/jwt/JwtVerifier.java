@@ -0,0 +1,279 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.resource.oauth2.keycloak.jwt;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import org.keycloak.common.VerificationException;
+
+/**
+ * Verifies Keycloak access tokens (compact JWS) without binding them to Java objects.
+ *
+ * The token is decoded once, the signature is checked with the realm key matching its <code>kid</code> header, and
+ * the registered claims are read with a streaming parser. The same checks as the Keycloak adapter are
+ * applied: signature, issuer, subject, token type, expiration, not-before and, if enabled, audience.
+ *
+ * @author GraviteeSource Team
+ */
+public class JwtVerifier {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private static final String BEARER_TOKEN_TYPE = "Bearer";
+
+    // Realm keys are few: the converted keys are dropped all at once when keys keep being rotated
+    private static final int MAX_CONVERTED_KEYS = 16;
+
+    private final Function<String, PublicKey> publicKeys;
+    private final Supplier<String> issuer;
+    private final String audience;
+    private final ClaimProjection claimProjection;
+    private final Map<PublicKey, PublicKey> convertedKeys = new ConcurrentHashMap<>();
+
+    /**
+     * @param publicKeys resolves the realm public key from a key identifier.
+     * @param issuer the expected token issuer (realm URL).
+     * @param audience the audience expected in the token, or <code>null</code> to skip the audience check.
+     */
+    public JwtVerifier(Function<String, PublicKey> publicKeys, Supplier<String> issuer, String audience) {
+        this(publicKeys, issuer, audience, ClaimProjection.disabled());
+    }
+
+    /**
+     * @param claimProjection the claims of the verified token payload passed to the policies.
+     */
+    public JwtVerifier(Function<String, PublicKey> publicKeys, Supplier<String> issuer, String audience, ClaimProjection claimProjection) {
+        this.publicKeys = publicKeys;
+        this.issuer = issuer;
+        this.audience = audience;
+        this.claimProjection = claimProjection;
+    }
+
+    public VerifiedToken verify(String token) throws VerificationException {
+        final byte[] jws = token.getBytes(StandardCharsets.US_ASCII);
+        final int firstDot = indexOf(jws, 0);
+        final int secondDot = firstDot == -1 ? -1 : indexOf(jws, firstDot + 1);
+        if (firstDot <= 0 || secondDot == -1 || indexOf(jws, secondDot + 1) != -1) {
+            throw new VerificationException("Token is not a compact JWS");
+        }
+
+        try {
+            verifySignature(jws, firstDot, secondDot);
+
+            final byte[] payload = decode(jws, firstDot + 1, secondDot);
+            final TokenClaims claims = TokenClaims.parse(payload);
+            verifyClaims(claims);
+
+            return new VerifiedToken(enrich(claimProjection.project(payload), claims), claims);
+        } catch (IOException | IllegalArgumentException ex) {
+            throw new VerificationException("Unable to read token", ex);
+        }
+    }
+
+    private void verifySignature(byte[] jws, int firstDot, int secondDot) throws IOException, VerificationException {
+        String alg = null;
+        String kid = null;
+
+        try (JsonParser parser = JSON_FACTORY.createParser(decode(jws, 0, firstDot))) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new VerificationException("Token header is not a JSON object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String field = parser.currentName();
+                final JsonToken value = parser.nextToken();
+                if ("alg".equals(field) && value == JsonToken.VALUE_STRING) {
+                    alg = parser.getText();
+                } else if ("kid".equals(field) && value == JsonToken.VALUE_STRING) {
+                    kid = parser.getText();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+
+        final SignatureAlgorithm algorithm = SignatureAlgorithm.of(alg);
+        if (algorithm == null) {
+            throw new VerificationException("Unsupported signature algorithm: " + alg);
+        }
+
+        final PublicKey realmKey = publicKeys.apply(kid);
+        if (realmKey == null) {
+            throw new VerificationException("Didn't find publicKey for kid: " + kid);
+        }
+        final PublicKey publicKey = toJdkKey(realmKey);
+
+        try {
+            final Signature signature = algorithm.signature();
+            signature.initVerify(publicKey);
+            signature.update(jws, 0, secondDot);
+            if (!signature.verify(decode(jws, secondDot + 1, jws.length))) {
+                throw new VerificationException("Invalid token signature");
+            }
+        } catch (GeneralSecurityException gse) {
+            throw new VerificationException("Unable to verify token signature", gse);
+        }
+    }
+
+    /**
+     * Keycloak parses EC realm keys with BouncyCastle, as <code>ECDSA</code> keys the JDK signature providers reject:
+     * they are converted once to JDK keys.
+     */
+    private PublicKey toJdkKey(PublicKey key) throws VerificationException {
+        if (!"ECDSA".equals(key.getAlgorithm())) {
+            return key;
+        }
+
+        PublicKey converted = convertedKeys.get(key);
+        if (converted == null) {
+            try {
+                converted = KeyFactory.getInstance("EC").generatePublic(new X509EncodedKeySpec(key.getEncoded()));
+            } catch (GeneralSecurityException gse) {
+                throw new VerificationException("Unable to read realm key", gse);
+            }
+            if (convertedKeys.size() >= MAX_CONVERTED_KEYS) {
+                convertedKeys.clear();
+            }
+            convertedKeys.put(key, converted);
+        }
+        return converted;
+    }
+
+    private void verifyClaims(TokenClaims claims) throws VerificationException {
+        final String realmUrl = issuer.get();
+        if (realmUrl == null || !realmUrl.equals(claims.getIssuer())) {
+            throw new VerificationException("Invalid token issuer. Expected '" + realmUrl + "'");
+        }
+
+        if (claims.getSubject() == null) {
+            throw new VerificationException("Subject missing in token");
+        }
+
+        if (!BEARER_TOKEN_TYPE.equalsIgnoreCase(claims.getType())) {
+            throw new VerificationException(
+                "Token type is incorrect. Expected '" + BEARER_TOKEN_TYPE + "' but was '" + claims.getType() + "'"
+            );
+        }
+
+        verifyLifetime(claims);
+
+        if (audience != null && !claims.getAudience().contains(audience)) {
+            throw new VerificationException("Expected audience not available in the token");
+        }
+    }
+
+    /**
+     * Checks the time-based claims (<code>exp</code> and <code>nbf</code>) of a token.
+     */
+    public static void verifyLifetime(TokenClaims claims) throws VerificationException {
+        final long now = System.currentTimeMillis() / 1000;
+        if (claims.getExpiration() != 0 && now > claims.getExpiration()) {
+            throw new VerificationException("Token is not active");
+        }
+        if (claims.getNotBefore() != 0 && now < claims.getNotBefore()) {
+            throw new VerificationException("Token is not active");
+        }
+    }
+
+    /**
+     * Sets the <code>client_id</code> and <code>username</code> claims expected by the gateway policies from the
+     * <code>azp</code> and <code>preferred_username</code> claims, as the Keycloak adapter based validation did. They
+     * are appended to the payload, which is only rewritten when the token already has one of them.
+     */
+    private static String enrich(String payload, TokenClaims claims) throws IOException {
+        if (claims.hasClientIdClaim() || claims.hasUsernameClaim()) {
+            return rewrite(payload, claims);
+        }
+
+        final int end = payload.lastIndexOf('}');
+        final StringBuilder builder = new StringBuilder(payload.length() + 128).append(payload, 0, end);
+        if (!payload.substring(payload.indexOf('{') + 1, end).isBlank()) {
+            builder.append(',');
+        }
+        appendField(builder, "client_id", claims.getIssuedFor());
+        builder.append(',');
+        appendField(builder, "username", claims.getPreferredUsername());
+        return builder.append('}').toString();
+    }
+
+    private static String rewrite(String payload, TokenClaims claims) throws IOException {
+        final StringWriter writer = new StringWriter(payload.length() + 128);
+        try (JsonParser parser = JSON_FACTORY.createParser(payload); JsonGenerator generator = JSON_FACTORY.createGenerator(writer)) {
+            parser.nextToken();
+            generator.writeStartObject();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String name = parser.currentName();
+                parser.nextToken();
+                if ("client_id".equals(name) || "username".equals(name)) {
+                    parser.skipChildren();
+                } else {
+                    generator.writeFieldName(name);
+                    generator.copyCurrentStructure(parser);
+                }
+            }
+            generator.writeStringField("client_id", claims.getIssuedFor());
+            generator.writeStringField("username", claims.getPreferredUsername());
+            generator.writeEndObject();
+        }
+        return writer.toString();
+    }
+
+    private static void appendField(StringBuilder builder, String name, String value) {
+        builder.append('"').append(name).append("\":");
+        if (value == null) {
+            builder.append("null");
+            return;
+        }
+        builder.append('"');
+        JsonStringEncoder.getInstance().quoteAsString(value, builder);
+        builder.append('"');
+    }
+
+    private static byte[] decode(byte[] jws, int from, int to) {
+        final ByteBuffer decoded = DECODER.decode(ByteBuffer.wrap(jws, from, to - from));
+        final byte[] array = decoded.array();
+        return decoded.remaining() == array.length ? array : Arrays.copyOfRange(array, decoded.position(), decoded.limit());
+    }
+
+    private static int indexOf(byte[] jws, int from) {
+        for (int i = from; i < jws.length; i++) {
+            if (jws[i] == '.') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public record VerifiedToken(String payload, TokenClaims claims) {}
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.resource.oauth2.keycloak.jwt;
+
+import java.security.GeneralSecurityException;
+import java.security.Signature;
+import java.security.spec.AlgorithmParameterSpec;
+import java.security.spec.MGF1ParameterSpec;
+import java.security.spec.PSSParameterSpec;
+
+/**
+ * The JWS asymmetric signature algorithms supported for local validation. {@link Signature} instances are not thread
+ * safe, so each thread keeps its own instance per algorithm.
+ *
+ * @author GraviteeSource Team
+ */
+enum SignatureAlgorithm {
+    RS256("SHA256withRSA", null),
+    RS384("SHA384withRSA", null),
+    RS512("SHA512withRSA", null),
+    PS256("RSASSA-PSS", new PSSParameterSpec("SHA-256", "MGF1", MGF1ParameterSpec.SHA256, 32, 1)),
+    PS384("RSASSA-PSS", new PSSParameterSpec("SHA-384", "MGF1", MGF1ParameterSpec.SHA384, 48, 1)),
+    PS512("RSASSA-PSS", new PSSParameterSpec("SHA-512", "MGF1", MGF1ParameterSpec.SHA512, 64, 1)),
+    // JWS ECDSA signatures are the concatenation of R and S (IEEE P1363), not DER
+    ES256("SHA256withECDSAinP1363Format", null),
+    ES384("SHA384withECDSAinP1363Format", null),
+    ES512("SHA512withECDSAinP1363Format", null),
+    EdDSA("EdDSA", null);
+
+    private final String jcaName;
+    private final AlgorithmParameterSpec parameters;
+    private final ThreadLocal<Signature> signatures;
+
+    SignatureAlgorithm(String jcaName, AlgorithmParameterSpec parameters) {
+        this.jcaName = jcaName;
+        this.parameters = parameters;
+        this.signatures = ThreadLocal.withInitial(this::newSignature);
+    }
+
+    static SignatureAlgorithm of(String alg) {
+        if (alg == null) {
+            return null;
+        }
+        return switch (alg) {
+            case "RS256" -> RS256;
+            case "RS384" -> RS384;
+            case "RS512" -> RS512;
+            case "PS256" -> PS256;
+            case "PS384" -> PS384;
+            case "PS512" -> PS512;
+            case "ES256" -> ES256;
+            case "ES384" -> ES384;
+            case "ES512" -> ES512;
+            case "EdDSA" -> EdDSA;
+            default -> null;
+        };
+    }
+
+    Signature signature() throws GeneralSecurityException {
+        Signature signature = signatures.get();
+        if (parameters != null) {
+            signature.setParameter(parameters);
+        }
+        return signature;
+    }
+
+    private Signature newSignature() {
+        try {
+            return Signature.getInstance(jcaName);
+        } catch (GeneralSecurityException gse) {
+            throw new IllegalStateException("Signature algorithm " + jcaName + " is not supported by the JVM", gse);
+        }
+    }
+}
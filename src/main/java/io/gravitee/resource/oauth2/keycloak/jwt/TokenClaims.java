@@ -0,0 +1,173 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.resource.oauth2.keycloak.jwt;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The registered claims of an access token that are needed to validate it, read with a streaming parser.
+ *
+ * @author GraviteeSource Team
+ */
+public class TokenClaims {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private String issuer;
+    private List<String> audience = List.of();
+    private String type;
+    private String subject;
+    private String issuedFor;
+    private String preferredUsername;
+    private String sessionId;
+    private long expiration;
+    private long notBefore;
+    private long issuedAt;
+    private boolean clientIdClaim;
+    private boolean usernameClaim;
+
+    public static TokenClaims parse(byte[] payload) throws IOException {
+        final TokenClaims claims = new TokenClaims();
+
+        try (JsonParser parser = JSON_FACTORY.createParser(payload)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Token payload is not a JSON object");
+            }
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String field = parser.currentName();
+                final JsonToken value = parser.nextToken();
+                switch (field) {
+                    case "iss" -> claims.issuer = textValue(parser, value);
+                    case "aud" -> claims.audience = audienceValue(parser, value);
+                    case "typ" -> claims.type = textValue(parser, value);
+                    case "sub" -> claims.subject = textValue(parser, value);
+                    case "azp" -> claims.issuedFor = textValue(parser, value);
+                    case "preferred_username" -> claims.preferredUsername = textValue(parser, value);
+                    case "sid" -> claims.sessionId = textValue(parser, value);
+                    case "session_state" -> {
+                        // Session identifier of the tokens issued before Keycloak 18
+                        final String sessionState = textValue(parser, value);
+                        if (claims.sessionId == null) {
+                            claims.sessionId = sessionState;
+                        }
+                    }
+                    case "exp" -> claims.expiration = longValue(parser, value);
+                    case "nbf" -> claims.notBefore = longValue(parser, value);
+                    case "iat" -> claims.issuedAt = longValue(parser, value);
+                    case "client_id" -> claims.clientIdClaim = true;
+                    case "username" -> claims.usernameClaim = true;
+                    default -> parser.skipChildren();
+                }
+            }
+        }
+
+        return claims;
+    }
+
+    private static String textValue(JsonParser parser, JsonToken value) throws IOException {
+        if (value == JsonToken.VALUE_STRING) {
+            return parser.getText();
+        }
+        parser.skipChildren();
+        return null;
+    }
+
+    private static long longValue(JsonParser parser, JsonToken value) throws IOException {
+        if (value == JsonToken.VALUE_NUMBER_INT || value == JsonToken.VALUE_NUMBER_FLOAT) {
+            return parser.getValueAsLong();
+        }
+        parser.skipChildren();
+        return 0;
+    }
+
+    private static List<String> audienceValue(JsonParser parser, JsonToken value) throws IOException {
+        if (value == JsonToken.VALUE_STRING) {
+            return List.of(parser.getText());
+        } else if (value == JsonToken.START_ARRAY) {
+            final List<String> audience = new ArrayList<>(2);
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                if (parser.currentToken() == JsonToken.VALUE_STRING) {
+                    audience.add(parser.getText());
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            return audience;
+        }
+        parser.skipChildren();
+        return List.of();
+    }
+
+    public String getIssuer() {
+        return issuer;
+    }
+
+    public List<String> getAudience() {
+        return audience;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getSubject() {
+        return subject;
+    }
+
+    public String getIssuedFor() {
+        return issuedFor;
+    }
+
+    public String getPreferredUsername() {
+        return preferredUsername;
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    /**
+     * @return the expiration time, in seconds since epoch, or <code>0</code> if the token does not expire.
+     */
+    public long getExpiration() {
+        return expiration;
+    }
+
+    /**
+     * @return the time before which the token must not be accepted, in seconds since epoch, or <code>0</code>.
+     */
+    public long getNotBefore() {
+        return notBefore;
+    }
+
+    public long getIssuedAt() {
+        return issuedAt;
+    }
+
+    public boolean hasClientIdClaim() {
+        return clientIdClaim;
+    }
+
+    public boolean hasUsernameClaim() {
+        return usernameClaim;
+    }
+}
@@ -0,0 +1,375 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.resource.oauth2.keycloak.metrics;
+
+import io.gravitee.resource.oauth2.keycloak.cache.RejectedTokenFilter;
+import io.gravitee.resource.oauth2.keycloak.client.ConcurrencyLimiter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.noop.NoopCounter;
+import io.micrometer.core.instrument.noop.NoopTimer;
+import io.vertx.core.http.HttpConnection;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The meters of a resource, tagged with the Keycloak realm and client:
+ * <ul>
+ *     <li><code>gravitee.resource.keycloak.introspection</code>: introspection latency, by validation (local or remote)
+ *     and outcome (active, inactive or error). Remote introspections are measured only when Keycloak is called.</li>
+ *     <li><code>gravitee.resource.keycloak.userinfo</code>: userinfo latency, by validation (local when built from the
+ *     token claims, remote when Keycloak is called) and outcome (success, failure or error).</li>
+ *     <li><code>gravitee.resource.keycloak.verification</code>: signature and claims verification time of local
+ *     validations, by outcome (valid or invalid).</li>
+ *     <li><code>gravitee.resource.keycloak.http.responses</code>: Keycloak responses, by endpoint and status code.</li>
+ *     <li><code>gravitee.resource.keycloak.http.requests.active</code>: Keycloak calls in flight, including the ones
+ *     waiting for a connection, and <code>gravitee.resource.keycloak.http.requests.pending</code>: the calls waiting for
+ *     a connection of the pool.</li>
+ *     <li><code>gravitee.resource.keycloak.http.connections</code>: connections opened to Keycloak.</li>
+ *     <li><code>gravitee.resource.keycloak.http.hedges</code>: hedged introspection calls, by result (won when the hedge
+ *     answered first, lost otherwise).</li>
+ *     <li><code>gravitee.resource.keycloak.concurrency.limit</code>, <code>gravitee.resource.keycloak.concurrency.queued</code>
+ *     and <code>gravitee.resource.keycloak.concurrency.rejections</code>: the adaptive limit of calls in flight to
+ *     Keycloak, the calls waiting for it, and the calls rejected because the queue was full or they waited longer
+ *     than the queue timeout (when the concurrency limit is enabled). Each resource has its own limiter: these meters are also tagged with the resource instance,
+ *     and removed when it is stopped.</li>
+ *     <li><code>gravitee.resource.keycloak.cache.requests</code>: cache lookups, by cache and result (hit or miss). The
+ *     cluster tier of a cache is only looked up when the token is not found in memory.</li>
+ * </ul>
+ *
+ * Timers and counters are looked up once: recording does not allocate. The resources of a same realm and client share
+ * their meters, so the gauges are backed by counters shared by these resources.
+ *
+ * @author GraviteeSource Team
+ */
+public class ResourceMetrics {
+
+    private static final String PREFIX = "gravitee.resource.keycloak.";
+
+    private static final Map<Tags, HttpState> HTTP_STATES = new ConcurrentHashMap<>();
+    private static final AtomicInteger INSTANCES = new AtomicInteger();
+
+    private static final ResourceMetrics DISABLED = new ResourceMetrics();
+
+    public enum Validation {
+        LOCAL,
+        REMOTE,
+    }
+
+    public enum IntrospectionOutcome {
+        ACTIVE,
+        INACTIVE,
+        ERROR,
+    }
+
+    public enum UserInfoOutcome {
+        SUCCESS,
+        FAILURE,
+        ERROR,
+    }
+
+    public enum Endpoint {
+        INTROSPECTION,
+        USERINFO,
+    }
+
+    public enum Cache {
+        INTROSPECTION,
+        VERIFIED_TOKEN,
+        USERINFO,
+        INTROSPECTION_CLUSTER,
+        USERINFO_CLUSTER,
+    }
+
+    public enum FastRejection {
+        MALFORMED,
+        EXPIRED,
+        FILTERED,
+    }
+
+    private final boolean enabled;
+    private final MeterRegistry registry;
+    private final Tags tags;
+    private final HttpState http;
+    // Meters backed by objects of this resource instance, removed when it is stopped
+    private final Tags instanceTags;
+    private final List<Meter> instanceMeters = new CopyOnWriteArrayList<>();
+
+    private final Timer[][] introspectionTimers = new Timer[Validation.values().length][IntrospectionOutcome.values().length];
+    private final Timer[][] userInfoTimers = new Timer[Validation.values().length][UserInfoOutcome.values().length];
+    private final Timer validVerificationTimer;
+    private final Timer invalidVerificationTimer;
+    private final Counter[][] cacheCounters = new Counter[Cache.values().length][2];
+    private final Map<Endpoint, Map<Integer, Counter>> responseCounters = new EnumMap<>(Endpoint.class);
+    private final Counter wonHedges;
+    private final Counter lostHedges;
+    private final Counter[] fastRejectionCounters = new Counter[FastRejection.values().length];
+
+    /**
+     * Meters that record nothing, when the gateway does not expose metrics.
+     */
+    public static ResourceMetrics disabled() {
+        return DISABLED;
+    }
+
+    public ResourceMetrics(MeterRegistry registry, String realm, String client) {
+        this.enabled = true;
+        this.registry = registry;
+        this.tags = Tags.of("realm", realm, "client", client);
+        this.instanceTags = tags.and("instance", String.valueOf(INSTANCES.incrementAndGet()));
+        // The HTTP state of a realm and client is kept as long as a resource uses it
+        this.http =
+            HTTP_STATES.compute(
+                tags,
+                (t, state) -> {
+                    final HttpState used = state != null ? state : new HttpState();
+                    used.users++;
+                    return used;
+                }
+            );
+
+        for (Validation validation : Validation.values()) {
+            for (IntrospectionOutcome outcome : IntrospectionOutcome.values()) {
+                introspectionTimers[validation.ordinal()][outcome.ordinal()] =
+                    timer("introspection", "validation", tagValue(validation), "outcome", tagValue(outcome));
+            }
+            for (UserInfoOutcome outcome : UserInfoOutcome.values()) {
+                userInfoTimers[validation.ordinal()][outcome.ordinal()] =
+                    timer("userinfo", "validation", tagValue(validation), "outcome", tagValue(outcome));
+            }
+        }
+        validVerificationTimer = timer("verification", "outcome", "valid");
+        invalidVerificationTimer = timer("verification", "outcome", "invalid");
+
+        for (Cache cache : Cache.values()) {
+            cacheCounters[cache.ordinal()][0] = counter("cache.requests", "cache", tagValue(cache), "result", "hit");
+            cacheCounters[cache.ordinal()][1] = counter("cache.requests", "cache", tagValue(cache), "result", "miss");
+        }
+
+        for (Endpoint endpoint : Endpoint.values()) {
+            responseCounters.put(endpoint, new ConcurrentHashMap<>());
+        }
+
+        wonHedges = counter("http.hedges", "result", "won");
+        lostHedges = counter("http.hedges", "result", "lost");
+
+        for (FastRejection reason : FastRejection.values()) {
+            fastRejectionCounters[reason.ordinal()] = counter("fast.rejections", "reason", tagValue(reason));
+        }
+
+        http.gauges.addIfAbsent(Gauge.builder(PREFIX + "http.requests.active", http.active, AtomicInteger::get).tags(tags).register(registry));
+        http.gauges.addIfAbsent(Gauge.builder(PREFIX + "http.requests.pending", http.pending, AtomicInteger::get).tags(tags).register(registry));
+        http.gauges.addIfAbsent(Gauge.builder(PREFIX + "http.connections", http.connections, AtomicInteger::get).tags(tags).register(registry));
+    }
+
+    /**
+     * Meters that record nothing: no-op meters, which are not registered anywhere.
+     */
+    private ResourceMetrics() {
+        this.enabled = false;
+        this.registry = null;
+        this.tags = Tags.empty();
+        this.instanceTags = tags;
+        this.http = new HttpState();
+
+        final Timer timer = new NoopTimer(new Meter.Id(PREFIX + "disabled", tags, null, null, Meter.Type.TIMER));
+        final Counter counter = new NoopCounter(new Meter.Id(PREFIX + "disabled", tags, null, null, Meter.Type.COUNTER));
+        for (Timer[] timers : introspectionTimers) {
+            Arrays.fill(timers, timer);
+        }
+        for (Timer[] timers : userInfoTimers) {
+            Arrays.fill(timers, timer);
+        }
+        validVerificationTimer = timer;
+        invalidVerificationTimer = timer;
+        for (Counter[] counters : cacheCounters) {
+            Arrays.fill(counters, counter);
+        }
+        wonHedges = counter;
+        lostHedges = counter;
+        Arrays.fill(fastRejectionCounters, counter);
+    }
+
+    /**
+     * Whether meters are recorded: when they are not, callers can skip measuring.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void introspection(Validation validation, IntrospectionOutcome outcome, long startNanos) {
+        introspectionTimers[validation.ordinal()][outcome.ordinal()].record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void userInfo(Validation validation, UserInfoOutcome outcome, long startNanos) {
+        userInfoTimers[validation.ordinal()][outcome.ordinal()].record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void verification(boolean valid, long startNanos) {
+        (valid ? validVerificationTimer : invalidVerificationTimer).record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void cache(Cache cache, boolean hit) {
+        cacheCounters[cache.ordinal()][hit ? 0 : 1].increment();
+    }
+
+    public void response(Endpoint endpoint, int statusCode) {
+        if (!enabled) {
+            return;
+        }
+        responseCounters
+            .get(endpoint)
+            .computeIfAbsent(statusCode, status -> counter("http.responses", "endpoint", tagValue(endpoint), "status", String.valueOf(status)))
+            .increment();
+    }
+
+    public void hedge(boolean won) {
+        (won ? wonHedges : lostHedges).increment();
+    }
+
+    public void fastRejection(FastRejection reason) {
+        fastRejectionCounters[reason.ordinal()].increment();
+    }
+
+    /**
+     * A call to Keycloak is made: it waits for a connection of the pool.
+     */
+    public void requestQueued() {
+        http.active.incrementAndGet();
+        http.pending.incrementAndGet();
+    }
+
+    /**
+     * A call to Keycloak got a connection, or failed to get one.
+     */
+    public void requestDequeued() {
+        http.pending.decrementAndGet();
+    }
+
+    public void requestCompleted() {
+        http.active.decrementAndGet();
+    }
+
+    /**
+     * Exposes the state of the concurrency limiter of the resource.
+     */
+    public void concurrencyLimiter(ConcurrencyLimiter limiter) {
+        if (!enabled) {
+            return;
+        }
+        instanceMeters.add(
+            Gauge.builder(PREFIX + "concurrency.limit", limiter, ConcurrencyLimiter::limit).tags(instanceTags).strongReference(true).register(registry)
+        );
+        instanceMeters.add(
+            Gauge
+                .builder(PREFIX + "concurrency.queued", limiter, ConcurrencyLimiter::queueSize)
+                .tags(instanceTags)
+                .strongReference(true)
+                .register(registry)
+        );
+        instanceMeters.add(
+            FunctionCounter.builder(PREFIX + "concurrency.rejections", limiter, ConcurrencyLimiter::rejections).tags(instanceTags).register(registry)
+        );
+    }
+
+    /**
+     * Exposes the footprint and the current false positive rate of the rejected token filter used by the resource. The
+     * filter may be shared with other resources and replaced once none uses it: the gauges are tagged with the resource
+     * instance and removed when it is stopped.
+     */
+    public void rejectedTokenFilter(RejectedTokenFilter filter) {
+        if (!enabled) {
+            return;
+        }
+        instanceMeters.add(
+            Gauge
+                .builder(PREFIX + "fast.rejections.filter.memory", filter, RejectedTokenFilter::memory)
+                .tags(instanceTags)
+                .baseUnit("bytes")
+                .strongReference(true)
+                .register(registry)
+        );
+        instanceMeters.add(
+            Gauge
+                .builder(PREFIX + "fast.rejections.filter.false.positive.rate", filter, RejectedTokenFilter::falsePositiveRate)
+                .tags(instanceTags)
+                .strongReference(true)
+                .register(registry)
+        );
+    }
+
+    /**
+     * Removes the meters backed by the objects of the resource, once it is stopped, and the HTTP state of its realm and
+     * client with its gauges once no other resource uses it.
+     */
+    public void close() {
+        if (!enabled) {
+            return;
+        }
+        instanceMeters.forEach(registry::remove);
+        instanceMeters.clear();
+
+        HTTP_STATES.computeIfPresent(
+            tags,
+            (t, state) -> {
+                if (state != http || --state.users > 0) {
+                    return state;
+                }
+                state.gauges.forEach(registry::remove);
+                return null;
+            }
+        );
+    }
+
+    public void connectionOpened(HttpConnection connection) {
+        http.connections.incrementAndGet();
+        connection.closeHandler(v -> http.connections.decrementAndGet());
+    }
+
+    private Timer timer(String name, String... tags) {
+        return Timer.builder(PREFIX + name).tags(this.tags).tags(tags).publishPercentileHistogram().register(registry);
+    }
+
+    private Counter counter(String name, String... tags) {
+        return Counter.builder(PREFIX + name).tags(this.tags).tags(tags).register(registry);
+    }
+
+    private static String tagValue(Enum<?> value) {
+        return value.name().toLowerCase(Locale.ROOT).replace('_', '-');
+    }
+
+    private static class HttpState {
+
+        private final AtomicInteger active = new AtomicInteger();
+        private final AtomicInteger pending = new AtomicInteger();
+        private final AtomicInteger connections = new AtomicInteger();
+        private final CopyOnWriteArrayList<Meter> gauges = new CopyOnWriteArrayList<>();
+        // Guarded by the HTTP_STATES map entry
+        private int users;
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.resource.oauth2.keycloak.revocation;
+
+import io.gravitee.resource.oauth2.keycloak.cache.TokenCache;
+import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.eventbus.MessageConsumer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The revocations pushed by Keycloak, so that cached and locally validated tokens are denied as soon as their session
+ * is logged out or a not-before policy is pushed, instead of when their cache entry expires.
+ *
+ * Events use the format of the Keycloak admin actions sent to the admin URL of a client, and are applied like a
+ * Keycloak adapter does:
+ * <ul>
+ *     <li><code>PUSH_NOT_BEFORE</code>: the tokens issued before <code>notBefore</code> are revoked. The
+ *     <code>resource</code> of the event is the client receiving it, not the client the tokens were issued to: the
+ *     policy applies to every token;</li>
+ *     <li><code>LOGOUT</code>: the tokens of the <code>keycloakSessionIds</code> sessions are revoked, as well as every
+ *     token issued before <code>notBefore</code>, if set.</li>
+ * </ul>
+ * Events of another <code>realm</code> are ignored.
+ *
+ * Revoked sessions are remembered for the retention period (which should be at least the lifetime of the access
+ * tokens), within a bounded number of entries.
+ *
+ * @author GraviteeSource Team
+ */
+public class RevocationList {
+
+    public static final String PUSH_NOT_BEFORE_ACTION = "PUSH_NOT_BEFORE";
+    public static final String LOGOUT_ACTION = "LOGOUT";
+
+    private static final int MAX_TRACKED_REVOCATIONS = 100_000;
+
+    private final Logger logger = LoggerFactory.getLogger(RevocationList.class);
+
+    private final String realm;
+    private final long retention;
+
+    private volatile long notBefore;
+    private final TokenCache<Boolean> revokedSessions = new TokenCache<>(MAX_TRACKED_REVOCATIONS);
+    private volatile boolean empty = true;
+
+    private MessageConsumer<Object> consumer;
+
+    /**
+     * @param retention how long revoked sessions are remembered, in milliseconds.
+     */
+    public RevocationList(String realm, long retention) {
+        this.realm = realm;
+        this.retention = retention;
+    }
+
+    /**
+     * Applies the events published on the given event bus address. The sender of an event sent as a request gets
+     * whether it has been applied as a reply.
+     */
+    public void listen(EventBus eventBus, String address) {
+        consumer =
+            eventBus.consumer(
+                address,
+                message -> {
+                    boolean applied;
+                    try {
+                        applied = apply(message.body() instanceof JsonObject json ? json : new JsonObject(String.valueOf(message.body())));
+                    } catch (RuntimeException ex) {
+                        logger.warn("Unable to read revocation event", ex);
+                        applied = false;
+                    }
+                    message.reply(applied);
+                }
+            );
+    }
+
+    public void stop() {
+        if (consumer != null) {
+            consumer.unregister();
+            consumer = null;
+        }
+    }
+
+    /**
+     * Whether no revocation has been received yet: callers can skip reading the identity of the tokens.
+     */
+    public boolean isEmpty() {
+        return empty;
+    }
+
+    public boolean isRevoked(TokenIdentity identity) {
+        if (empty || identity == null) {
+            return false;
+        }
+
+        if (identity.issuedAt() < notBefore) {
+            return true;
+        }
+        return identity.sessionId() != null && revokedSessions.get(identity.sessionId()) != null;
+    }
+
+    /**
+     * Applies an event of the Keycloak admin actions format.
+     *
+     * @return <code>false</code> if the event is not a revocation of this realm.
+     */
+    public boolean apply(JsonObject event) {
+        final String eventRealm = event.getString("realm");
+        if (eventRealm != null && !eventRealm.equals(realm)) {
+            return false;
+        }
+
+        final String action = event.getString("action");
+        final long notBefore = event.getLong("notBefore", 0L);
+        if (PUSH_NOT_BEFORE_ACTION.equals(action)) {
+            notBefore(notBefore);
+            return true;
+        }
+        if (!LOGOUT_ACTION.equals(action)) {
+            logger.debug("Ignore revocation event with action {}", action);
+            return false;
+        }
+
+        final JsonArray sessionIds = event.getJsonArray("keycloakSessionIds");
+        if (sessionIds != null) {
+            sessionIds.forEach(sessionId -> revokeSession(String.valueOf(sessionId)));
+        }
+        if (notBefore > 0) {
+            notBefore(notBefore);
+        }
+        return true;
+    }
+
+    /**
+     * Revokes the tokens issued before the given time, in seconds since epoch.
+     */
+    public synchronized void notBefore(long notBefore) {
+        this.notBefore = Math.max(this.notBefore, notBefore);
+        empty = false;
+    }
+
+    public void revokeSession(String sessionId) {
+        revokedSessions.put(sessionId, Boolean.TRUE, System.currentTimeMillis() + retention);
+        empty = false;
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.resource.oauth2.keycloak.shared;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import io.gravitee.resource.oauth2.keycloak.cache.TokenHash;
+import io.vertx.core.Vertx;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reference-counted objects (HTTP clients, realm keys, caches, ...) shared by the resources declared with the same
+ * Keycloak settings, so that hundreds of APIs pointing at the same realm do not each open their own connections and
+ * keep their own copy of the keys and cached results.
+ *
+ * An object is created by the first {@link #acquire(String, Supplier, Consumer)} of its key, and disposed of when the
+ * last lease on it is released.
+ *
+ * @author GraviteeSource Team
+ */
+public class SharedResources {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SharedResources.class);
+
+    // Objects bound to a Vert.x instance (HTTP clients, timers) cannot be shared across instances
+    private static final Map<Vertx, SharedResources> NODE_REGISTRIES = new WeakHashMap<>();
+
+    private static final ObjectMapper CANONICAL_MAPPER = JsonMapper
+        .builder()
+        .enable(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY)
+        .enable(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS)
+        .build();
+
+    private final Map<String, Entry<?>> entries = new HashMap<>();
+
+    /**
+     * The registry shared by all the resources of the node running on the given Vert.x instance.
+     */
+    public static SharedResources of(Vertx vertx) {
+        synchronized (NODE_REGISTRIES) {
+            return NODE_REGISTRIES.computeIfAbsent(vertx, v -> new SharedResources());
+        }
+    }
+
+    /**
+     * Computes a key from the given settings: two settings with the same values (whatever the order of their
+     * properties) have the same key.
+     */
+    public static String key(Object... settings) {
+        try {
+            return TokenHash.of(CANONICAL_MAPPER.writeValueAsString(settings));
+        } catch (JsonProcessingException jpe) {
+            throw new IllegalArgumentException("Unable to compute the key of shared settings", jpe);
+        }
+    }
+
+    /**
+     * Returns a lease on the object stored under the given key, created with the factory if there is none yet. The
+     * disposer is called once the last lease on the object is released.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Lease<T> acquire(String key, Supplier<T> factory, Consumer<T> disposer) {
+        synchronized (entries) {
+            Entry<T> entry = (Entry<T>) entries.get(key);
+            if (entry == null) {
+                entry = new Entry<>(factory.get(), disposer);
+                entries.put(key, entry);
+            } else {
+                LOGGER.debug("Reuse shared {}", entry.value.getClass().getSimpleName());
+            }
+            entry.references++;
+            return new Lease<>(this, key, entry);
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private <T> void release(String key, Entry<T> entry) {
+        synchronized (entries) {
+            if (--entry.references > 0) {
+                return;
+            }
+            entries.remove(key, entry);
+        }
+
+        try {
+            entry.disposer.accept(entry.value);
+        } catch (RuntimeException ex) {
+            LOGGER.warn("Unable to dispose of shared {}", entry.value.getClass().getSimpleName(), ex);
+        }
+    }
+
+    /**
+     * A reference to a shared object, to release once it is no longer used. Releasing a lease twice has no effect.
+     */
+    public static final class Lease<T> {
+
+        private final SharedResources registry;
+        private final String key;
+        private final Entry<T> entry;
+        private boolean released;
+
+        private Lease(SharedResources registry, String key, Entry<T> entry) {
+            this.registry = registry;
+            this.key = key;
+            this.entry = entry;
+        }
+
+        public T get() {
+            return entry.value;
+        }
+
+        public void release() {
+            synchronized (this) {
+                if (released) {
+                    return;
+                }
+                released = true;
+            }
+            registry.release(key, entry);
+        }
+    }
+
+    private static final class Entry<T> {
+
+        private final T value;
+        private final Consumer<T> disposer;
+        private int references;
+
+        private Entry(T value, Consumer<T> disposer) {
+            this.value = value;
+            this.disposer = disposer;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.resource.oauth2.keycloak.tracing;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A span of a resource operation: its attributes, error and duration are exported once it is ended. A span can be
+ * ended only once, from any thread.
+ *
+ * The {@link #NOOP} span, returned when tracing is disabled, ignores everything: callers do not have to check whether
+ * tracing is enabled.
+ *
+ * @author GraviteeSource Team
+ */
+public class ResourceSpan {
+
+    public static final ResourceSpan NOOP = new ResourceSpan(null, null, null, null, false);
+
+    private final ResourceTracer tracer;
+    private final String name;
+    private final String traceId;
+    private final String spanId;
+    private final String parentSpanId;
+    private final boolean sampled;
+    private final long startTimeMillis;
+    private final long startNanos;
+    private final io.gravitee.tracing.api.Span gatewaySpan;
+
+    private final Map<String, Object> attributes;
+    private String error;
+    private boolean ended;
+
+    ResourceSpan(ResourceTracer tracer, String name, String traceId, String parentSpanId, boolean sampled) {
+        this.tracer = tracer;
+        this.name = name;
+        this.traceId = traceId;
+        this.spanId = tracer != null ? TraceParent.newSpanId() : null;
+        this.parentSpanId = parentSpanId;
+        this.sampled = sampled;
+        this.startTimeMillis = tracer != null ? System.currentTimeMillis() : 0;
+        this.startNanos = tracer != null ? System.nanoTime() : 0;
+        this.gatewaySpan = tracer != null ? tracer.gatewaySpan(name) : null;
+        this.attributes = tracer != null ? new LinkedHashMap<>() : null;
+    }
+
+    /**
+     * Whether this span records anything.
+     */
+    public boolean isRecording() {
+        return tracer != null;
+    }
+
+    /**
+     * Starts a span of the same trace, child of this one.
+     */
+    public ResourceSpan child(String name) {
+        return tracer != null ? new ResourceSpan(tracer, name, traceId, spanId, sampled) : NOOP;
+    }
+
+    public synchronized ResourceSpan attribute(String key, String value) {
+        if (tracer != null && !ended && value != null) {
+            attributes.put(key, value);
+            if (gatewaySpan != null) {
+                gatewaySpan.withAttribute(key, value);
+            }
+        }
+        return this;
+    }
+
+    public synchronized ResourceSpan attribute(String key, long value) {
+        if (tracer != null && !ended) {
+            attributes.put(key, value);
+            if (gatewaySpan != null) {
+                gatewaySpan.withAttribute(key, value);
+            }
+        }
+        return this;
+    }
+
+    public synchronized ResourceSpan attribute(String key, boolean value) {
+        if (tracer != null && !ended) {
+            attributes.put(key, value);
+            if (gatewaySpan != null) {
+                gatewaySpan.withAttribute(key, value);
+            }
+        }
+        return this;
+    }
+
+    public synchronized ResourceSpan error(Throwable throwable) {
+        if (tracer != null && !ended) {
+            error = throwable.getMessage() != null ? throwable.getMessage() : throwable.getClass().getName();
+            if (gatewaySpan != null) {
+                gatewaySpan.reportError(throwable);
+            }
+        }
+        return this;
+    }
+
+    public void end() {
+        final SpanData data;
+        synchronized (this) {
+            if (tracer == null || ended) {
+                return;
+            }
+            ended = true;
+            data =
+                new SpanData(
+                    name,
+                    traceId,
+                    spanId,
+                    parentSpanId,
+                    startTimeMillis,
+                    System.nanoTime() - startNanos,
+                    Collections.unmodifiableMap(attributes),
+                    error
+                );
+        }
+
+        if (gatewaySpan != null) {
+            gatewaySpan.end();
+        }
+        tracer.export(data);
+    }
+}
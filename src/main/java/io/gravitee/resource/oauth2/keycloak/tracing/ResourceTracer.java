@@ -0,0 +1,68 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.resource.oauth2.keycloak.tracing;
+
+import io.gravitee.node.api.tracing.Tracer;
+
+/**
+ * Starts the spans of a resource. Each span is mirrored as a span of the gateway tracer, if any, which places it in the
+ * trace of the calling gateway request. The trace context sent to Keycloak is the one of the gateway, propagated by
+ * the Vert.x tracer of the gateway on the HTTP client requests: the resource does not set it.
+ *
+ * Ended spans are also handed to the exporter, if any. They carry identifiers of their own, which are not linked to the
+ * gateway trace. When tracing is disabled, {@link #start(String)} returns a span that records nothing and costs
+ * nothing.
+ *
+ * @author GraviteeSource Team
+ */
+public class ResourceTracer {
+
+    private static final ResourceTracer DISABLED = new ResourceTracer(null, null);
+
+    private final Tracer tracer;
+    private final SpanExporter exporter;
+
+    public ResourceTracer(Tracer tracer, SpanExporter exporter) {
+        this.tracer = tracer;
+        this.exporter = exporter;
+    }
+
+    public static ResourceTracer disabled() {
+        return DISABLED;
+    }
+
+    public boolean isEnabled() {
+        return tracer != null || exporter != null;
+    }
+
+    public ResourceSpan start(String name) {
+        if (!isEnabled()) {
+            return ResourceSpan.NOOP;
+        }
+
+        return new ResourceSpan(this, name, TraceParent.newTraceId(), null, true);
+    }
+
+    io.gravitee.tracing.api.Span gatewaySpan(String name) {
+        return tracer != null ? tracer.trace(name) : null;
+    }
+
+    void export(SpanData span) {
+        if (exporter != null) {
+            exporter.export(span);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.resource.oauth2.keycloak.tracing;
+
+import java.util.Map;
+
+/**
+ * A finished span, as handed to a {@link SpanExporter}.
+ *
+ * @param parentSpanId the identifier of the parent span, or <code>null</code> for a root span.
+ * @param error the error reported on the span, or <code>null</code>.
+ * @author GraviteeSource Team
+ */
+public record SpanData(
+    String name,
+    String traceId,
+    String spanId,
+    String parentSpanId,
+    long startTimeMillis,
+    long durationNanos,
+    Map<String, Object> attributes,
+    String error
+) {}
@@ -0,0 +1,108 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.resource.oauth2.keycloak.tracing;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A W3C Trace Context <code>traceparent</code>: <code>00-{trace id}-{parent span id}-{flags}</code>, with lowercase
+ * hexadecimal identifiers.
+ *
+ * @author GraviteeSource Team
+ */
+public record TraceParent(String traceId, String spanId, boolean sampled) {
+    public static final String HEADER = "traceparent";
+
+    private static final String VERSION = "00";
+    private static final int HEADER_LENGTH = 55;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /**
+     * Parses a <code>traceparent</code> header value.
+     *
+     * @return <code>null</code> if the value is not a valid version 00 <code>traceparent</code>.
+     */
+    public static TraceParent parse(String value) {
+        if (
+            value == null ||
+            value.length() != HEADER_LENGTH ||
+            !value.startsWith(VERSION) ||
+            value.charAt(2) != '-' ||
+            value.charAt(35) != '-' ||
+            value.charAt(52) != '-'
+        ) {
+            return null;
+        }
+
+        final String traceId = value.substring(3, 35);
+        final String spanId = value.substring(36, 52);
+        final String flags = value.substring(53);
+        if (!isValidId(traceId) || !isValidId(spanId) || !isHex(flags)) {
+            return null;
+        }
+        return new TraceParent(traceId, spanId, (Character.digit(flags.charAt(1), 16) & 1) == 1);
+    }
+
+    public static String newTraceId() {
+        return randomHex(16);
+    }
+
+    public static String newSpanId() {
+        return randomHex(8);
+    }
+
+    public String header() {
+        return VERSION + '-' + traceId + '-' + spanId + (sampled ? "-01" : "-00");
+    }
+
+    private static boolean isValidId(String id) {
+        if (!isHex(id)) {
+            return false;
+        }
+        // An identifier made of zeros only is invalid
+        for (int i = 0; i < id.length(); i++) {
+            if (id.charAt(i) != '0') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isHex(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String randomHex(int bytes) {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final char[] chars = new char[bytes * 2];
+        String id;
+        do {
+            for (int i = 0; i < bytes; i++) {
+                final int value = random.nextInt(256);
+                chars[i * 2] = HEX[value >> 4];
+                chars[i * 2 + 1] = HEX[value & 0xF];
+            }
+            id = new String(chars);
+        } while (!isValidId(id));
+        return id;
+    }
+}
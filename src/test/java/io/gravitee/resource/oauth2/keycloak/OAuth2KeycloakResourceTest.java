@@ -18,26 +18,76 @@ package io.gravitee.resource.oauth2.keycloak;
 import static com.github.tomakehurst.wiremock.client.WireMock.*;
 import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
 import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.initMocks;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.http.Fault;
 import com.github.tomakehurst.wiremock.junit.WireMockRule;
+import com.github.tomakehurst.wiremock.stubbing.Scenario;
+import com.github.tomakehurst.wiremock.verification.LoggedRequest;
 import io.gravitee.common.http.MediaType;
 import io.gravitee.gateway.api.handler.Handler;
 import io.gravitee.node.api.Node;
+import io.gravitee.node.api.cache.CacheConfiguration;
+import io.gravitee.node.api.cache.CacheManager;
 import io.gravitee.resource.oauth2.api.OAuth2ResourceMetadata;
 import io.gravitee.resource.oauth2.api.OAuth2Response;
 import io.gravitee.resource.oauth2.api.openid.UserInfoResponse;
+import io.gravitee.resource.oauth2.keycloak.cache.InMemoryClusterCache;
 import io.gravitee.resource.oauth2.keycloak.configuration.OAuth2KeycloakResourceConfiguration;
+import io.gravitee.resource.oauth2.keycloak.configuration.TokenValidationMode;
+import io.gravitee.resource.oauth2.keycloak.tracing.SpanData;
+import io.gravitee.resource.oauth2.keycloak.tracing.SpanExporter;
+import io.gravitee.resource.oauth2.keycloak.tracing.TraceParent;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.vertx.core.Context;
 import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpVersion;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.spi.tracing.SpanKind;
+import io.vertx.core.spi.tracing.TagExtractor;
+import io.vertx.core.spi.tracing.VertxTracer;
+import io.vertx.core.tracing.TracingOptions;
+import io.vertx.core.tracing.TracingPolicy;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.security.Signature;
+import java.security.spec.ECGenParameterSpec;
+import java.util.ArrayList;
+import java.util.Base64;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
 import org.apache.http.HttpHeaders;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.keycloak.common.crypto.CryptoIntegration;
+import org.keycloak.crypto.Algorithm;
+import org.keycloak.jose.jwk.JSONWebKeySet;
+import org.keycloak.jose.jwk.JWK;
+import org.keycloak.jose.jwk.JWKBuilder;
+import org.keycloak.jose.jws.JWSBuilder;
+import org.keycloak.representations.AccessToken;
+import org.keycloak.util.JsonSerialization;
 import org.mockito.Mock;
 import org.mockito.Spy;
 import org.mockito.junit.MockitoJUnitRunner;
@@ -50,8 +100,11 @@ import org.springframework.context.ApplicationContext;
 @RunWith(MockitoJUnitRunner.class)
 public class OAuth2KeycloakResourceTest {
 
+    private static final String KEYCLOAK_REALM_URI = "/auth/realms/Gravitee";
     private static final String KEYCLOAK_USERINFO_URI = "/auth/realms/Gravitee/protocol/openid-connect/userinfo";
     private static final String KEYCLOAK_INTROSPECT_TOKEN_URI = "/auth/realms/Gravitee/protocol/openid-connect/token/introspect";
+    private static final String KEYCLOAK_CERTS_URI = "/auth/realms/Gravitee/protocol/openid-connect/certs";
+    private static final String KEYCLOAK_OPENID_CONFIGURATION_URI = "/auth/realms/Gravitee/.well-known/openid-configuration";
 
     private static final String ADAPTER_CONFIG =
         "{\n" +
@@ -240,45 +293,1462 @@ public class OAuth2KeycloakResourceTest {
         );
     }
 
+    @Test
+    public void shouldServeIntrospectionFromCache() throws Exception {
+        when(configuration.getKeycloakConfiguration()).thenReturn(String.format(ADAPTER_CONFIG, wireMockRule.port()));
+        when(configuration.isValidateTokenLocally()).thenReturn(false);
+        when(configuration.isIntrospectionCacheEnabled()).thenReturn(true);
+        when(configuration.getIntrospectionCacheMaxSize()).thenReturn(100);
+        when(configuration.getIntrospectionCacheTtl()).thenReturn(60L);
+
+        stubFor(
+            post(urlEqualTo(KEYCLOAK_INTROSPECT_TOKEN_URI)).willReturn(
+                aResponse().withStatus(200).withBody(EXPECTED_INTROSPECTION_ACTIVE_RESPONSE)
+            )
+        );
+
+        resource.doStart();
+
+        final String accessToken = "xxxx-xxxx-xxxx-xxxx";
+        for (int i = 0; i < 3; i++) {
+            final CountDownLatch lock = new CountDownLatch(1);
+            final TestResponseHandler<OAuth2Response> handler = new TestResponseHandler<>(lock);
+            resource.introspect(accessToken, handler);
+            assertTrue(lock.await(10000, TimeUnit.MILLISECONDS));
+            assertTrue(handler.getResponse().isSuccess());
+            assertEquals(EXPECTED_INTROSPECTION_ACTIVE_RESPONSE, handler.getResponse().getPayload());
+        }
+
+        verify(1, postRequestedFor(urlEqualTo(KEYCLOAK_INTROSPECT_TOKEN_URI)));
+    }
+
+    @Test
+    public void shouldNotCacheIntrospectionBeyondTokenExpiration() throws Exception {
+        when(configuration.getKeycloakConfiguration()).thenReturn(String.format(ADAPTER_CONFIG, wireMockRule.port()));
+        when(configuration.isValidateTokenLocally()).thenReturn(false);
+        when(configuration.isIntrospectionCacheEnabled()).thenReturn(true);
+        when(configuration.getIntrospectionCacheMaxSize()).thenReturn(100);
+        when(configuration.getIntrospectionCacheTtl()).thenReturn(60L);
+
+        final String expiredPayload = "{\"active\": true, \"exp\": " + (System.currentTimeMillis() / 1000 - 1) + "}";
+        stubFor(post(urlEqualTo(KEYCLOAK_INTROSPECT_TOKEN_URI)).willReturn(aResponse().withStatus(200).withBody(expiredPayload)));
+
+        resource.doStart();
+
+        final String accessToken = "xxxx-xxxx-xxxx-xxxx";
+        for (int i = 0; i < 2; i++) {
+            final CountDownLatch lock = new CountDownLatch(1);
+            final TestResponseHandler<OAuth2Response> handler = new TestResponseHandler<>(lock);
+            resource.introspect(accessToken, handler);
+            assertTrue(lock.await(10000, TimeUnit.MILLISECONDS));
+        }
+
+        verify(2, postRequestedFor(urlEqualTo(KEYCLOAK_INTROSPECT_TOKEN_URI)));
+    }
+
+    @Test
+    public void shouldCacheInactiveIntrospection() throws Exception {
+        when(configuration.getKeycloakConfiguration()).thenReturn(String.format(ADAPTER_CONFIG, wireMockRule.port()));
+        when(configuration.isValidateTokenLocally()).thenReturn(false);
+        when(configuration.isIntrospectionCacheEnabled()).thenReturn(true);
+        when(configuration.getIntrospectionCacheMaxSize()).thenReturn(100);
+        when(configuration.getIntrospectionCacheNegativeTtl()).thenReturn(5L);
+
+        stubFor(
+            post(urlEqualTo(KEYCLOAK_INTROSPECT_TOKEN_URI)).willReturn(
+                aResponse().withStatus(200).withBody(EXPECTED_INTROSPECTION_NONACTIVE_RESPONSE)
+            )
+        );
+
+        resource.doStart();
+
+        final String accessToken = "xxxx-xxxx-xxxx-xxxx";
+        for (int i = 0; i < 2; i++) {
+            final CountDownLatch lock = new CountDownLatch(1);
+            final TestResponseHandler<OAuth2Response> handler = new TestResponseHandler<>(lock);
+            resource.introspect(accessToken, handler);
+            assertTrue(lock.await(10000, TimeUnit.MILLISECONDS));
+            assertFalse(handler.getResponse().isSuccess());
+            assertEquals(ACCESS_DENIED_RESPONSE, handler.getResponse().getPayload());
+        }
+
+        verify(1, postRequestedFor(urlEqualTo(KEYCLOAK_INTROSPECT_TOKEN_URI)));
+    }
+
+    @Test
+    public void shouldCoalesceConcurrentIntrospections() throws Exception {
+        when(configuration.getKeycloakConfiguration()).thenReturn(String.format(ADAPTER_CONFIG, wireMockRule.port()));
+        when(configuration.isValidateTokenLocally()).thenReturn(false);
+
+        stubFor(
+            post(urlEqualTo(KEYCLOAK_INTROSPECT_TOKEN_URI)).willReturn(
+                aResponse().withStatus(200).withFixedDelay(500).withBody(EXPECTED_INTROSPECTION_ACTIVE_RESPONSE)
+            )
+        );
+
+        resource.doStart();
+
+        final int calls = 10;
+        final CountDownLatch lock = new CountDownLatch(calls);
+        final List<TestResponseHandler<OAuth2Response>> handlers = new ArrayList<>();
+        for (int i = 0; i < calls; i++) {
+            TestResponseHandler<OAuth2Response> handler = new TestResponseHandler<>(lock);
+            handlers.add(handler);
+            resource.introspect("xxxx-xxxx-xxxx-xxxx", handler);
+        }
+        assertTrue(lock.await(10000, TimeUnit.MILLISECONDS));
+
+        for (TestResponseHandler<OAuth2Response> handler : handlers) {
+            assertTrue(handler.getResponse().isSuccess());
+            assertEquals(EXPECTED_INTROSPECTION_ACTIVE_RESPONSE, handler.getResponse().getPayload());
+        }
+
+        verify(1, postRequestedFor(urlEqualTo(KEYCLOAK_INTROSPECT_TOKEN_URI)));
+    }
+
+    @Test
+    public void shouldCoalesceConcurrentUserInfo() throws Exception {
+        when(configuration.getKeycloakConfiguration()).thenReturn(String.format(ADAPTER_CONFIG, wireMockRule.port()));
+
+        stubFor(
+            get(urlEqualTo(KEYCLOAK_USERINFO_URI)).willReturn(
+                aResponse().withStatus(200).withFixedDelay(500).withBody(EXPECTED_USERINFO_RESPONSE)
+            )
+        );
+
+        resource.doStart();
+
+        final int calls = 10;
+        final CountDownLatch lock = new CountDownLatch(calls);
+        final List<TestResponseHandler<UserInfoResponse>> handlers = new ArrayList<>();
+        for (int i = 0; i < calls; i++) {
+            TestResponseHandler<UserInfoResponse> handler = new TestResponseHandler<>(lock);
+            handlers.add(handler);
+            resource.userInfo("xxxx-xxxx-xxxx-xxxx", handler);
+        }
+        assertTrue(lock.await(10000, TimeUnit.MILLISECONDS));
+
+        for (TestResponseHandler<UserInfoResponse> handler : handlers) {
+            assertTrue(handler.getResponse().isSuccess());
+            assertEquals(EXPECTED_USERINFO_RESPONSE, handler.getResponse().getPayload());
+        }
+
+        verify(1, getRequestedFor(urlEqualTo(KEYCLOAK_USERINFO_URI)));
+    }
+
+    @Test
+    public void shouldValidateAccessTokenLocally() throws Exception {
+        when(configuration.getKeycloakConfiguration()).thenReturn(String.format(ADAPTER_CONFIG, wireMockRule.port()));
+        when(configuration.isValidateTokenLocally()).thenReturn(true);
+
+        final KeyPair keyPair = generateRsaKeyPair();
+        stubOpenIdConfiguration();
+        stubJwks(jwk("key-1", keyPair));
+
+        resource.doStart();
+
+        final CountDownLatch lock = new CountDownLatch(1);
+        final TestResponseHandler<OAuth2Response> handler = new TestResponseHandler<>(lock);
+
+        resource.introspect(signAccessToken("key-1", keyPair, accessToken()), handler);
+        assertTrue(lock.await(10000, TimeUnit.MILLISECONDS));
+
+        assertTrue(handler.getResponse().isSuccess());
+        JsonNode payload = new ObjectMapper().readTree(handler.getResponse().getPayload());
+        assertEquals("248289761001", payload.get("sub").asText());
+        assertEquals("gravitee-gateway", payload.get("client_id").asText());
+        assertEquals("jane", payload.get("username").asText());
+
+        verify(1, getRequestedFor(urlEqualTo(KEYCLOAK_CERTS_URI)));
+        verify(0, postRequestedFor(urlEqualTo(KEYCLOAK_INTROSPECT_TOKEN_URI)));
+    }
+
+    @Test
+    public void shouldRetryRealmKeysFetchOnceWhenConnectionIsReset() throws Exception {
+        when(configuration.getKeycloakConfiguration()).thenReturn(String.format(ADAPTER_CONFIG, wireMockRule.port()));
+        when(configuration.isValidateTokenLocally()).thenReturn(true);
+
+        final KeyPair keyPair = generateRsaKeyPair();
+        stubOpenIdConfiguration();
+        JSONWebKeySet jwks = new JSONWebKeySet();
+        jwks.setKeys(new JWK[] { jwk("key-1", keyPair) });
+        stubFor(
+            get(urlEqualTo(KEYCLOAK_CERTS_URI))
+                .inScenario("jwks")
+                .whenScenarioStateIs(Scenario.STARTED)
+                .willSetStateTo("connection reset")
+                .willReturn(aResponse().withFault(Fault.CONNECTION_RESET_BY_PEER))
+        );
+        stubFor(
+            get(urlEqualTo(KEYCLOAK_CERTS_URI))
+                .inScenario("jwks")
+                .whenScenarioStateIs("connection reset")
+                .willReturn(aResponse().withStatus(200).withBody(JsonSerialization.writeValueAsString(jwks)))
+        );
+
+        resource.doStart();
+
+        final CountDownLatch lock = new CountDownLatch(1);
+        final TestResponseHandler<OAuth2Response> handler = new TestResponseHandler<>(lock);
+
+        resource.introspect(signAccessToken("key-1", keyPair, accessToken()), handler);
+        assertTrue(lock.await(10000, TimeUnit.MILLISECONDS));
+
+        assertTrue(handler.getResponse().isSuccess());
+        verify(2, getRequestedFor(urlEqualTo(KEYCLOAK_CERTS_URI)));
+        verify(0, postRequestedFor(urlEqualTo(KEYCLOAK_INTROSPECT_TOKEN_URI)));
+    }
+
+    @Test
+    public void shouldValidateEs256AccessTokenLocally() throws Exception {
+        when(configuration.getKeycloakConfiguration()).thenReturn(String.format(ADAPTER_CONFIG, wireMockRule.port()));
+        when(configuration.isValidateTokenLocally()).thenReturn(true);
+
+        CryptoIntegration.init(getClass().getClassLoader());
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(new ECGenParameterSpec("secp256r1"));
+        final KeyPair keyPair = generator.generateKeyPair();
+        stubOpenIdConfiguration();
+        stubJwks(JWKBuilder.create().kid("ec-key").algorithm(Algorithm.ES256).ec(keyPair.getPublic()));
+
+        resource.doStart();
+
+        final CountDownLatch lock = new CountDownLatch(1);
+        final TestResponseHandler<OAuth2Response> handler = new TestResponseHandler<>(lock);
+
+        resource.introspect(signEs256AccessToken("ec-key", keyPair, accessToken()), handler);
+        assertTrue(lock.await(10000, TimeUnit.MILLISECONDS));
+
+        assertTrue(handler.getResponse().isSuccess());
+        assertEquals("jane", new ObjectMapper().readTree(handler.getResponse().getPayload()).get("username").asText());
+    }
+
+    @Test
+    public void shouldNotValidateAccessTokenLocallyWithUnknownKey() throws Exception {
+        when(configuration.getKeycloakConfiguration()).thenReturn(String.format(ADAPTER_CONFIG, wireMockRule.port()));
+        when(configuration.isValidateTokenLocally()).thenReturn(true);
+
+        stubOpenIdConfiguration();
+        stubJwks(jwk("key-1", generateRsaKeyPair()));
+
+        resource.doStart();
+
+        final CountDownLatch lock = new CountDownLatch(1);
+        final TestResponseHandler<OAuth2Response> handler = new TestResponseHandler<>(lock);
+
+        resource.introspect(signAccessToken("key-2", generateRsaKeyPair(), accessToken()), handler);
+        assertTrue(lock.await(10000, TimeUnit.MILLISECONDS));
+
+        assertFalse(handler.getResponse().isSuccess());
+        assertEquals(ACCESS_DENIED_RESPONSE, handler.getResponse().getPayload());
+    }
+
+    @Test
+    public void shouldRefreshRealmKeysOnKeyRotation() throws Exception {
+        when(configuration.getKeycloakConfiguration()).thenReturn(
+            String.format(ADAPTER_CONFIG, wireMockRule.port()).replace("\"confidential-port\": 0", "\"min-time-between-jwks-requests\": 0")
+        );
+        when(configuration.isValidateTokenLocally()).thenReturn(true);
+
+        final KeyPair oldKeyPair = generateRsaKeyPair();
+        stubOpenIdConfiguration();
+        stubJwks(jwk("key-1", oldKeyPair));
+
+        resource.doStart();
+
+        final CountDownLatch firstLock = new CountDownLatch(1);
+        final TestResponseHandler<OAuth2Response> firstHandler = new TestResponseHandler<>(firstLock);
+        resource.introspect(signAccessToken("key-1", oldKeyPair, accessToken()), firstHandler);
+        assertTrue(firstLock.await(10000, TimeUnit.MILLISECONDS));
+        assertTrue(firstHandler.getResponse().isSuccess());
+
+        // Keycloak rotates its keys
+        final KeyPair newKeyPair = generateRsaKeyPair();
+        stubOpenIdConfiguration();
+        stubJwks(jwk("key-1", oldKeyPair), jwk("key-2", newKeyPair));
+
+        final CountDownLatch secondLock = new CountDownLatch(1);
+        final TestResponseHandler<OAuth2Response> secondHandler = new TestResponseHandler<>(secondLock);
+        resource.introspect(signAccessToken("key-2", newKeyPair, accessToken()), secondHandler);
+        assertTrue(secondLock.await(10000, TimeUnit.MILLISECONDS));
+        assertTrue(secondHandler.getResponse().isSuccess());
+
+        verify(2, getRequestedFor(urlEqualTo(KEYCLOAK_CERTS_URI)));
+    }
+
+    @Test
+    public void shouldServeVerifiedTokenFromCacheUntilRealmKeysChange() throws Exception {
+        when(configuration.getKeycloakConfiguration()).thenReturn(
+            String.format(ADAPTER_CONFIG, wireMockRule.port()).replace("\"confidential-port\": 0", "\"min-time-between-jwks-requests\": 0")
+        );
+        when(configuration.isValidateTokenLocally()).thenReturn(true);
+        when(configuration.isVerifiedTokenCacheEnabled()).thenReturn(true);
+        when(configuration.getVerifiedTokenCacheMaxSize()).thenReturn(100);
+
+        final KeyPair oldKeyPair = generateRsaKeyPair();
+        stubOpenIdConfiguration();
+        stubJwks(jwk("key-1", oldKeyPair));
+
+        resource.doStart();
+
+        final String oldToken = signAccessToken("key-1", oldKeyPair, accessToken());
+        for (int i = 0; i < 2; i++) {
+            final CountDownLatch lock = new CountDownLatch(1);
+            final TestResponseHandler<OAuth2Response> handler = new TestResponseHandler<>(lock);
+            resource.introspect(oldToken, handler);
+            assertTrue(lock.await(10000, TimeUnit.MILLISECONDS));
+            assertTrue(handler.getResponse().isSuccess());
+            assertEquals("jane", new ObjectMapper().readTree(handler.getResponse().getPayload()).get("username").asText());
+        }
+
+        // Keycloak rotates its keys and no longer publishes the old one
+        final KeyPair newKeyPair = generateRsaKeyPair();
+        stubOpenIdConfiguration();
+        stubJwks(jwk("key-2", newKeyPair));
+
+        final CountDownLatch newTokenLock = new CountDownLatch(1);
+        final TestResponseHandler<OAuth2Response> newTokenHandler = new TestResponseHandler<>(newTokenLock);
+        resource.introspect(signAccessToken("key-2", newKeyPair, accessToken()), newTokenHandler);
+        assertTrue(newTokenLock.await(10000, TimeUnit.MILLISECONDS));
+        assertTrue(newTokenHandler.getResponse().isSuccess());
+
+        final CountDownLatch oldTokenLock = new CountDownLatch(1);
+        final TestResponseHandler<OAuth2Response> oldTokenHandler = new TestResponseHandler<>(oldTokenLock);
+        resource.introspect(oldToken, oldTokenHandler);
+        assertTrue(oldTokenLock.await(10000, TimeUnit.MILLISECONDS));
+        assertFalse(oldTokenHandler.getResponse().isSuccess());
+        assertEquals(ACCESS_DENIED_RESPONSE, oldTokenHandler.getResponse().getPayload());
+    }
+
+    @Test
+    public void shouldDenyRevokedTokenInHybridMode() throws Exception {
+        when(configuration.getKeycloakConfiguration()).thenReturn(String.format(ADAPTER_CONFIG, wireMockRule.port()));
+        when(configuration.getValidationMode()).thenReturn(TokenValidationMode.HYBRID);
+        when(configuration.getRevalidationInterval()).thenReturn(30L);
+
+        final KeyPair keyPair = generateRsaKeyPair();
+        stubOpenIdConfiguration();
+        stubJwks(jwk("key-1", keyPair));
+        stubFor(
+            post(urlEqualTo(KEYCLOAK_INTROSPECT_TOKEN_URI)).willReturn(aResponse().withStatus(200).withBody("{\"active\": false}"))
+        );
+
+        resource.doStart();
+
+        final String accessToken = signAccessToken("key-1", keyPair, accessToken());
+
+        // Answered locally, then revalidated in the background
+        final CountDownLatch lock = new CountDownLatch(1);
+        final TestResponseHandler<OAuth2Response> handler = new TestResponseHandler<>(lock);
+        resource.introspect(accessToken, handler);
+        assertTrue(lock.await(10000, TimeUnit.MILLISECONDS));
+        assertTrue(handler.getResponse().isSuccess());
+
+        OAuth2Response response = null;
+        for (int i = 0; i < 50 && (response == null || response.isSuccess()); i++) {
+            Thread.sleep(100);
+            final CountDownLatch nextLock = new CountDownLatch(1);
+            final TestResponseHandler<OAuth2Response> nextHandler = new TestResponseHandler<>(nextLock);
+            resource.introspect(accessToken, nextHandler);
+            assertTrue(nextLock.await(10000, TimeUnit.MILLISECONDS));
+            response = nextHandler.getResponse();
+        }
+
+        assertFalse(response.isSuccess());
+        assertEquals(ACCESS_DENIED_RESPONSE, response.getPayload());
+        verify(1, postRequestedFor(urlEqualTo(KEYCLOAK_INTROSPECT_TOKEN_URI)));
+    }
+
+    @Test
+    public void shouldRevalidateActiveTokenOncePerIntervalInHybridMode() throws Exception {
+        when(configuration.getKeycloakConfiguration()).thenReturn(String.format(ADAPTER_CONFIG, wireMockRule.port()));
+        when(configuration.getValidationMode()).thenReturn(TokenValidationMode.HYBRID);
+        when(configuration.getRevalidationInterval()).thenReturn(30L);
+
+        final KeyPair keyPair = generateRsaKeyPair();
+        stubOpenIdConfiguration();
+        stubJwks(jwk("key-1", keyPair));
+        stubFor(
+            post(urlEqualTo(KEYCLOAK_INTROSPECT_TOKEN_URI)).willReturn(aResponse().withStatus(200).withBody("{\"active\": true}"))
+        );
+
+        resource.doStart();
+
+        final String accessToken = signAccessToken("key-1", keyPair, accessToken());
+        for (int i = 0; i < 5; i++) {
+            final CountDownLatch lock = new CountDownLatch(1);
+            final TestResponseHandler<OAuth2Response> handler = new TestResponseHandler<>(lock);
+            resource.introspect(accessToken, handler);
+            assertTrue(lock.await(10000, TimeUnit.MILLISECONDS));
+            assertTrue(handler.getResponse().isSuccess());
+            assertEquals("jane", new ObjectMapper().readTree(handler.getResponse().getPayload()).get("username").asText());
+        }
+
+        Thread.sleep(500);
+        verify(1, postRequestedFor(urlEqualTo(KEYCLOAK_INTROSPECT_TOKEN_URI)));
+    }
+
+    @Test
+    public void shouldValidateJwtLocallyInAutoMode() throws Exception {
+        when(configuration.getKeycloakConfiguration()).thenReturn(String.format(ADAPTER_CONFIG, wireMockRule.port()));
+        when(configuration.getValidationMode()).thenReturn(TokenValidationMode.AUTO);
+
+        final KeyPair keyPair = generateRsaKeyPair();
+        stubOpenIdConfiguration();
+        stubJwks(jwk("key-1", keyPair));
+        stubFor(
+            post(urlEqualTo(KEYCLOAK_INTROSPECT_TOKEN_URI))
+                .willReturn(aResponse().withStatus(200).withBody("{\"active\": true, \"source\": \"introspection\"}"))
+        );
+
+        resource.doStart();
+
+        // Tokens are introspected until the realm keys are loaded
+        final String accessToken = signAccessToken("key-1", keyPair, accessToken());
+        JsonNode payload = null;
+        for (int i = 0; i < 50 && (payload == null || payload.has("source")); i++) {
+            final CountDownLatch lock = new CountDownLatch(1);
+            final TestResponseHandler<OAuth2Response> handler = new TestResponseHandler<>(lock);
+            resource.introspect(accessToken, handler);
+            assertTrue(lock.await(10000, TimeUnit.MILLISECONDS));
+            assertTrue(handler.getResponse().isSuccess());
+            payload = new ObjectMapper().readTree(handler.getResponse().getPayload());
+            Thread.sleep(100);
+        }
+
+        assertFalse(payload.has("source"));
+        assertEquals("jane", payload.get("username").asText());
+    }
+
+    @Test
+    public void shouldIntrospectJwtInAutoModeUntilRealmUrlsAreResolved() throws Exception {
+        when(configuration.getKeycloakConfiguration()).thenReturn(String.format(ADAPTER_CONFIG, wireMockRule.port()));
+        when(configuration.getValidationMode()).thenReturn(TokenValidationMode.AUTO);
+
+        // Keycloak discovery endpoint is not available yet
+        stubFor(get(urlEqualTo(KEYCLOAK_OPENID_CONFIGURATION_URI)).willReturn(aResponse().withStatus(503)));
+        final KeyPair keyPair = generateRsaKeyPair();
+        stubJwks(jwk("key-1", keyPair));
+        stubFor(
+            post(urlEqualTo(KEYCLOAK_INTROSPECT_TOKEN_URI))
+                .willReturn(aResponse().withStatus(200).withBody("{\"active\": true, \"source\": \"introspection\"}"))
+        );
+
+        resource.doStart();
+
+        final String accessToken = signAccessToken("key-1", keyPair, accessToken());
+        Thread.sleep(500);
+        CountDownLatch lock = new CountDownLatch(1);
+        TestResponseHandler<OAuth2Response> handler = new TestResponseHandler<>(lock);
+        resource.introspect(accessToken, handler);
+        assertTrue(lock.await(10000, TimeUnit.MILLISECONDS));
+        assertTrue(new ObjectMapper().readTree(handler.getResponse().getPayload()).has("source"));
+
+        // Resolved by a later attempt
+        stubOpenIdConfiguration();
+        JsonNode payload = null;
+        for (int i = 0; i < 100 && (payload == null || payload.has("source")); i++) {
+            lock = new CountDownLatch(1);
+            handler = new TestResponseHandler<>(lock);
+            resource.introspect(accessToken, handler);
+            assertTrue(lock.await(10000, TimeUnit.MILLISECONDS));
+            assertTrue(handler.getResponse().isSuccess());
+            payload = new ObjectMapper().readTree(handler.getResponse().getPayload());
+            Thread.sleep(100);
+        }
+
+        assertFalse(payload.has("source"));
+        assertTrue(findAll(getRequestedFor(urlEqualTo(KEYCLOAK_OPENID_CONFIGURATION_URI))).size() > 1);
+    }
+
+    @Test
+    public void shouldIntrospectOpaqueTokenInAutoMode() throws Exception {
+        when(configuration.getKeycloakConfiguration()).thenReturn(String.format(ADAPTER_CONFIG, wireMockRule.port()));
+        when(configuration.getValidationMode()).thenReturn(TokenValidationMode.AUTO);
+
+        stubOpenIdConfiguration();
+        stubJwks(jwk("key-1", generateRsaKeyPair()));
+        stubFor(
+            post(urlEqualTo(KEYCLOAK_INTROSPECT_TOKEN_URI))
+                .withRequestBody(equalTo("token=xxxx-xxxx-xxxx-xxxx"))
+                .willReturn(aResponse().withStatus(200).withBody("{\"active\": true}"))
+        );
+
+        resource.doStart();
+
+        final CountDownLatch lock = new CountDownLatch(1);
+        final TestResponseHandler<OAuth2Response> handler = new TestResponseHandler<>(lock);
+        resource.introspect("xxxx-xxxx-xxxx-xxxx", handler);
+        assertTrue(lock.await(10000, TimeUnit.MILLISECONDS));
+
+        assertTrue(handler.getResponse().isSuccess());
+        verify(1, postRequestedFor(urlEqualTo(KEYCLOAK_INTROSPECT_TOKEN_URI)));
+    }
+
     @Test
     public void shouldGetUserInfo() throws Exception {
         when(configuration.getKeycloakConfiguration()).thenReturn(String.format(ADAPTER_CONFIG, wireMockRule.port()));
 
-        stubFor(get(urlEqualTo(KEYCLOAK_USERINFO_URI)).willReturn(aResponse().withStatus(200).withBody(EXPECTED_USERINFO_RESPONSE)));
+        stubFor(get(urlEqualTo(KEYCLOAK_USERINFO_URI)).willReturn(aResponse().withStatus(200).withBody(EXPECTED_USERINFO_RESPONSE)));
+
+        final CountDownLatch lock = new CountDownLatch(1);
+
+        resource.doStart();
+
+        final TestResponseHandler<UserInfoResponse> handler = new TestResponseHandler<>(lock);
+
+        resource.userInfo("xxxx-xxxx-xxxx-xxxx", handler);
+        assertTrue(lock.await(10000, TimeUnit.MILLISECONDS));
+
+        assertTrue(handler.getResponse().isSuccess());
+        assertEquals(EXPECTED_USERINFO_RESPONSE, handler.getResponse().getPayload());
+
+        verify(getRequestedFor(urlEqualTo(KEYCLOAK_USERINFO_URI)));
+    }
+
+    @Test
+    public void shouldServeUserInfoFromCache() throws Exception {
+        when(configuration.getKeycloakConfiguration()).thenReturn(String.format(ADAPTER_CONFIG, wireMockRule.port()));
+        when(configuration.isUserInfoCacheEnabled()).thenReturn(true);
+        when(configuration.getUserInfoCacheTtl()).thenReturn(60L);
+        when(configuration.getUserInfoCacheMaxSize()).thenReturn(100);
+
+        stubFor(get(urlEqualTo(KEYCLOAK_USERINFO_URI)).willReturn(aResponse().withStatus(200).withBody(EXPECTED_USERINFO_RESPONSE)));
+
+        resource.doStart();
+
+        for (int i = 0; i < 3; i++) {
+            final CountDownLatch lock = new CountDownLatch(1);
+            final TestResponseHandler<UserInfoResponse> handler = new TestResponseHandler<>(lock);
+            resource.userInfo("xxxx-xxxx-xxxx-xxxx", handler);
+            assertTrue(lock.await(10000, TimeUnit.MILLISECONDS));
+
+            assertTrue(handler.getResponse().isSuccess());
+            assertEquals(EXPECTED_USERINFO_RESPONSE, handler.getResponse().getPayload());
+        }
+
+        verify(1, getRequestedFor(urlEqualTo(KEYCLOAK_USERINFO_URI)));
+    }
+
+    @Test
+    public void shouldBuildUserInfoFromAccessToken() throws Exception {
+        when(configuration.getKeycloakConfiguration()).thenReturn(String.format(ADAPTER_CONFIG, wireMockRule.port()));
+        when(configuration.isValidateTokenLocally()).thenReturn(true);
+        when(configuration.isUserInfoFromToken()).thenReturn(true);
+        when(configuration.getUserInfoExtraClaims()).thenReturn(List.of("department"));
+
+        final KeyPair keyPair = generateRsaKeyPair();
+        stubOpenIdConfiguration();
+        stubJwks(jwk("key-1", keyPair));
+
+        resource.doStart();
+
+        final AccessToken token = accessToken();
+        token.setEmail("jane@gravitee.io");
+        token.setOtherClaims("department", "engineering");
+        token.setOtherClaims("secret", "not-exposed");
+
+        final CountDownLatch lock = new CountDownLatch(1);
+        final TestResponseHandler<UserInfoResponse> handler = new TestResponseHandler<>(lock);
+        resource.userInfo(signAccessToken("key-1", keyPair, token), handler);
+        assertTrue(lock.await(10000, TimeUnit.MILLISECONDS));
+
+        assertTrue(handler.getResponse().isSuccess());
+        JsonNode userInfo = new ObjectMapper().readTree(handler.getResponse().getPayload());
+        assertEquals("248289761001", userInfo.get("sub").asText());
+        assertEquals("jane", userInfo.get("preferred_username").asText());
+        assertEquals("jane@gravitee.io", userInfo.get("email").asText());
+        assertEquals("engineering", userInfo.get("department").asText());
+        assertFalse(userInfo.has("secret"));
+        assertFalse(userInfo.has("iss"));
+
+        verify(0, getRequestedFor(urlEqualTo(KEYCLOAK_USERINFO_URI)));
+    }
+
+    @Test
+    public void shouldNotGetUserInfo() throws Exception {
+        when(configuration.getKeycloakConfiguration()).thenReturn(String.format(ADAPTER_CONFIG, wireMockRule.port()));
+
+        stubFor(get(urlEqualTo(KEYCLOAK_USERINFO_URI)).willReturn(aResponse().withStatus(401)));
+
+        final CountDownLatch lock = new CountDownLatch(1);
+
+        resource.doStart();
+
+        final TestResponseHandler<UserInfoResponse> handler = new TestResponseHandler<>(lock);
+
+        resource.userInfo("xxxx-xxxx-xxxx-xxxx", handler);
+        assertTrue(lock.await(10000, TimeUnit.MILLISECONDS));
+
+        assertFalse(handler.getResponse().isSuccess());
+
+        verify(getRequestedFor(urlEqualTo(KEYCLOAK_USERINFO_URI)));
+    }
+
+    @Test
+    public void shouldConfigureConnectionPool() throws Exception {
+        when(configuration.getKeycloakConfiguration()).thenReturn(String.format(ADAPTER_CONFIG, wireMockRule.port()));
+        when(configuration.getMaxPoolSize()).thenReturn(20);
+        when(configuration.getMaxWaitQueueSize()).thenReturn(50);
+        when(configuration.isKeepAlive()).thenReturn(true);
+        when(configuration.getKeepAliveTimeout()).thenReturn(30);
+        when(configuration.getIdleTimeout()).thenReturn(10);
+
+        resource.doStart();
+
+        HttpClientOptions options = resource.getHttpClientOptions();
+        assertEquals(20, options.getMaxPoolSize());
+        assertEquals(50, options.getMaxWaitQueueSize());
+        assertTrue(options.isKeepAlive());
+        assertEquals(30, options.getKeepAliveTimeout());
+        assertEquals(10, options.getIdleTimeout());
+        assertEquals(TimeUnit.SECONDS, options.getIdleTimeoutUnit());
+    }
+
+    @Test
+    public void shouldTimeOutSlowIntrospection() throws Exception {
+        when(configuration.getKeycloakConfiguration()).thenReturn(String.format(ADAPTER_CONFIG, wireMockRule.port()));
+        when(configuration.isValidateTokenLocally()).thenReturn(false);
+        when(configuration.getConnectTimeout()).thenReturn(1000);
+        when(configuration.getRequestTimeout()).thenReturn(200L);
+
+        stubFor(
+            post(urlEqualTo(KEYCLOAK_INTROSPECT_TOKEN_URI)).willReturn(
+                aResponse().withStatus(200).withFixedDelay(5000).withBody(EXPECTED_INTROSPECTION_ACTIVE_RESPONSE)
+            )
+        );
+
+        resource.doStart();
+
+        assertEquals(1000, resource.getHttpClientOptions().getConnectTimeout());
+
+        final CountDownLatch lock = new CountDownLatch(1);
+        final TestResponseHandler<OAuth2Response> handler = new TestResponseHandler<>(lock);
+        resource.introspect("xxxx-xxxx-xxxx-xxxx", handler);
+
+        assertTrue(lock.await(2000, TimeUnit.MILLISECONDS));
+        assertFalse(handler.getResponse().isSuccess());
+    }
+
+    @Test
+    public void shouldStopCallingKeycloakWhenCircuitIsOpen() throws Exception {
+        when(configuration.getKeycloakConfiguration()).thenReturn(String.format(ADAPTER_CONFIG, wireMockRule.port()));
+        when(configuration.isValidateTokenLocally()).thenReturn(false);
+        when(configuration.isCircuitBreakerEnabled()).thenReturn(true);
+        when(configuration.getCircuitBreakerFailureThreshold()).thenReturn(2);
+        when(configuration.getCircuitBreakerResetTimeout()).thenReturn(30L);
+
+        stubFor(post(urlEqualTo(KEYCLOAK_INTROSPECT_TOKEN_URI)).willReturn(aResponse().withStatus(503)));
+        stubFor(get(urlEqualTo(KEYCLOAK_USERINFO_URI)).willReturn(aResponse().withStatus(200).withBody("{}")));
+
+        resource.doStart();
+
+        for (int i = 0; i < 3; i++) {
+            final CountDownLatch lock = new CountDownLatch(1);
+            final TestResponseHandler<OAuth2Response> handler = new TestResponseHandler<>(lock);
+            resource.introspect("token-" + i, handler);
+            assertTrue(lock.await(10000, TimeUnit.MILLISECONDS));
+            assertFalse(handler.getResponse().isSuccess());
+        }
+
+        final CountDownLatch lock = new CountDownLatch(1);
+        final TestResponseHandler<UserInfoResponse> handler = new TestResponseHandler<>(lock);
+        resource.userInfo("xxxx-xxxx-xxxx-xxxx", handler);
+        assertTrue(lock.await(10000, TimeUnit.MILLISECONDS));
+        assertFalse(handler.getResponse().isSuccess());
+
+        verify(2, postRequestedFor(urlEqualTo(KEYCLOAK_INTROSPECT_TOKEN_URI)));
+        verify(0, getRequestedFor(urlEqualTo(KEYCLOAK_USERINFO_URI)));
+    }
+
+    @Test
+    public void shouldServeLastKnownGoodResultWhenKeycloakFails() throws Exception {
+        when(configuration.getKeycloakConfiguration()).thenReturn(String.format(ADAPTER_CONFIG, wireMockRule.port()));
+        when(configuration.isValidateTokenLocally()).thenReturn(false);
+        when(configuration.isServeStaleOnError()).thenReturn(true);
+        when(configuration.getStaleGracePeriod()).thenReturn(300L);
+
+        final String activePayload = "{\"active\": true, \"exp\": " + (System.currentTimeMillis() / 1000 + 60) + "}";
+        stubFor(post(urlEqualTo(KEYCLOAK_INTROSPECT_TOKEN_URI)).willReturn(aResponse().withStatus(200).withBody(activePayload)));
+
+        resource.doStart();
+
+        CountDownLatch lock = new CountDownLatch(1);
+        resource.introspect("known-token", new TestResponseHandler<>(lock));
+        assertTrue(lock.await(10000, TimeUnit.MILLISECONDS));
+
+        stubFor(post(urlEqualTo(KEYCLOAK_INTROSPECT_TOKEN_URI)).willReturn(aResponse().withStatus(503)));
+
+        lock = new CountDownLatch(1);
+        TestResponseHandler<OAuth2Response> handler = new TestResponseHandler<>(lock);
+        resource.introspect("known-token", handler);
+        assertTrue(lock.await(10000, TimeUnit.MILLISECONDS));
+        assertTrue(handler.getResponse().isSuccess());
+        assertEquals(activePayload, handler.getResponse().getPayload());
+
+        // Tokens never seen active are not served
+        lock = new CountDownLatch(1);
+        handler = new TestResponseHandler<>(lock);
+        resource.introspect("unknown-token", handler);
+        assertTrue(lock.await(10000, TimeUnit.MILLISECONDS));
+        assertFalse(handler.getResponse().isSuccess());
+    }
+
+    @Test
+    public void shouldShedIntrospectionsAboveConcurrencyLimit() throws Exception {
+        when(configuration.getKeycloakConfiguration()).thenReturn(String.format(ADAPTER_CONFIG, wireMockRule.port()));
+        when(configuration.isValidateTokenLocally()).thenReturn(false);
+        when(configuration.isConcurrencyLimitEnabled()).thenReturn(true);
+        when(configuration.getConcurrencyLimitInitial()).thenReturn(1);
+        when(configuration.getConcurrencyLimitMax()).thenReturn(1);
+        when(configuration.getConcurrencyLimitQueueSize()).thenReturn(1);
+        when(configuration.getConcurrencyLimitLatencyThreshold()).thenReturn(5000L);
+        final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        doReturn(registry).when(resource).meterRegistry();
+
+        stubFor(
+            post(urlEqualTo(KEYCLOAK_INTROSPECT_TOKEN_URI)).willReturn(
+                aResponse().withStatus(200).withFixedDelay(300).withBody(EXPECTED_INTROSPECTION_ACTIVE_RESPONSE)
+            )
+        );
+
+        resource.doStart();
+
+        final CountDownLatch lock = new CountDownLatch(3);
+        final List<TestResponseHandler<OAuth2Response>> handlers = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            final TestResponseHandler<OAuth2Response> handler = new TestResponseHandler<>(lock);
+            handlers.add(handler);
+            resource.introspect("token-" + i, handler);
+        }
+        assertTrue(lock.await(10000, TimeUnit.MILLISECONDS));
+
+        // The first call is sent, the second one waits for it, the third one is rejected at once
+        assertTrue(handlers.get(0).getResponse().isSuccess());
+        assertTrue(handlers.get(1).getResponse().isSuccess());
+        assertFalse(handlers.get(2).getResponse().isSuccess());
+        assertEquals("Keycloak concurrency limit reached", handlers.get(2).getResponse().getPayload());
+        verify(2, postRequestedFor(urlEqualTo(KEYCLOAK_INTROSPECT_TOKEN_URI)));
+
+        assertEquals(1, registry.get("gravitee.resource.keycloak.concurrency.limit").gauge().value(), 0);
+        assertEquals(0, registry.get("gravitee.resource.keycloak.concurrency.queued").gauge().value(), 0);
+        assertEquals(1, registry.get("gravitee.resource.keycloak.concurrency.rejections").functionCounter().count(), 0);
+
+        // The meters of a stopped resource are removed, not pinned with its limiter
+        resource.doStop();
+        assertNull(registry.find("gravitee.resource.keycloak.concurrency.limit").gauge());
+        assertNull(registry.find("gravitee.resource.keycloak.concurrency.rejections").functionCounter());
+    }
+
+    @Test
+    public void shouldSpreadCallsAcrossKeycloakNodes() throws Exception {
+        final WireMockServer otherNode = new WireMockServer(wireMockConfig().dynamicPort());
+        otherNode.start();
+        try {
+            when(configuration.getKeycloakConfiguration()).thenReturn(String.format(ADAPTER_CONFIG, wireMockRule.port()));
+            when(configuration.isValidateTokenLocally()).thenReturn(false);
+            when(configuration.getKeycloakEndpoints()).thenReturn(
+                List.of("http://localhost:" + wireMockRule.port(), "http://localhost:" + otherNode.port())
+            );
+
+            stubFor(post(urlEqualTo(KEYCLOAK_INTROSPECT_TOKEN_URI)).willReturn(aResponse().withStatus(200).withBody(EXPECTED_INTROSPECTION_ACTIVE_RESPONSE)));
+            otherNode.stubFor(
+                post(urlEqualTo(KEYCLOAK_INTROSPECT_TOKEN_URI)).willReturn(aResponse().withStatus(200).withBody(EXPECTED_INTROSPECTION_ACTIVE_RESPONSE))
+            );
+
+            resource.doStart();
+
+            for (int i = 0; i < 40; i++) {
+                final CountDownLatch lock = new CountDownLatch(1);
+                final TestResponseHandler<OAuth2Response> handler = new TestResponseHandler<>(lock);
+                resource.introspect("token-" + i, handler);
+                assertTrue(lock.await(10000, TimeUnit.MILLISECONDS));
+                assertTrue(handler.getResponse().isSuccess());
+            }
+
+            final int firstNodeCalls = wireMockRule.findAll(postRequestedFor(urlEqualTo(KEYCLOAK_INTROSPECT_TOKEN_URI))).size();
+            final int otherNodeCalls = otherNode.findAll(postRequestedFor(urlEqualTo(KEYCLOAK_INTROSPECT_TOKEN_URI))).size();
+            assertEquals(40, firstNodeCalls + otherNodeCalls);
+            assertTrue(firstNodeCalls > 0);
+            assertTrue(otherNodeCalls > 0);
+        } finally {
+            otherNode.stop();
+        }
+    }
+
+    @Test
+    public void shouldEjectFailingKeycloakNode() throws Exception {
+        final WireMockServer failingNode = new WireMockServer(wireMockConfig().dynamicPort());
+        failingNode.start();
+        try {
+            when(configuration.getKeycloakConfiguration()).thenReturn(String.format(ADAPTER_CONFIG, wireMockRule.port()));
+            when(configuration.isValidateTokenLocally()).thenReturn(false);
+            when(configuration.getKeycloakEndpoints()).thenReturn(
+                List.of("http://localhost:" + wireMockRule.port(), "http://localhost:" + failingNode.port())
+            );
+            when(configuration.getOutlierFailureThreshold()).thenReturn(1);
+            when(configuration.getOutlierEjectionTime()).thenReturn(60L);
+
+            stubFor(post(urlEqualTo(KEYCLOAK_INTROSPECT_TOKEN_URI)).willReturn(aResponse().withStatus(200).withBody(EXPECTED_INTROSPECTION_ACTIVE_RESPONSE)));
+            failingNode.stubFor(post(urlEqualTo(KEYCLOAK_INTROSPECT_TOKEN_URI)).willReturn(aResponse().withStatus(503)));
+
+            resource.doStart();
+
+            int failures = 0;
+            for (int i = 0; i < 20; i++) {
+                final CountDownLatch lock = new CountDownLatch(1);
+                final TestResponseHandler<OAuth2Response> handler = new TestResponseHandler<>(lock);
+                resource.introspect("token-" + i, handler);
+                assertTrue(lock.await(10000, TimeUnit.MILLISECONDS));
+                failures += handler.getResponse().isSuccess() ? 0 : 1;
+            }
+
+            // The failing node gets at most one call before being ejected
+            assertTrue(failures <= 1);
+            assertEquals(failures, failingNode.findAll(postRequestedFor(urlEqualTo(KEYCLOAK_INTROSPECT_TOKEN_URI))).size());
+        } finally {
+            failingNode.stop();
+        }
+    }
+
+    @Test
+    public void shouldEjectKeycloakNodeFailingHealthChecks() throws Exception {
+        final WireMockServer failingNode = new WireMockServer(wireMockConfig().dynamicPort());
+        failingNode.start();
+        try {
+            when(configuration.getKeycloakConfiguration()).thenReturn(String.format(ADAPTER_CONFIG, wireMockRule.port()));
+            when(configuration.isValidateTokenLocally()).thenReturn(false);
+            when(configuration.getKeycloakEndpoints()).thenReturn(
+                List.of("http://localhost:" + wireMockRule.port(), "http://localhost:" + failingNode.port())
+            );
+            when(configuration.getHealthCheckInterval()).thenReturn(1);
+            when(configuration.getOutlierFailureThreshold()).thenReturn(1);
+            when(configuration.getOutlierEjectionTime()).thenReturn(60L);
+
+            stubFor(get(urlEqualTo(KEYCLOAK_REALM_URI)).willReturn(aResponse().withStatus(200).withBody("{}")));
+            stubFor(post(urlEqualTo(KEYCLOAK_INTROSPECT_TOKEN_URI)).willReturn(aResponse().withStatus(200).withBody(EXPECTED_INTROSPECTION_ACTIVE_RESPONSE)));
+            failingNode.stubFor(get(urlEqualTo(KEYCLOAK_REALM_URI)).willReturn(aResponse().withStatus(503)));
+
+            resource.doStart();
+
+            final long deadline = System.currentTimeMillis() + 10_000;
+            while (failingNode.findAll(getRequestedFor(urlEqualTo(KEYCLOAK_REALM_URI))).isEmpty() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+            assertFalse(failingNode.findAll(getRequestedFor(urlEqualTo(KEYCLOAK_REALM_URI))).isEmpty());
+            // Let the health check response reach the resource
+            Thread.sleep(200);
+
+            for (int i = 0; i < 10; i++) {
+                final CountDownLatch lock = new CountDownLatch(1);
+                final TestResponseHandler<OAuth2Response> handler = new TestResponseHandler<>(lock);
+                resource.introspect("token-" + i, handler);
+                assertTrue(lock.await(10000, TimeUnit.MILLISECONDS));
+                assertTrue(handler.getResponse().isSuccess());
+            }
+
+            assertTrue(failingNode.findAll(postRequestedFor(urlEqualTo(KEYCLOAK_INTROSPECT_TOKEN_URI))).isEmpty());
+            resource.doStop();
+        } finally {
+            failingNode.stop();
+        }
+    }
+
+    @Test
+    public void shouldHedgeSlowIntrospection() throws Exception {
+        when(configuration.getKeycloakConfiguration()).thenReturn(String.format(ADAPTER_CONFIG, wireMockRule.port()));
+        when(configuration.isValidateTokenLocally()).thenReturn(false);
+        when(configuration.isHedgingEnabled()).thenReturn(true);
+        when(configuration.getHedgingDelay()).thenReturn(100L);
+        when(configuration.getHedgingBudget()).thenReturn(100);
+        final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        doReturn(registry).when(resource).meterRegistry();
+
+        // The first call hangs, the hedged one is answered at once
+        stubFor(
+            post(urlEqualTo(KEYCLOAK_INTROSPECT_TOKEN_URI))
+                .inScenario("hedging")
+                .whenScenarioStateIs(Scenario.STARTED)
+                .willSetStateTo("slow call received")
+                .willReturn(aResponse().withStatus(200).withFixedDelay(5000).withBody(EXPECTED_INTROSPECTION_NONACTIVE_RESPONSE))
+        );
+        stubFor(
+            post(urlEqualTo(KEYCLOAK_INTROSPECT_TOKEN_URI))
+                .inScenario("hedging")
+                .whenScenarioStateIs("slow call received")
+                .willReturn(aResponse().withStatus(200).withBody(EXPECTED_INTROSPECTION_ACTIVE_RESPONSE))
+        );
+
+        resource.doStart();
+
+        final long start = System.currentTimeMillis();
+        final CountDownLatch lock = new CountDownLatch(1);
+        final TestResponseHandler<OAuth2Response> handler = new TestResponseHandler<>(lock);
+        resource.introspect("xxxx-xxxx-xxxx-xxxx", handler);
+
+        assertTrue(lock.await(10000, TimeUnit.MILLISECONDS));
+        assertTrue(System.currentTimeMillis() - start < 4000);
+        assertTrue(handler.getResponse().isSuccess());
+        assertEquals(EXPECTED_INTROSPECTION_ACTIVE_RESPONSE, handler.getResponse().getPayload());
+        verify(2, postRequestedFor(urlEqualTo(KEYCLOAK_INTROSPECT_TOKEN_URI)));
+        assertEquals(1, registry.get("gravitee.resource.keycloak.http.hedges").tags("result", "won").counter().count(), 0);
+    }
+
+    @Test
+    public void shouldNotLetServerErrorWinHedgedIntrospection() throws Exception {
+        when(configuration.getKeycloakConfiguration()).thenReturn(String.format(ADAPTER_CONFIG, wireMockRule.port()));
+        when(configuration.isValidateTokenLocally()).thenReturn(false);
+        when(configuration.isHedgingEnabled()).thenReturn(true);
+        when(configuration.getHedgingDelay()).thenReturn(100L);
+        when(configuration.getHedgingBudget()).thenReturn(100);
+
+        // The first call is slow, the hedged one fails at once
+        stubFor(
+            post(urlEqualTo(KEYCLOAK_INTROSPECT_TOKEN_URI))
+                .inScenario("hedging")
+                .whenScenarioStateIs(Scenario.STARTED)
+                .willSetStateTo("slow call received")
+                .willReturn(aResponse().withStatus(200).withFixedDelay(500).withBody(EXPECTED_INTROSPECTION_ACTIVE_RESPONSE))
+        );
+        stubFor(
+            post(urlEqualTo(KEYCLOAK_INTROSPECT_TOKEN_URI))
+                .inScenario("hedging")
+                .whenScenarioStateIs("slow call received")
+                .willReturn(aResponse().withStatus(503).withBody("Service unavailable"))
+        );
+
+        resource.doStart();
+
+        final CountDownLatch lock = new CountDownLatch(1);
+        final TestResponseHandler<OAuth2Response> handler = new TestResponseHandler<>(lock);
+        resource.introspect("xxxx-xxxx-xxxx-xxxx", handler);
+
+        assertTrue(lock.await(10000, TimeUnit.MILLISECONDS));
+        assertTrue(handler.getResponse().isSuccess());
+        assertEquals(EXPECTED_INTROSPECTION_ACTIVE_RESPONSE, handler.getResponse().getPayload());
+        verify(2, postRequestedFor(urlEqualTo(KEYCLOAK_INTROSPECT_TOKEN_URI)));
+    }
+
+    @Test
+    public void shouldNotHedgeIntrospectionAboveConcurrencyLimit() throws Exception {
+        when(configuration.getKeycloakConfiguration()).thenReturn(String.format(ADAPTER_CONFIG, wireMockRule.port()));
+        when(configuration.isValidateTokenLocally()).thenReturn(false);
+        when(configuration.isHedgingEnabled()).thenReturn(true);
+        when(configuration.getHedgingDelay()).thenReturn(50L);
+        when(configuration.getHedgingBudget()).thenReturn(100);
+        when(configuration.isConcurrencyLimitEnabled()).thenReturn(true);
+        when(configuration.getConcurrencyLimitInitial()).thenReturn(1);
+        when(configuration.getConcurrencyLimitMax()).thenReturn(1);
+        when(configuration.getConcurrencyLimitLatencyThreshold()).thenReturn(5000L);
+
+        stubFor(
+            post(urlEqualTo(KEYCLOAK_INTROSPECT_TOKEN_URI)).willReturn(
+                aResponse().withStatus(200).withFixedDelay(300).withBody(EXPECTED_INTROSPECTION_ACTIVE_RESPONSE)
+            )
+        );
+
+        resource.doStart();
+
+        final CountDownLatch lock = new CountDownLatch(1);
+        final TestResponseHandler<OAuth2Response> handler = new TestResponseHandler<>(lock);
+        resource.introspect("xxxx-xxxx-xxxx-xxxx", handler);
+
+        assertTrue(lock.await(10000, TimeUnit.MILLISECONDS));
+        assertTrue(handler.getResponse().isSuccess());
+        // The only permit is held by the first call: the hedge is not sent
+        verify(1, postRequestedFor(urlEqualTo(KEYCLOAK_INTROSPECT_TOKEN_URI)));
+    }
+
+    @Test
+    public void shouldNotHedgeIntrospectionWithoutBudget() throws Exception {
+        when(configuration.getKeycloakConfiguration()).thenReturn(String.format(ADAPTER_CONFIG, wireMockRule.port()));
+        when(configuration.isValidateTokenLocally()).thenReturn(false);
+        when(configuration.isHedgingEnabled()).thenReturn(true);
+        when(configuration.getHedgingDelay()).thenReturn(50L);
+        when(configuration.getHedgingBudget()).thenReturn(10);
+
+        stubFor(
+            post(urlEqualTo(KEYCLOAK_INTROSPECT_TOKEN_URI)).willReturn(
+                aResponse().withStatus(200).withFixedDelay(300).withBody(EXPECTED_INTROSPECTION_ACTIVE_RESPONSE)
+            )
+        );
+
+        resource.doStart();
+
+        final CountDownLatch lock = new CountDownLatch(1);
+        final TestResponseHandler<OAuth2Response> handler = new TestResponseHandler<>(lock);
+        resource.introspect("xxxx-xxxx-xxxx-xxxx", handler);
+
+        assertTrue(lock.await(10000, TimeUnit.MILLISECONDS));
+        assertTrue(handler.getResponse().isSuccess());
+        verify(1, postRequestedFor(urlEqualTo(KEYCLOAK_INTROSPECT_TOKEN_URI)));
+    }
+
+    @Test
+    public void shouldShareClientAndCachesBetweenResourcesWithSameSettings() throws Exception {
+        when(configuration.getKeycloakConfiguration()).thenReturn(String.format(ADAPTER_CONFIG, wireMockRule.port()));
+        when(configuration.isValidateTokenLocally()).thenReturn(false);
+        when(configuration.isSharedClients()).thenReturn(true);
+        when(configuration.isIntrospectionCacheEnabled()).thenReturn(true);
+        when(configuration.getIntrospectionCacheMaxSize()).thenReturn(100);
+        when(configuration.getIntrospectionCacheTtl()).thenReturn(60L);
+
+        stubFor(
+            post(urlEqualTo(KEYCLOAK_INTROSPECT_TOKEN_URI)).willReturn(
+                aResponse().withStatus(200).withBody(EXPECTED_INTROSPECTION_ACTIVE_RESPONSE)
+            )
+        );
+
+        // Another API declaring the same resource
+        final OAuth2KeycloakResource otherResource = spy(new OAuth2KeycloakResource());
+        otherResource.setApplicationContext(applicationContext);
+        when(otherResource.configuration()).thenReturn(configuration);
+
+        resource.doStart();
+        otherResource.doStart();
+
+        for (OAuth2KeycloakResource target : List.of(resource, otherResource)) {
+            final CountDownLatch lock = new CountDownLatch(1);
+            final TestResponseHandler<OAuth2Response> handler = new TestResponseHandler<>(lock);
+            target.introspect("xxxx-xxxx-xxxx-xxxx", handler);
+            assertTrue(lock.await(10000, TimeUnit.MILLISECONDS));
+            assertTrue(handler.getResponse().isSuccess());
+        }
+        verify(1, postRequestedFor(urlEqualTo(KEYCLOAK_INTROSPECT_TOKEN_URI)));
+
+        // The client is still usable by the remaining resource
+        resource.doStop();
 
         final CountDownLatch lock = new CountDownLatch(1);
+        final TestResponseHandler<OAuth2Response> handler = new TestResponseHandler<>(lock);
+        otherResource.introspect("yyyy-yyyy-yyyy-yyyy", handler);
+        assertTrue(lock.await(10000, TimeUnit.MILLISECONDS));
+        assertTrue(handler.getResponse().isSuccess());
+        verify(2, postRequestedFor(urlEqualTo(KEYCLOAK_INTROSPECT_TOKEN_URI)));
+
+        otherResource.doStop();
+    }
+
+    @Test
+    public void shouldServeIntrospectionCachedByAnotherNode() throws Exception {
+        when(configuration.getKeycloakConfiguration()).thenReturn(String.format(ADAPTER_CONFIG, wireMockRule.port()));
+        when(configuration.isValidateTokenLocally()).thenReturn(false);
+        when(configuration.isIntrospectionCacheEnabled()).thenReturn(true);
+        when(configuration.getIntrospectionCacheMaxSize()).thenReturn(100);
+        when(configuration.getIntrospectionCacheTtl()).thenReturn(60L);
+        when(configuration.isClusterCacheEnabled()).thenReturn(true);
+
+        final InMemoryClusterCache clusterCache = new InMemoryClusterCache("introspection");
+        final CacheManager cacheManager = mock(CacheManager.class);
+        when(cacheManager.<String, String>getOrCreateCache(anyString(), any(CacheConfiguration.class))).thenReturn(clusterCache);
+        when(applicationContext.getBean(CacheManager.class)).thenReturn(cacheManager);
+
+        stubFor(
+            post(urlEqualTo(KEYCLOAK_INTROSPECT_TOKEN_URI)).willReturn(
+                aResponse().withStatus(200).withBody(EXPECTED_INTROSPECTION_ACTIVE_RESPONSE)
+            )
+        );
+
+        // Another gateway node: nothing is shared in memory
+        final OAuth2KeycloakResource otherNode = spy(new OAuth2KeycloakResource());
+        otherNode.setApplicationContext(applicationContext);
+        when(otherNode.configuration()).thenReturn(configuration);
 
         resource.doStart();
+        otherNode.doStart();
 
-        final TestResponseHandler<UserInfoResponse> handler = new TestResponseHandler<>(lock);
+        final CountDownLatch lock = new CountDownLatch(1);
+        final TestResponseHandler<OAuth2Response> handler = new TestResponseHandler<>(lock);
+        resource.introspect("xxxx-xxxx-xxxx-xxxx", handler);
+        assertTrue(lock.await(10000, TimeUnit.MILLISECONDS));
+        assertTrue(handler.getResponse().isSuccess());
 
-        resource.userInfo("xxxx-xxxx-xxxx-xxxx", handler);
+        // Written in the background
+        final long deadline = System.currentTimeMillis() + 10_000;
+        while (clusterCache.isEmpty()) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+
+        final CountDownLatch otherLock = new CountDownLatch(1);
+        final TestResponseHandler<OAuth2Response> otherHandler = new TestResponseHandler<>(otherLock);
+        otherNode.introspect("xxxx-xxxx-xxxx-xxxx", otherHandler);
+        assertTrue(otherLock.await(10000, TimeUnit.MILLISECONDS));
+        assertTrue(otherHandler.getResponse().isSuccess());
+        assertEquals(EXPECTED_INTROSPECTION_ACTIVE_RESPONSE, otherHandler.getResponse().getPayload());
+
+        verify(1, postRequestedFor(urlEqualTo(KEYCLOAK_INTROSPECT_TOKEN_URI)));
+
+        otherNode.doStop();
+    }
+
+    @Test
+    public void shouldPassProjectedIntrospectionClaims() throws Exception {
+        when(configuration.getKeycloakConfiguration()).thenReturn(String.format(ADAPTER_CONFIG, wireMockRule.port()));
+        when(configuration.isValidateTokenLocally()).thenReturn(false);
+        when(configuration.getUserClaim()).thenReturn("email");
+        when(configuration.getProjectedClaims()).thenReturn(List.of("realm_access.roles"));
+
+        stubFor(
+            post(urlEqualTo(KEYCLOAK_INTROSPECT_TOKEN_URI)).willReturn(
+                aResponse()
+                    .withStatus(200)
+                    .withBody(
+                        "{\"active\": true, \"sub\": \"jane\", \"email\": \"jane@gravitee.io\", \"groups\": [\"admins\"], " +
+                        "\"realm_access\": {\"roles\": [\"user\"]}, \"resource_access\": {\"account\": {\"roles\": [\"manage-account\"]}}}"
+                    )
+            )
+        );
+
+        resource.doStart();
+
+        final CountDownLatch lock = new CountDownLatch(1);
+        final TestResponseHandler<OAuth2Response> handler = new TestResponseHandler<>(lock);
+        resource.introspect("xxxx-xxxx-xxxx-xxxx", handler);
         assertTrue(lock.await(10000, TimeUnit.MILLISECONDS));
 
         assertTrue(handler.getResponse().isSuccess());
-        assertEquals(EXPECTED_USERINFO_RESPONSE, handler.getResponse().getPayload());
-
-        verify(getRequestedFor(urlEqualTo(KEYCLOAK_USERINFO_URI)));
+        assertEquals(
+            "{\"active\":true,\"sub\":\"jane\",\"email\":\"jane@gravitee.io\",\"realm_access\":{\"roles\":[\"user\"]}}",
+            handler.getResponse().getPayload()
+        );
     }
 
     @Test
-    public void shouldNotGetUserInfo() throws Exception {
+    public void shouldNotShareCachedIntrospectionsBetweenResourcesProjectingOtherClaims() throws Exception {
         when(configuration.getKeycloakConfiguration()).thenReturn(String.format(ADAPTER_CONFIG, wireMockRule.port()));
+        when(configuration.isValidateTokenLocally()).thenReturn(false);
+        when(configuration.isSharedClients()).thenReturn(true);
+        when(configuration.isIntrospectionCacheEnabled()).thenReturn(true);
+        when(configuration.getIntrospectionCacheMaxSize()).thenReturn(100);
+        when(configuration.getIntrospectionCacheTtl()).thenReturn(300L);
+        when(configuration.getProjectedClaims()).thenReturn(List.of("realm_access.roles"));
+
+        // Another API declaring the same resource, passing other claims to its policies
+        final OAuth2KeycloakResourceConfiguration otherConfiguration = mock(OAuth2KeycloakResourceConfiguration.class);
+        when(otherConfiguration.getKeycloakConfiguration()).thenReturn(String.format(ADAPTER_CONFIG, wireMockRule.port()));
+        when(otherConfiguration.isSharedClients()).thenReturn(true);
+        when(otherConfiguration.isIntrospectionCacheEnabled()).thenReturn(true);
+        when(otherConfiguration.getIntrospectionCacheMaxSize()).thenReturn(100);
+        when(otherConfiguration.getIntrospectionCacheTtl()).thenReturn(300L);
+        when(otherConfiguration.getProjectedClaims()).thenReturn(List.of("groups"));
+        final OAuth2KeycloakResource otherResource = spy(new OAuth2KeycloakResource());
+        otherResource.setApplicationContext(applicationContext);
+        when(otherResource.configuration()).thenReturn(otherConfiguration);
 
-        stubFor(get(urlEqualTo(KEYCLOAK_USERINFO_URI)).willReturn(aResponse().withStatus(401)));
+        stubFor(
+            post(urlEqualTo(KEYCLOAK_INTROSPECT_TOKEN_URI)).willReturn(
+                aResponse()
+                    .withStatus(200)
+                    .withBody("{\"active\": true, \"sub\": \"jane\", \"groups\": [\"admins\"], \"realm_access\": {\"roles\": [\"user\"]}}")
+            )
+        );
+
+        resource.doStart();
+        otherResource.doStart();
 
         final CountDownLatch lock = new CountDownLatch(1);
+        final TestResponseHandler<OAuth2Response> handler = new TestResponseHandler<>(lock);
+        resource.introspect("xxxx-xxxx-xxxx-xxxx", handler);
+        assertTrue(lock.await(10000, TimeUnit.MILLISECONDS));
+        assertEquals("{\"active\":true,\"sub\":\"jane\",\"realm_access\":{\"roles\":[\"user\"]}}", handler.getResponse().getPayload());
+
+        final CountDownLatch otherLock = new CountDownLatch(1);
+        final TestResponseHandler<OAuth2Response> otherHandler = new TestResponseHandler<>(otherLock);
+        otherResource.introspect("xxxx-xxxx-xxxx-xxxx", otherHandler);
+        assertTrue(otherLock.await(10000, TimeUnit.MILLISECONDS));
+        assertEquals("{\"active\":true,\"sub\":\"jane\",\"groups\":[\"admins\"]}", otherHandler.getResponse().getPayload());
+
+        verify(2, postRequestedFor(urlEqualTo(KEYCLOAK_INTROSPECT_TOKEN_URI)));
+
+        otherResource.doStop();
+    }
+
+    @Test
+    public void shouldDenyReplayedInactiveTokenWithoutIntrospection() throws Exception {
+        when(configuration.getKeycloakConfiguration()).thenReturn(String.format(ADAPTER_CONFIG, wireMockRule.port()));
+        when(configuration.isValidateTokenLocally()).thenReturn(false);
+        when(configuration.isRejectedTokenFilterEnabled()).thenReturn(true);
+        when(configuration.getRejectedTokenFilterCapacity()).thenReturn(1000);
+        when(configuration.getRejectedTokenFilterFalsePositiveRate()).thenReturn(0.000001);
+        when(configuration.getRejectedTokenFilterWindow()).thenReturn(60L);
+        final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        doReturn(registry).when(resource).meterRegistry();
+
+        stubFor(
+            post(urlEqualTo(KEYCLOAK_INTROSPECT_TOKEN_URI)).willReturn(
+                aResponse().withStatus(200).withBody(EXPECTED_INTROSPECTION_NONACTIVE_RESPONSE)
+            )
+        );
 
         resource.doStart();
 
-        final TestResponseHandler<UserInfoResponse> handler = new TestResponseHandler<>(lock);
+        for (int i = 0; i < 3; i++) {
+            final CountDownLatch lock = new CountDownLatch(1);
+            final TestResponseHandler<OAuth2Response> handler = new TestResponseHandler<>(lock);
+            resource.introspect("xxxx-xxxx-xxxx-xxxx", handler);
+            assertTrue(lock.await(10000, TimeUnit.MILLISECONDS));
+            assertFalse(handler.getResponse().isSuccess());
+            assertEquals(ACCESS_DENIED_RESPONSE, handler.getResponse().getPayload());
+        }
 
-        resource.userInfo("xxxx-xxxx-xxxx-xxxx", handler);
+        verify(1, postRequestedFor(urlEqualTo(KEYCLOAK_INTROSPECT_TOKEN_URI)));
+        assertEquals(2, registry.get("gravitee.resource.keycloak.fast.rejections").tags("reason", "filtered").counter().count(), 0);
+        assertTrue(registry.get("gravitee.resource.keycloak.fast.rejections.filter.memory").gauge().value() > 0);
+
+        resource.doStop();
+        assertNull(registry.find("gravitee.resource.keycloak.fast.rejections.filter.memory").gauge());
+    }
+
+    @Test
+    public void shouldDenyMalformedOrExpiredJwtWithoutIntrospection() throws Exception {
+        when(configuration.getKeycloakConfiguration()).thenReturn(String.format(ADAPTER_CONFIG, wireMockRule.port()));
+        when(configuration.isValidateTokenLocally()).thenReturn(false);
+        when(configuration.isRejectedTokenFilterEnabled()).thenReturn(true);
+        when(configuration.getRejectedTokenFilterCapacity()).thenReturn(1000);
+        when(configuration.getRejectedTokenFilterFalsePositiveRate()).thenReturn(0.000001);
+        when(configuration.getRejectedTokenFilterWindow()).thenReturn(60L);
+
+        stubFor(
+            post(urlEqualTo(KEYCLOAK_INTROSPECT_TOKEN_URI)).willReturn(
+                aResponse().withStatus(200).withBody(EXPECTED_INTROSPECTION_ACTIVE_RESPONSE)
+            )
+        );
+
+        resource.doStart();
+
+        final String expiredToken = signAccessToken(
+            "key-1",
+            generateRsaKeyPair(),
+            (AccessToken) accessToken().exp(System.currentTimeMillis() / 1000 - 10)
+        );
+        for (String accessToken : List.of("not.a.jwt", expiredToken)) {
+            final CountDownLatch lock = new CountDownLatch(1);
+            final TestResponseHandler<OAuth2Response> handler = new TestResponseHandler<>(lock);
+            resource.introspect(accessToken, handler);
+            assertTrue(lock.await(10000, TimeUnit.MILLISECONDS));
+            assertFalse(handler.getResponse().isSuccess());
+            assertEquals(ACCESS_DENIED_RESPONSE, handler.getResponse().getPayload());
+        }
+
+        verify(0, postRequestedFor(urlEqualTo(KEYCLOAK_INTROSPECT_TOKEN_URI)));
+    }
+
+    @Test
+    public void shouldDenyMissingTokenWithoutIntrospection() throws Exception {
+        when(configuration.getKeycloakConfiguration()).thenReturn(String.format(ADAPTER_CONFIG, wireMockRule.port()));
+        when(configuration.isValidateTokenLocally()).thenReturn(false);
+        when(configuration.isRejectedTokenFilterEnabled()).thenReturn(true);
+        when(configuration.getRejectedTokenFilterCapacity()).thenReturn(1000);
+        when(configuration.getRejectedTokenFilterFalsePositiveRate()).thenReturn(0.000001);
+        when(configuration.getRejectedTokenFilterWindow()).thenReturn(60L);
+
+        resource.doStart();
+
+        final CountDownLatch lock = new CountDownLatch(1);
+        final TestResponseHandler<OAuth2Response> handler = new TestResponseHandler<>(lock);
+        resource.introspect(null, handler);
         assertTrue(lock.await(10000, TimeUnit.MILLISECONDS));
 
         assertFalse(handler.getResponse().isSuccess());
+        verify(0, postRequestedFor(urlEqualTo(KEYCLOAK_INTROSPECT_TOKEN_URI)));
+    }
 
-        verify(getRequestedFor(urlEqualTo(KEYCLOAK_USERINFO_URI)));
+    @Test
+    public void shouldFilterTokensRejectedByLocalValidation() throws Exception {
+        when(configuration.getKeycloakConfiguration()).thenReturn(String.format(ADAPTER_CONFIG, wireMockRule.port()));
+        when(configuration.isValidateTokenLocally()).thenReturn(true);
+        when(configuration.isRejectedTokenFilterEnabled()).thenReturn(true);
+        when(configuration.getRejectedTokenFilterCapacity()).thenReturn(1000);
+        when(configuration.getRejectedTokenFilterFalsePositiveRate()).thenReturn(0.000001);
+        when(configuration.getRejectedTokenFilterWindow()).thenReturn(60L);
+        final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        doReturn(registry).when(resource).meterRegistry();
+
+        stubOpenIdConfiguration();
+        stubJwks(jwk("key-1", generateRsaKeyPair()));
+
+        resource.doStart();
+
+        // Signed with another key than the realm key it refers to
+        final String forgedToken = signAccessToken("key-1", generateRsaKeyPair(), accessToken());
+        for (int i = 0; i < 2; i++) {
+            final CountDownLatch lock = new CountDownLatch(1);
+            final TestResponseHandler<OAuth2Response> handler = new TestResponseHandler<>(lock);
+            resource.introspect(forgedToken, handler);
+            assertTrue(lock.await(10000, TimeUnit.MILLISECONDS));
+            assertFalse(handler.getResponse().isSuccess());
+            assertEquals(ACCESS_DENIED_RESPONSE, handler.getResponse().getPayload());
+        }
+
+        assertEquals(1, registry.get("gravitee.resource.keycloak.fast.rejections").tags("reason", "filtered").counter().count(), 0);
+    }
+
+    @Test
+    public void shouldDenyCachedIntrospectionOfLoggedOutSession() throws Exception {
+        when(configuration.getKeycloakConfiguration()).thenReturn(String.format(ADAPTER_CONFIG, wireMockRule.port()));
+        when(configuration.isValidateTokenLocally()).thenReturn(false);
+        when(configuration.isIntrospectionCacheEnabled()).thenReturn(true);
+        when(configuration.getIntrospectionCacheMaxSize()).thenReturn(100);
+        when(configuration.getIntrospectionCacheTtl()).thenReturn(300L);
+        when(configuration.getRevocationEventsAddress()).thenReturn("keycloak.revocations");
+        when(configuration.getRevocationRetention()).thenReturn(3600L);
+
+        final long now = System.currentTimeMillis() / 1000;
+        final String introspection = "{\"active\": true, \"sub\": \"248289761001\", \"sid\": \"session-1\", \"iat\": " + now + "}";
+        stubFor(post(urlEqualTo(KEYCLOAK_INTROSPECT_TOKEN_URI)).willReturn(aResponse().withStatus(200).withBody(introspection)));
+
+        resource.doStart();
+
+        final CountDownLatch firstLock = new CountDownLatch(1);
+        final TestResponseHandler<OAuth2Response> firstHandler = new TestResponseHandler<>(firstLock);
+        resource.introspect("xxxx-xxxx-xxxx-xxxx", firstHandler);
+        assertTrue(firstLock.await(10000, TimeUnit.MILLISECONDS));
+        assertTrue(firstHandler.getResponse().isSuccess());
+
+        // Keycloak pushes the logout of the session
+        final JsonObject logout = new JsonObject()
+            .put("action", "LOGOUT")
+            .put("realm", "Gravitee")
+            .put("keycloakSessionIds", new JsonArray().add("session-1"));
+        final Vertx vertx = applicationContext.getBean(Vertx.class);
+        assertEquals(
+            Boolean.TRUE,
+            vertx.eventBus().request("keycloak.revocations", logout).toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS).body()
+        );
+
+        final CountDownLatch secondLock = new CountDownLatch(1);
+        final TestResponseHandler<OAuth2Response> secondHandler = new TestResponseHandler<>(secondLock);
+        resource.introspect("xxxx-xxxx-xxxx-xxxx", secondHandler);
+        assertTrue(secondLock.await(10000, TimeUnit.MILLISECONDS));
+        assertFalse(secondHandler.getResponse().isSuccess());
+        assertEquals(ACCESS_DENIED_RESPONSE, secondHandler.getResponse().getPayload());
+
+        verify(1, postRequestedFor(urlEqualTo(KEYCLOAK_INTROSPECT_TOKEN_URI)));
+    }
+
+    @Test
+    public void shouldDenyLoggedOutSessionCachedByResourceWithoutRevocationEvents() throws Exception {
+        when(configuration.getKeycloakConfiguration()).thenReturn(String.format(ADAPTER_CONFIG, wireMockRule.port()));
+        when(configuration.isValidateTokenLocally()).thenReturn(false);
+        when(configuration.isSharedClients()).thenReturn(true);
+        when(configuration.isIntrospectionCacheEnabled()).thenReturn(true);
+        when(configuration.getIntrospectionCacheMaxSize()).thenReturn(100);
+        when(configuration.getIntrospectionCacheTtl()).thenReturn(300L);
+
+        // Another API declaring the same resource, subscribed to revocation events
+        final OAuth2KeycloakResourceConfiguration otherConfiguration = mock(OAuth2KeycloakResourceConfiguration.class);
+        when(otherConfiguration.getKeycloakConfiguration()).thenReturn(String.format(ADAPTER_CONFIG, wireMockRule.port()));
+        when(otherConfiguration.isSharedClients()).thenReturn(true);
+        when(otherConfiguration.isIntrospectionCacheEnabled()).thenReturn(true);
+        when(otherConfiguration.getIntrospectionCacheMaxSize()).thenReturn(100);
+        when(otherConfiguration.getIntrospectionCacheTtl()).thenReturn(300L);
+        when(otherConfiguration.getRevocationEventsAddress()).thenReturn("keycloak.revocations.shared");
+        when(otherConfiguration.getRevocationRetention()).thenReturn(3600L);
+        final OAuth2KeycloakResource otherResource = spy(new OAuth2KeycloakResource());
+        otherResource.setApplicationContext(applicationContext);
+        when(otherResource.configuration()).thenReturn(otherConfiguration);
+
+        final long now = System.currentTimeMillis() / 1000;
+        final String introspection = "{\"active\": true, \"sub\": \"248289761001\", \"sid\": \"session-1\", \"iat\": " + now + "}";
+        stubFor(post(urlEqualTo(KEYCLOAK_INTROSPECT_TOKEN_URI)).willReturn(aResponse().withStatus(200).withBody(introspection)));
+
+        resource.doStart();
+        otherResource.doStart();
+
+        final CountDownLatch firstLock = new CountDownLatch(1);
+        final TestResponseHandler<OAuth2Response> firstHandler = new TestResponseHandler<>(firstLock);
+        resource.introspect("xxxx-xxxx-xxxx-xxxx", firstHandler);
+        assertTrue(firstLock.await(10000, TimeUnit.MILLISECONDS));
+        assertTrue(firstHandler.getResponse().isSuccess());
+
+        final JsonObject logout = new JsonObject().put("action", "LOGOUT").put("keycloakSessionIds", new JsonArray().add("session-1"));
+        final Vertx vertx = applicationContext.getBean(Vertx.class);
+        vertx.eventBus().request("keycloak.revocations.shared", logout).toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+
+        final CountDownLatch secondLock = new CountDownLatch(1);
+        final TestResponseHandler<OAuth2Response> secondHandler = new TestResponseHandler<>(secondLock);
+        otherResource.introspect("xxxx-xxxx-xxxx-xxxx", secondHandler);
+        assertTrue(secondLock.await(10000, TimeUnit.MILLISECONDS));
+        assertFalse(secondHandler.getResponse().isSuccess());
+        assertEquals(ACCESS_DENIED_RESPONSE, secondHandler.getResponse().getPayload());
+
+        verify(1, postRequestedFor(urlEqualTo(KEYCLOAK_INTROSPECT_TOKEN_URI)));
+
+        otherResource.doStop();
+    }
+
+    @Test
+    public void shouldDenyLocallyValidatedTokenIssuedBeforeNotBefore() throws Exception {
+        when(configuration.getKeycloakConfiguration()).thenReturn(String.format(ADAPTER_CONFIG, wireMockRule.port()));
+        when(configuration.isValidateTokenLocally()).thenReturn(true);
+        when(configuration.isVerifiedTokenCacheEnabled()).thenReturn(true);
+        when(configuration.getVerifiedTokenCacheMaxSize()).thenReturn(100);
+        when(configuration.getRevocationEventsAddress()).thenReturn("keycloak.revocations");
+        when(configuration.getRevocationRetention()).thenReturn(3600L);
+
+        final KeyPair keyPair = generateRsaKeyPair();
+        stubOpenIdConfiguration();
+        stubJwks(jwk("key-1", keyPair));
+
+        resource.doStart();
+
+        final String accessToken = signAccessToken("key-1", keyPair, accessToken());
+        final CountDownLatch firstLock = new CountDownLatch(1);
+        final TestResponseHandler<OAuth2Response> firstHandler = new TestResponseHandler<>(firstLock);
+        resource.introspect(accessToken, firstHandler);
+        assertTrue(firstLock.await(10000, TimeUnit.MILLISECONDS));
+        assertTrue(firstHandler.getResponse().isSuccess());
+
+        // An administrator pushes a realm-wide not-before policy
+        final JsonObject notBefore = new JsonObject()
+            .put("action", "PUSH_NOT_BEFORE")
+            .put("notBefore", System.currentTimeMillis() / 1000 + 60);
+        final Vertx vertx = applicationContext.getBean(Vertx.class);
+        vertx.eventBus().request("keycloak.revocations", notBefore).toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+
+        for (String token : List.of(accessToken, signAccessToken("key-1", keyPair, accessToken()))) {
+            final CountDownLatch lock = new CountDownLatch(1);
+            final TestResponseHandler<OAuth2Response> handler = new TestResponseHandler<>(lock);
+            resource.introspect(token, handler);
+            assertTrue(lock.await(10000, TimeUnit.MILLISECONDS));
+            assertFalse(handler.getResponse().isSuccess());
+            assertEquals(ACCESS_DENIED_RESPONSE, handler.getResponse().getPayload());
+        }
+    }
+
+    @Test
+    public void shouldValidateAccessTokenViaIntrospectOverHttp2() throws Exception {
+        when(configuration.getKeycloakConfiguration()).thenReturn(String.format(ADAPTER_CONFIG, wireMockRule.port()));
+        when(configuration.isValidateTokenLocally()).thenReturn(false);
+        when(configuration.isHttp2Enabled()).thenReturn(true);
+        when(configuration.getHttp2MaxConcurrentStreams()).thenReturn(50);
+
+        // Preflight request used to upgrade the clear text connection to h2c
+        stubFor(options(anyUrl()).willReturn(aResponse().withStatus(200)));
+        stubFor(
+            post(urlEqualTo(KEYCLOAK_INTROSPECT_TOKEN_URI)).willReturn(
+                aResponse().withStatus(200).withBody(EXPECTED_INTROSPECTION_ACTIVE_RESPONSE)
+            )
+        );
+
+        resource.doStart();
+
+        assertEquals(HttpVersion.HTTP_2, resource.getHttpClientOptions().getProtocolVersion());
+        assertEquals(50, resource.getHttpClientOptions().getHttp2MultiplexingLimit());
+
+        final CountDownLatch lock = new CountDownLatch(1);
+        final TestResponseHandler<OAuth2Response> handler = new TestResponseHandler<>(lock);
+
+        resource.introspect("xxxx-xxxx-xxxx-xxxx", handler);
+        assertTrue(lock.await(10000, TimeUnit.MILLISECONDS));
+
+        assertTrue(handler.getResponse().isSuccess());
+        assertEquals(EXPECTED_INTROSPECTION_ACTIVE_RESPONSE, handler.getResponse().getPayload());
+
+        List<LoggedRequest> requests = findAll(postRequestedFor(urlEqualTo(KEYCLOAK_INTROSPECT_TOKEN_URI)));
+        assertEquals(1, requests.size());
+        assertEquals("HTTP/2.0", requests.get(0).getProtocol());
     }
 
     @Test
@@ -303,4 +1773,284 @@ public class OAuth2KeycloakResourceTest {
         assertEquals(1, resourceMetadata.authorizationServers().size());
         assertEquals(scopes, resourceMetadata.scopesSupported());
     }
+
+    private AccessToken accessToken() {
+        AccessToken token = new AccessToken();
+        token.id(java.util.UUID.randomUUID().toString());
+        token.issuer("http://localhost:" + wireMockRule.port() + "/auth/realms/Gravitee");
+        token.type("Bearer");
+        token.subject("248289761001");
+        token.issuedFor("gravitee-gateway");
+        token.audience("gravitee-gateway");
+        token.setPreferredUsername("jane");
+        token.iat(System.currentTimeMillis() / 1000);
+        token.exp(System.currentTimeMillis() / 1000 + 300);
+        return token;
+    }
+
+    private static KeyPair generateRsaKeyPair() throws NoSuchAlgorithmException {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        return generator.generateKeyPair();
+    }
+
+    @Test
+    public void shouldRecordRemoteIntrospectionMetrics() throws Exception {
+        when(configuration.getKeycloakConfiguration()).thenReturn(String.format(ADAPTER_CONFIG, wireMockRule.port()));
+        when(configuration.isValidateTokenLocally()).thenReturn(false);
+        when(configuration.isIntrospectionCacheEnabled()).thenReturn(true);
+        when(configuration.getIntrospectionCacheMaxSize()).thenReturn(100);
+        when(configuration.getIntrospectionCacheTtl()).thenReturn(60L);
+        when(configuration.isKeepAlive()).thenReturn(true);
+        final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        doReturn(registry).when(resource).meterRegistry();
+
+        stubFor(
+            post(urlEqualTo(KEYCLOAK_INTROSPECT_TOKEN_URI))
+                .withRequestBody(equalTo("token=active-token"))
+                .willReturn(aResponse().withStatus(200).withBody(EXPECTED_INTROSPECTION_ACTIVE_RESPONSE))
+        );
+        stubFor(
+            post(urlEqualTo(KEYCLOAK_INTROSPECT_TOKEN_URI))
+                .withRequestBody(equalTo("token=unauthorized-token"))
+                .willReturn(aResponse().withStatus(401).withBody("{\"error\": \"invalid_client\"}"))
+        );
+
+        resource.doStart();
+
+        for (String accessToken : List.of("active-token", "active-token", "unauthorized-token")) {
+            final CountDownLatch lock = new CountDownLatch(1);
+            resource.introspect(accessToken, new TestResponseHandler<>(lock));
+            assertTrue(lock.await(10000, TimeUnit.MILLISECONDS));
+        }
+
+        assertEquals(1, registry.get("gravitee.resource.keycloak.introspection").tags("validation", "remote", "outcome", "active").timer().count());
+        assertEquals(1, registry.get("gravitee.resource.keycloak.introspection").tags("validation", "remote", "outcome", "error").timer().count());
+        assertEquals(1, registry.get("gravitee.resource.keycloak.http.responses").tags("endpoint", "introspection", "status", "200").counter().count(), 0);
+        assertEquals(1, registry.get("gravitee.resource.keycloak.http.responses").tags("endpoint", "introspection", "status", "401").counter().count(), 0);
+        assertEquals(1, registry.get("gravitee.resource.keycloak.cache.requests").tags("cache", "introspection", "result", "hit").counter().count(), 0);
+        assertEquals(2, registry.get("gravitee.resource.keycloak.cache.requests").tags("cache", "introspection", "result", "miss").counter().count(), 0);
+        assertEquals(0, registry.get("gravitee.resource.keycloak.http.requests.active").tags("realm", "Gravitee").gauge().value(), 0);
+        assertEquals(0, registry.get("gravitee.resource.keycloak.http.requests.pending").tags("realm", "Gravitee").gauge().value(), 0);
+        assertTrue(registry.get("gravitee.resource.keycloak.http.connections").tags("realm", "Gravitee").gauge().value() > 0);
+
+        resource.doStop();
+
+        assertNull(registry.find("gravitee.resource.keycloak.http.requests.active").gauge());
+        assertNull(registry.find("gravitee.resource.keycloak.http.connections").gauge());
+    }
+
+    @Test
+    public void shouldRecordLocalIntrospectionMetrics() throws Exception {
+        when(configuration.getKeycloakConfiguration()).thenReturn(String.format(ADAPTER_CONFIG, wireMockRule.port()));
+        when(configuration.isValidateTokenLocally()).thenReturn(true);
+        final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        doReturn(registry).when(resource).meterRegistry();
+
+        final KeyPair keyPair = generateRsaKeyPair();
+        stubOpenIdConfiguration();
+        stubJwks(jwk("key-1", keyPair));
+
+        resource.doStart();
+
+        for (String accessToken : List.of(
+            signAccessToken("key-1", keyPair, accessToken()),
+            signAccessToken("key-1", keyPair, (AccessToken) accessToken().exp(System.currentTimeMillis() / 1000 - 10))
+        )) {
+            final CountDownLatch lock = new CountDownLatch(1);
+            resource.introspect(accessToken, new TestResponseHandler<>(lock));
+            assertTrue(lock.await(10000, TimeUnit.MILLISECONDS));
+        }
+
+        assertEquals(1, registry.get("gravitee.resource.keycloak.introspection").tags("validation", "local", "outcome", "active").timer().count());
+        assertEquals(1, registry.get("gravitee.resource.keycloak.introspection").tags("validation", "local", "outcome", "inactive").timer().count());
+        assertEquals(1, registry.get("gravitee.resource.keycloak.verification").tags("outcome", "valid").timer().count());
+        assertEquals(1, registry.get("gravitee.resource.keycloak.verification").tags("outcome", "invalid").timer().count());
+        assertEquals(0, registry.get("gravitee.resource.keycloak.introspection").tags("validation", "remote").timers().stream().mapToLong(Timer::count).sum());
+    }
+
+    @Test
+    public void shouldTraceRemoteIntrospection() throws Exception {
+        when(configuration.getKeycloakConfiguration()).thenReturn(String.format(ADAPTER_CONFIG, wireMockRule.port()));
+        when(configuration.isValidateTokenLocally()).thenReturn(false);
+        when(configuration.isTracingEnabled()).thenReturn(true);
+        final List<SpanData> spans = new CopyOnWriteArrayList<>();
+        doReturn((SpanExporter) spans::add).when(resource).spanExporter();
+
+        stubFor(post(urlEqualTo(KEYCLOAK_INTROSPECT_TOKEN_URI)).willReturn(aResponse().withStatus(200).withBody(EXPECTED_INTROSPECTION_ACTIVE_RESPONSE)));
+
+        resource.doStart();
+
+        final CountDownLatch lock = new CountDownLatch(1);
+        resource.introspect("xxxx-xxxx-xxxx-xxxx", new TestResponseHandler<>(lock));
+        assertTrue(lock.await(10000, TimeUnit.MILLISECONDS));
+
+        assertEquals(2, spans.size());
+        final SpanData request = spans.get(0);
+        final SpanData introspect = spans.get(1);
+        assertEquals("keycloak.http.introspection", request.name());
+        assertEquals(200L, request.attributes().get("http.response.status_code"));
+        assertEquals("keycloak.introspect", introspect.name());
+        assertEquals("remote", introspect.attributes().get("keycloak.validation"));
+        assertEquals("active", introspect.attributes().get("keycloak.outcome"));
+        assertEquals(introspect.traceId(), request.traceId());
+        assertEquals(introspect.spanId(), request.parentSpanId());
+        assertNull(introspect.parentSpanId());
+
+        // The resource spans are not part of a trace known to Keycloak: without a gateway tracer, no context is sent
+        verify(postRequestedFor(urlEqualTo(KEYCLOAK_INTROSPECT_TOKEN_URI)).withoutHeader(TraceParent.HEADER));
+    }
+
+    @Test
+    public void shouldPropagateTraceContextOfTheGatewayToKeycloak() throws Exception {
+        when(configuration.getKeycloakConfiguration()).thenReturn(String.format(ADAPTER_CONFIG, wireMockRule.port()));
+        when(configuration.isValidateTokenLocally()).thenReturn(false);
+        when(configuration.isTracingEnabled()).thenReturn(true);
+        final io.gravitee.node.api.tracing.Tracer gatewayTracer = mock(io.gravitee.node.api.tracing.Tracer.class);
+        final io.gravitee.tracing.api.Span gatewaySpan = mock(io.gravitee.tracing.api.Span.class);
+        when(gatewayTracer.trace(anyString())).thenReturn(gatewaySpan);
+        when(applicationContext.getBean(io.gravitee.node.api.tracing.Tracer.class)).thenReturn(gatewayTracer);
+        // The gateway traces requests with a Vert.x tracer, which propagates their trace context to the HTTP client calls
+        final GatewayVertxTracer vertxTracer = new GatewayVertxTracer();
+        final Vertx tracedVertx = Vertx.vertx(new VertxOptions().setTracingOptions(new TracingOptions().setFactory(options -> vertxTracer)));
+        when(applicationContext.getBean(Vertx.class)).thenReturn(tracedVertx);
+
+        stubFor(post(urlEqualTo(KEYCLOAK_INTROSPECT_TOKEN_URI)).willReturn(aResponse().withStatus(200).withBody(EXPECTED_INTROSPECTION_ACTIVE_RESPONSE)));
+
+        resource.doStart();
+
+        final TraceParent gatewayRequest = new TraceParent(TraceParent.newTraceId(), TraceParent.newSpanId(), true);
+        final CountDownLatch lock = new CountDownLatch(1);
+        final Context context = tracedVertx.getOrCreateContext();
+        context.runOnContext(v -> {
+            context.putLocal(GatewayVertxTracer.ACTIVE_TRACE, gatewayRequest);
+            resource.introspect("xxxx-xxxx-xxxx-xxxx", new TestResponseHandler<>(lock));
+        });
+        assertTrue(lock.await(10000, TimeUnit.MILLISECONDS));
+
+        final TraceParent sent = TraceParent.parse(
+            wireMockRule.findAll(postRequestedFor(urlEqualTo(KEYCLOAK_INTROSPECT_TOKEN_URI))).get(0).getHeader(TraceParent.HEADER)
+        );
+        assertNotNull(sent);
+        assertEquals(gatewayRequest.traceId(), sent.traceId());
+        assertEquals(vertxTracer.clientSpanIds, List.of(sent.spanId()));
+        org.mockito.Mockito.verify(gatewayTracer).trace("keycloak.introspect");
+        org.mockito.Mockito.verify(gatewayTracer).trace("keycloak.http.introspection");
+
+        resource.doStop();
+        tracedVertx.close();
+    }
+
+    @Test
+    public void shouldTraceLocalValidation() throws Exception {
+        when(configuration.getKeycloakConfiguration()).thenReturn(String.format(ADAPTER_CONFIG, wireMockRule.port()));
+        when(configuration.isValidateTokenLocally()).thenReturn(true);
+        when(configuration.isTracingEnabled()).thenReturn(true);
+        final List<SpanData> spans = new CopyOnWriteArrayList<>();
+        doReturn((SpanExporter) spans::add).when(resource).spanExporter();
+
+        final KeyPair keyPair = generateRsaKeyPair();
+        stubOpenIdConfiguration();
+        stubJwks(jwk("key-1", keyPair));
+
+        resource.doStart();
+
+        final CountDownLatch lock = new CountDownLatch(1);
+        resource.introspect(signAccessToken("key-1", keyPair, accessToken()), new TestResponseHandler<>(lock));
+        assertTrue(lock.await(10000, TimeUnit.MILLISECONDS));
+
+        final SpanData verify = spans.stream().filter(span -> span.name().equals("keycloak.verify")).findFirst().orElseThrow();
+        final SpanData introspect = spans.stream().filter(span -> span.name().equals("keycloak.introspect")).findFirst().orElseThrow();
+        assertEquals("valid", verify.attributes().get("keycloak.outcome"));
+        assertEquals(introspect.spanId(), verify.parentSpanId());
+        assertEquals("local", introspect.attributes().get("keycloak.validation"));
+        assertEquals("active", introspect.attributes().get("keycloak.outcome"));
+        assertTrue(wireMockRule.findAll(postRequestedFor(urlEqualTo(KEYCLOAK_INTROSPECT_TOKEN_URI))).isEmpty());
+    }
+
+    private static JWK jwk(String kid, KeyPair keyPair) {
+        return JWKBuilder.create().kid(kid).algorithm(Algorithm.RS256).rsa(keyPair.getPublic());
+    }
+
+    private static String signAccessToken(String kid, KeyPair keyPair, AccessToken token) {
+        return new JWSBuilder().kid(kid).type("JWT").jsonContent(token).rsa256(keyPair.getPrivate());
+    }
+
+    private static String signEs256AccessToken(String kid, KeyPair keyPair, AccessToken token) throws Exception {
+        final Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        final String header = encoder.encodeToString(
+            ("{\"alg\":\"ES256\",\"typ\":\"JWT\",\"kid\":\"" + kid + "\"}").getBytes(StandardCharsets.UTF_8)
+        );
+        final String content = header + "." + encoder.encodeToString(JsonSerialization.writeValueAsBytes(token));
+        final Signature signature = Signature.getInstance("SHA256withECDSAinP1363Format");
+        signature.initSign(keyPair.getPrivate());
+        signature.update(content.getBytes(StandardCharsets.US_ASCII));
+        return content + "." + encoder.encodeToString(signature.sign());
+    }
+
+    /**
+     * A Vert.x tracer as installed by the gateway: the trace of the request being handled is kept in the Vert.x context,
+     * and propagated to the HTTP client calls made from it with a child span.
+     */
+    private static class GatewayVertxTracer implements VertxTracer<Object, String> {
+
+        private static final String ACTIVE_TRACE = "gateway.trace";
+
+        private final List<String> clientSpanIds = new CopyOnWriteArrayList<>();
+
+        @Override
+        public <R> String sendRequest(
+            Context context,
+            SpanKind kind,
+            TracingPolicy policy,
+            R request,
+            String operation,
+            BiConsumer<String, String> headers,
+            TagExtractor<R> tagExtractor
+        ) {
+            final TraceParent parent = context.getLocal(ACTIVE_TRACE);
+            if (parent == null || policy == TracingPolicy.IGNORE) {
+                return null;
+            }
+            final String spanId = TraceParent.newSpanId();
+            clientSpanIds.add(spanId);
+            headers.accept(TraceParent.HEADER, new TraceParent(parent.traceId(), spanId, parent.sampled()).header());
+            return spanId;
+        }
+    }
+
+    private void stubOpenIdConfiguration() {
+        final String realmUrl = "http://localhost:" + wireMockRule.port() + "/auth/realms/Gravitee";
+        stubFor(
+            get(urlEqualTo(KEYCLOAK_OPENID_CONFIGURATION_URI)).willReturn(
+                aResponse()
+                    .withStatus(200)
+                    .withBody(
+                        "{" +
+                        "\"issuer\": \"" +
+                        realmUrl +
+                        "\", " +
+                        "\"authorization_endpoint\": \"" +
+                        realmUrl +
+                        "/protocol/openid-connect/auth\", " +
+                        "\"token_endpoint\": \"" +
+                        realmUrl +
+                        "/protocol/openid-connect/token\", " +
+                        "\"end_session_endpoint\": \"" +
+                        realmUrl +
+                        "/protocol/openid-connect/logout\", " +
+                        "\"jwks_uri\": \"" +
+                        realmUrl +
+                        "/protocol/openid-connect/certs\"" +
+                        "}"
+                    )
+            )
+        );
+    }
+
+    private static void stubJwks(JWK... keys) throws IOException {
+        JSONWebKeySet jwks = new JSONWebKeySet();
+        jwks.setKeys(keys);
+        stubFor(get(urlEqualTo(KEYCLOAK_CERTS_URI)).willReturn(aResponse().withStatus(200).withBody(JsonSerialization.writeValueAsString(jwks))));
+    }
 }
@@ -0,0 +1,120 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.resource.oauth2.keycloak.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.gravitee.resource.oauth2.keycloak.jwt.JwtVerifier;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.util.concurrent.TimeUnit;
+import org.keycloak.adapters.KeycloakDeployment;
+import org.keycloak.adapters.rotation.AdapterTokenVerifier;
+import org.keycloak.adapters.rotation.HardcodedPublicKeyLocator;
+import org.keycloak.common.util.KeycloakUriBuilder;
+import org.keycloak.jose.jws.Algorithm;
+import org.keycloak.jose.jws.JWSBuilder;
+import org.keycloak.representations.AccessToken;
+import org.keycloak.representations.adapters.config.AdapterConfig;
+import org.keycloak.util.JsonSerialization;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Compares the local token validation path of the resource before and after the lean {@link JwtVerifier}:
+ * Keycloak adapter verification followed by a round-trip through an <code>ObjectNode</code>, against a single
+ * streaming pass over the token.
+ *
+ * Run with <code>mvn test-compile exec:exec -Pbenchmark -Djmh.args="LocalValidationBenchmark -prof gc"</code>.
+ *
+ * @author GraviteeSource Team
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LocalValidationBenchmark {
+
+    private static final String AUTH_SERVER_URL = "http://localhost:8080/auth";
+    private static final String REALM = "gravitee";
+    private static final String CLIENT_ID = "gravitee-gateway";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private String token;
+    private KeycloakDeployment deployment;
+    private JwtVerifier jwtVerifier;
+
+    @Setup
+    public void setup() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        KeyPair keyPair = generator.generateKeyPair();
+
+        AdapterConfig adapterConfig = new AdapterConfig();
+        adapterConfig.setAuthServerUrl(AUTH_SERVER_URL);
+        adapterConfig.setRealm(REALM);
+
+        deployment = new StaticDeployment();
+        deployment.setRealm(REALM);
+        deployment.setResourceName(CLIENT_ID);
+        deployment.setAuthServerBaseUrl(adapterConfig);
+        deployment.setPublicKeyLocator(new HardcodedPublicKeyLocator(keyPair.getPublic()));
+
+        jwtVerifier = new JwtVerifier(kid -> keyPair.getPublic(), deployment::getRealmInfoUrl, null);
+
+        AccessToken accessToken = new AccessToken();
+        accessToken.issuer(deployment.getRealmInfoUrl());
+        accessToken.type("Bearer");
+        accessToken.subject("248289761001");
+        accessToken.issuedFor(CLIENT_ID);
+        accessToken.audience(CLIENT_ID);
+        accessToken.setPreferredUsername("jane");
+        accessToken.addAccess(CLIENT_ID).addRole("user");
+        accessToken.iat(System.currentTimeMillis() / 1000);
+        accessToken.exp(System.currentTimeMillis() / 1000 + 3600);
+        token = new JWSBuilder().kid("key-1").type("JWT").jsonContent(accessToken).sign(Algorithm.RS256, keyPair.getPrivate());
+    }
+
+    @Benchmark
+    public String adapterTokenVerifier() throws Exception {
+        AccessToken accessToken = AdapterTokenVerifier.verifyToken(token, deployment);
+        ObjectNode tokenMetadata = JsonSerialization.createObjectNode(accessToken);
+        tokenMetadata.put("client_id", accessToken.getIssuedFor());
+        tokenMetadata.put("username", accessToken.getPreferredUsername());
+        return MAPPER.writeValueAsString(tokenMetadata);
+    }
+
+    @Benchmark
+    public String jwtVerifier() throws Exception {
+        return jwtVerifier.verify(token).payload();
+    }
+
+    /**
+     * Resolves the realm URLs from the configured auth server URL instead of an OIDC discovery call.
+     */
+    private static class StaticDeployment extends KeycloakDeployment {
+
+        @Override
+        protected void resolveUrls() {
+            resolveUrls(KeycloakUriBuilder.fromUri(authServerBaseUrl));
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.resource.oauth2.keycloak.benchmark;
+
+import io.gravitee.resource.oauth2.api.OAuth2Response;
+import io.gravitee.resource.oauth2.api.openid.UserInfoResponse;
+import io.gravitee.resource.oauth2.keycloak.OAuth2KeycloakResource;
+import io.gravitee.resource.oauth2.keycloak.configuration.OAuth2KeycloakResourceConfiguration;
+import io.gravitee.resource.oauth2.keycloak.stub.KeycloakStub;
+import io.gravitee.resource.oauth2.keycloak.stub.ResourceFactory;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * End-to-end benchmark of the resource: {@link OAuth2KeycloakResource#introspect} with local validation of RS256 and
+ * ES256 tokens, with remote introspection, and {@link OAuth2KeycloakResource#userInfo}, against an in-process
+ * {@link KeycloakStub}. Caches are disabled so that every operation goes through the full path.
+ *
+ * Throughput and latency percentiles (sample time) are reported for each operation; add <code>-prof gc</code> for
+ * the allocation rate:
+ * <code>mvn test-compile exec:exec -Pbenchmark -Djmh.args="ResourceBenchmark -prof gc"</code>.
+ *
+ * @author GraviteeSource Team
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ResourceBenchmark {
+
+    private Vertx vertx;
+    private Context context;
+    private KeycloakStub keycloak;
+    private OAuth2KeycloakResource localResource;
+    private OAuth2KeycloakResource remoteResource;
+
+    private String rs256Token;
+    private String es256Token;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        vertx = Vertx.vertx();
+        // The gateway calls the resource from its event loops
+        context = vertx.getOrCreateContext();
+        keycloak = new KeycloakStub(vertx);
+        keycloak.start().toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+
+        OAuth2KeycloakResourceConfiguration localConfiguration = new OAuth2KeycloakResourceConfiguration();
+        localConfiguration.setKeycloakConfiguration(keycloak.adapterConfiguration());
+        localConfiguration.setValidateTokenLocally(true);
+        localResource = ResourceFactory.start(vertx, localConfiguration);
+
+        OAuth2KeycloakResourceConfiguration remoteConfiguration = new OAuth2KeycloakResourceConfiguration();
+        remoteConfiguration.setKeycloakConfiguration(keycloak.adapterConfiguration());
+        remoteResource = ResourceFactory.start(vertx, remoteConfiguration);
+
+        rs256Token = keycloak.rs256Token();
+        es256Token = keycloak.es256Token();
+
+        // Wait for the realm keys and URLs to be loaded
+        if (!introspect(localResource, rs256Token).isSuccess() || !introspect(localResource, es256Token).isSuccess()) {
+            throw new IllegalStateException("Tokens are not valid");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        localResource.stop();
+        remoteResource.stop();
+        keycloak.stop().toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+        vertx.close().toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+    }
+
+    @Benchmark
+    public OAuth2Response introspectLocallyRs256() throws Exception {
+        return introspect(localResource, rs256Token);
+    }
+
+    @Benchmark
+    public OAuth2Response introspectLocallyEs256() throws Exception {
+        return introspect(localResource, es256Token);
+    }
+
+    @Benchmark
+    public OAuth2Response introspectRemotely() throws Exception {
+        return introspect(remoteResource, rs256Token);
+    }
+
+    @Benchmark
+    public UserInfoResponse userInfo() throws Exception {
+        CompletableFuture<UserInfoResponse> response = new CompletableFuture<>();
+        context.runOnContext(v -> remoteResource.userInfo(rs256Token, response::complete));
+        return response.get(10, TimeUnit.SECONDS);
+    }
+
+    private OAuth2Response introspect(OAuth2KeycloakResource resource, String token) throws Exception {
+        CompletableFuture<OAuth2Response> response = new CompletableFuture<>();
+        context.runOnContext(v -> resource.introspect(token, response::complete));
+        return response.get(10, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.resource.oauth2.keycloak.cache;
+
+import static org.junit.Assert.*;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author GraviteeSource Team
+ */
+public class ClusteredTokenCacheTest {
+
+    private Vertx vertx;
+    private InMemoryClusterCache clusterCache;
+
+    @Before
+    public void init() {
+        vertx = Vertx.vertx();
+        clusterCache = new InMemoryClusterCache("tokens");
+    }
+
+    @After
+    public void close() {
+        vertx.close();
+    }
+
+    @Test
+    public void shouldWriteBehindToClusterCache() throws Exception {
+        ClusteredTokenCache<String> cache = clusteredCache(new TokenCache<>(10), 10);
+
+        cache.put("key", "value", System.currentTimeMillis() + 60_000);
+
+        awaitUntil(() -> clusterCache.containsKey("key"));
+        assertEquals(0, cache.pendingWrites());
+    }
+
+    @Test
+    public void shouldReadValueWrittenByAnotherNode() throws Exception {
+        ClusteredTokenCache<String> node1 = clusteredCache(new TokenCache<>(10), 10);
+        TokenCache<String> nearCache = new TokenCache<>(10);
+        ClusteredTokenCache<String> node2 = clusteredCache(nearCache, 10);
+
+        node1.put("key", "value", System.currentTimeMillis() + 60_000);
+        awaitUntil(() -> clusterCache.containsKey("key"));
+
+        assertEquals("value", node2.get("key").toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS));
+        assertEquals("value", nearCache.get("key"));
+    }
+
+    @Test
+    public void shouldNotReadExpiredValue() throws Exception {
+        ClusteredTokenCache<String> cache = clusteredCache(new TokenCache<>(10), 10);
+        clusterCache.put(
+            "key",
+            new JsonObject().put("expireAt", System.currentTimeMillis() - 1).put("value", new JsonObject().put("value", "value")).encode()
+        );
+
+        assertNull(cache.get("key").toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void shouldMissWhenClusterIsUnreachable() throws Exception {
+        ClusteredTokenCache<String> cache = clusteredCache(new TokenCache<>(10), 10);
+        clusterCache.failing(true);
+
+        assertNull(cache.get("key").toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void shouldEvictInvalidatedValue() throws Exception {
+        TokenCache<String> nearCache = new TokenCache<>(10);
+        ClusteredTokenCache<String> cache = clusteredCache(nearCache, 10);
+        cache.put("key", "value", System.currentTimeMillis() + 60_000);
+        awaitUntil(() -> clusterCache.containsKey("key"));
+
+        cache.invalidate("key");
+
+        assertNull(nearCache.get("key"));
+        awaitUntil(() -> !clusterCache.containsKey("key"));
+    }
+
+    @Test
+    public void shouldDropWritesWhenTooManyArePending() {
+        clusterCache.failing(true);
+        TokenCache<String> nearCache = new TokenCache<>(1000);
+        ClusteredTokenCache<String> cache = clusteredCache(nearCache, 10);
+
+        for (int i = 0; i < 1000; i++) {
+            cache.put("key-" + i, "value", System.currentTimeMillis() + 60_000);
+        }
+
+        assertTrue(cache.pendingWrites() <= 10);
+        assertEquals("value", nearCache.get("key-999"));
+    }
+
+    private ClusteredTokenCache<String> clusteredCache(TokenCache<String> nearCache, int maxPendingWrites) {
+        return new ClusteredTokenCache<>(
+            vertx,
+            clusterCache,
+            nearCache,
+            value -> new JsonObject().put("value", value),
+            json -> json.getString("value"),
+            maxPendingWrites
+        );
+    }
+
+    private static void awaitUntil(BooleanSupplier condition) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+}
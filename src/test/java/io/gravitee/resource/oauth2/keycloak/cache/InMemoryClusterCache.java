@@ -0,0 +1,139 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.resource.oauth2.keycloak.cache;
+
+import io.gravitee.node.api.cache.Cache;
+import io.gravitee.node.api.cache.CacheListener;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * The cache of a single gateway node cluster, shared by the resources under test as the cluster cache of several
+ * nodes would be.
+ *
+ * @author GraviteeSource Team
+ */
+public class InMemoryClusterCache implements Cache<String, String> {
+
+    private final String name;
+    private final Map<String, String> entries = new ConcurrentHashMap<>();
+    private volatile boolean failing;
+
+    public InMemoryClusterCache(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Makes every operation fail, as when the cluster can not be reached.
+     */
+    public void failing(boolean failing) {
+        this.failing = failing;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public int size() {
+        return entries.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    @Override
+    public Collection<String> values() {
+        return entries.values();
+    }
+
+    @Override
+    public boolean containsKey(String key) {
+        return entries.containsKey(key);
+    }
+
+    @Override
+    public String get(String key) {
+        checkAvailable();
+        return entries.get(key);
+    }
+
+    @Override
+    public String put(String key, String value) {
+        checkAvailable();
+        return entries.put(key, value);
+    }
+
+    @Override
+    public String put(String key, String value, long ttl, TimeUnit ttlUnit) {
+        return put(key, value);
+    }
+
+    @Override
+    public void putAll(Map<? extends String, ? extends String> values) {
+        checkAvailable();
+        entries.putAll(values);
+    }
+
+    @Override
+    public String computeIfAbsent(String key, Function<? super String, ? extends String> mappingFunction) {
+        return entries.computeIfAbsent(key, mappingFunction);
+    }
+
+    @Override
+    public String computeIfPresent(String key, BiFunction<? super String, ? super String, ? extends String> remappingFunction) {
+        return entries.computeIfPresent(key, remappingFunction);
+    }
+
+    @Override
+    public String compute(String key, BiFunction<? super String, ? super String, ? extends String> remappingFunction) {
+        return entries.compute(key, remappingFunction);
+    }
+
+    @Override
+    public String evict(String key) {
+        checkAvailable();
+        return entries.remove(key);
+    }
+
+    @Override
+    public void clear() {
+        entries.clear();
+    }
+
+    @Override
+    public String addCacheListener(CacheListener<String, String> listener) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean removeCacheListener(String listenerId) {
+        throw new UnsupportedOperationException();
+    }
+
+    private void checkAvailable() {
+        if (failing) {
+            throw new IllegalStateException("Cluster unreachable");
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.resource.oauth2.keycloak.cache;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Test;
+
+/**
+ * @author GraviteeSource Team
+ */
+public class RejectedTokenFilterTest {
+
+    private final AtomicLong now = new AtomicLong(1_000);
+
+    @Test
+    public void shouldContainAddedTokens() {
+        RejectedTokenFilter filter = new RejectedTokenFilter(1_000, 0.001, 60_000, now::get);
+
+        for (int i = 0; i < 1_000; i++) {
+            filter.add(TokenHash.of("token-" + i));
+        }
+
+        for (int i = 0; i < 1_000; i++) {
+            assertTrue(filter.mightContain(TokenHash.of("token-" + i)));
+        }
+        assertEquals(1_000, filter.hits());
+    }
+
+    @Test
+    public void shouldKeepFalsePositiveRateUnderConfiguredRate() {
+        RejectedTokenFilter filter = new RejectedTokenFilter(10_000, 0.01, 60_000, now::get);
+        for (int i = 0; i < 9_999; i++) {
+            filter.add(TokenHash.of("rejected-" + i));
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (filter.mightContain(TokenHash.of("valid-" + i))) {
+                falsePositives++;
+            }
+        }
+
+        assertTrue("False positives: " + falsePositives, falsePositives < 200);
+        assertEquals(0.01, filter.falsePositiveRate(), 0.002);
+    }
+
+    @Test
+    public void shouldForgetTokensAfterTwoWindows() {
+        RejectedTokenFilter filter = new RejectedTokenFilter(1_000, 0.001, 60_000, now::get);
+        filter.add(TokenHash.of("token"));
+
+        now.addAndGet(60_000);
+        assertTrue(filter.mightContain(TokenHash.of("token")));
+
+        now.addAndGet(60_000);
+        assertFalse(filter.mightContain(TokenHash.of("token")));
+    }
+
+    @Test
+    public void shouldRotateWhenFull() {
+        RejectedTokenFilter filter = new RejectedTokenFilter(10, 0.001, 60_000, now::get);
+        for (int i = 0; i < 10; i++) {
+            filter.add(TokenHash.of("first-" + i));
+        }
+        assertTrue(filter.mightContain(TokenHash.of("first-0")));
+
+        for (int i = 0; i < 10; i++) {
+            filter.add(TokenHash.of("second-" + i));
+        }
+
+        assertFalse(filter.mightContain(TokenHash.of("first-0")));
+        assertTrue(filter.mightContain(TokenHash.of("second-0")));
+    }
+
+    @Test
+    public void shouldSizeFiltersFromCapacityAndFalsePositiveRate() {
+        RejectedTokenFilter filter = new RejectedTokenFilter(100_000, 0.000001, 60_000, now::get);
+
+        // About 28.8 bits per token for each of the two filters
+        assertEquals(2 * 359_440, filter.memory(), 2 * 64);
+        assertEquals(0, filter.falsePositiveRate(), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectInvalidFalsePositiveRate() {
+        new RejectedTokenFilter(1_000, 1, 60_000, now::get);
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.resource.oauth2.keycloak.cache;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * @author GraviteeSource Team
+ */
+public class TokenCacheTest {
+
+    @Test
+    public void shouldReturnCachedValue() {
+        TokenCache<String> cache = new TokenCache<>(10);
+        cache.put("key", "value", System.currentTimeMillis() + 60_000);
+
+        assertEquals("value", cache.get("key"));
+    }
+
+    @Test
+    public void shouldNotReturnExpiredValue() throws InterruptedException {
+        TokenCache<String> cache = new TokenCache<>(10);
+        cache.put("key", "value", System.currentTimeMillis() + 10);
+
+        Thread.sleep(20);
+
+        assertNull(cache.get("key"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void shouldBoundCacheSize() {
+        TokenCache<String> cache = new TokenCache<>(10);
+        for (int i = 0; i < 100; i++) {
+            cache.put("key-" + i, "value", System.currentTimeMillis() + 60_000);
+        }
+
+        assertTrue(cache.size() <= 10);
+    }
+
+    @Test
+    public void shouldNotHashToRawToken() {
+        String hash = TokenHash.of("xxxx-xxxx-xxxx-xxxx");
+
+        assertNotEquals("xxxx-xxxx-xxxx-xxxx", hash);
+        assertEquals(hash, TokenHash.of("xxxx-xxxx-xxxx-xxxx"));
+    }
+}
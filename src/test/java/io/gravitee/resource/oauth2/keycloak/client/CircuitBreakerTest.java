@@ -0,0 +1,111 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.resource.oauth2.keycloak.client;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author GraviteeSource Team
+ */
+public class CircuitBreakerTest {
+
+    private final AtomicLong now = new AtomicLong(1_000);
+    private CircuitBreaker circuitBreaker;
+
+    @Before
+    public void init() {
+        circuitBreaker = new CircuitBreaker(3, 500, now::get);
+    }
+
+    @Test
+    public void shouldOpenAfterConsecutiveFailures() {
+        circuitBreaker.onFailure();
+        circuitBreaker.onFailure();
+        assertTrue(circuitBreaker.tryAcquire());
+
+        circuitBreaker.onFailure();
+
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.state());
+        assertFalse(circuitBreaker.tryAcquire());
+    }
+
+    @Test
+    public void shouldResetFailuresOnSuccess() {
+        circuitBreaker.onFailure();
+        circuitBreaker.onFailure();
+        circuitBreaker.onSuccess();
+        circuitBreaker.onFailure();
+        circuitBreaker.onFailure();
+
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.state());
+    }
+
+    @Test
+    public void shouldLetASingleTrialCallThroughAfterResetTimeout() {
+        open();
+
+        now.addAndGet(500);
+
+        assertTrue(circuitBreaker.tryAcquire());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.state());
+        assertFalse(circuitBreaker.tryAcquire());
+    }
+
+    @Test
+    public void shouldCloseWhenTrialCallSucceeds() {
+        open();
+        now.addAndGet(500);
+        circuitBreaker.tryAcquire();
+
+        circuitBreaker.onSuccess();
+
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.state());
+        assertTrue(circuitBreaker.tryAcquire());
+    }
+
+    @Test
+    public void shouldOpenAgainWhenTrialCallFails() {
+        open();
+        now.addAndGet(500);
+        circuitBreaker.tryAcquire();
+
+        circuitBreaker.onFailure();
+
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.state());
+        assertFalse(circuitBreaker.tryAcquire());
+        now.addAndGet(500);
+        assertTrue(circuitBreaker.tryAcquire());
+    }
+
+    @Test
+    public void shouldNeverOpenWhenDisabled() {
+        for (int i = 0; i < 100; i++) {
+            CircuitBreaker.disabled().onFailure();
+        }
+
+        assertTrue(CircuitBreaker.disabled().tryAcquire());
+    }
+
+    private void open() {
+        for (int i = 0; i < 3; i++) {
+            circuitBreaker.onFailure();
+        }
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.resource.oauth2.keycloak.client;
+
+import static org.junit.Assert.*;
+
+import io.vertx.core.Vertx;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author GraviteeSource Team
+ */
+public class ConcurrencyLimiterTest {
+
+    private Vertx vertx;
+    private ConcurrencyLimiter limiter;
+    private List<ConcurrencyLimiter.Permit> permits;
+    private AtomicInteger rejected;
+
+    @Before
+    public void init() {
+        vertx = Vertx.vertx();
+        limiter = new ConcurrencyLimiter(vertx, 2, 4, 1, 0, 1_000);
+        permits = new ArrayList<>();
+        rejected = new AtomicInteger();
+    }
+
+    @After
+    public void close() {
+        vertx.close();
+    }
+
+    @Test
+    public void shouldQueueThenRejectCallsAboveTheLimit() {
+        for (int i = 0; i < 4; i++) {
+            acquire();
+        }
+
+        assertEquals(2, permits.size());
+        assertEquals(1, limiter.queueSize());
+        assertEquals(1, rejected.get());
+        assertEquals(1, limiter.rejections());
+    }
+
+    @Test
+    public void shouldStartQueuedCallOnRelease() {
+        for (int i = 0; i < 3; i++) {
+            acquire();
+        }
+
+        permits.get(0).release(false);
+
+        assertEquals(3, permits.size());
+        assertEquals(0, limiter.queueSize());
+        assertEquals(2, limiter.inFlight());
+    }
+
+    @Test
+    public void shouldRejectQueuedCallAfterQueueTimeout() throws InterruptedException {
+        limiter = new ConcurrencyLimiter(vertx, 2, 4, 1, 50, 1_000);
+        for (int i = 0; i < 3; i++) {
+            acquire();
+        }
+
+        for (int i = 0; i < 100 && rejected.get() == 0; i++) {
+            Thread.sleep(10);
+        }
+
+        assertEquals(1, rejected.get());
+        assertEquals(1, limiter.rejections());
+        assertEquals(0, limiter.queueSize());
+
+        // The expired call must not be started by a later release
+        permits.get(0).release(false);
+        assertEquals(2, permits.size());
+    }
+
+    @Test
+    public void shouldNotRejectQueuedCallStartedBeforeQueueTimeout() throws InterruptedException {
+        limiter = new ConcurrencyLimiter(vertx, 2, 4, 1, 50, 1_000);
+        for (int i = 0; i < 3; i++) {
+            acquire();
+        }
+
+        permits.get(0).release(false);
+        Thread.sleep(100);
+
+        assertEquals(3, permits.size());
+        assertEquals(0, rejected.get());
+    }
+
+    @Test
+    public void shouldRejectQueuedAndNewCallsOnClose() {
+        for (int i = 0; i < 3; i++) {
+            acquire();
+        }
+
+        limiter.close();
+        acquire();
+
+        assertEquals(2, permits.size());
+        assertEquals(2, rejected.get());
+        assertEquals(0, limiter.queueSize());
+    }
+
+    @Test
+    public void shouldOnlyTryAcquireBelowTheLimit() {
+        assertNotNull(limiter.tryAcquire());
+        assertNotNull(limiter.tryAcquire());
+
+        assertNull(limiter.tryAcquire());
+        assertEquals(0, limiter.queueSize());
+        assertEquals(0, limiter.rejections());
+    }
+
+    @Test
+    public void shouldIncreaseLimitWhileItIsUsed() {
+        acquire();
+        acquire();
+
+        permits.get(0).release(false);
+
+        assertEquals(3, limiter.limit());
+    }
+
+    @Test
+    public void shouldNotIncreaseLimitBeyondMax() {
+        for (int i = 0; i < 10; i++) {
+            permits.clear();
+            for (int j = 0; j < 4; j++) {
+                acquire();
+            }
+            new ArrayList<>(permits).forEach(permit -> permit.release(false));
+        }
+
+        assertEquals(4, limiter.limit());
+    }
+
+    @Test
+    public void shouldDecreaseLimitWhenCallsAreDropped() {
+        limiter = new ConcurrencyLimiter(vertx, 10, 10, 0, 0, 1_000);
+        acquire();
+
+        permits.get(0).release(true);
+
+        assertEquals(9, limiter.limit());
+    }
+
+    @Test
+    public void shouldDecreaseLimitWhenCallsAreSlow() throws InterruptedException {
+        limiter = new ConcurrencyLimiter(vertx, 10, 10, 0, 0, 1);
+        acquire();
+
+        Thread.sleep(5);
+        permits.get(0).release(false);
+
+        assertEquals(9, limiter.limit());
+    }
+
+    @Test
+    public void shouldReleasePermitOnce() {
+        acquire();
+
+        permits.get(0).cancel();
+        permits.get(0).release(true);
+
+        assertEquals(0, limiter.inFlight());
+        assertEquals(2, limiter.limit());
+    }
+
+    @Test
+    public void shouldNeverLimitWhenDisabled() {
+        limiter = ConcurrencyLimiter.disabled();
+        for (int i = 0; i < 1_000; i++) {
+            acquire();
+        }
+
+        assertEquals(1_000, permits.size());
+        assertEquals(0, rejected.get());
+    }
+
+    private void acquire() {
+        limiter.acquire(permits::add, rejected::incrementAndGet);
+    }
+}
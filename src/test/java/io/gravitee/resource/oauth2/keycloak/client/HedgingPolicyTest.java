@@ -0,0 +1,81 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.resource.oauth2.keycloak.client;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+/**
+ * @author GraviteeSource Team
+ */
+public class HedgingPolicyTest {
+
+    @Test
+    public void shouldUseStaticDelay() {
+        HedgingPolicy policy = new HedgingPolicy(50, 0.1);
+
+        assertEquals(50, policy.onCall());
+    }
+
+    @Test
+    public void shouldNotHedgeUntilLatenciesAreKnown() {
+        HedgingPolicy policy = new HedgingPolicy(0, 0.1);
+        for (int i = 0; i < 31; i++) {
+            policy.record(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+
+        assertEquals(-1, policy.onCall());
+    }
+
+    @Test
+    public void shouldUse95thPercentileOfLatencies() {
+        HedgingPolicy policy = new HedgingPolicy(0, 0.1);
+        for (int i = 1; i <= 128; i++) {
+            policy.record(TimeUnit.MILLISECONDS.toNanos(i));
+        }
+
+        assertEquals(122, policy.onCall());
+    }
+
+    @Test
+    public void shouldCapHedgesWithBudget() {
+        HedgingPolicy policy = new HedgingPolicy(50, 0.1);
+
+        int hedges = 0;
+        for (int i = 0; i < 1_000; i++) {
+            policy.onCall();
+            hedges += policy.tryHedge() ? 1 : 0;
+        }
+
+        assertTrue(hedges <= 100);
+        assertTrue(hedges >= 99);
+    }
+
+    @Test
+    public void shouldNotHedgeWithoutBudget() {
+        HedgingPolicy policy = new HedgingPolicy(50, 0.1);
+        policy.onCall();
+
+        assertFalse(policy.tryHedge());
+    }
+
+    @Test
+    public void shouldNeverHedgeWhenDisabled() {
+        assertEquals(-1, HedgingPolicy.disabled().onCall());
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.resource.oauth2.keycloak.client;
+
+import static org.junit.Assert.*;
+
+import io.gravitee.resource.oauth2.keycloak.revocation.TokenIdentity;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.vertx.core.buffer.Buffer;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+
+/**
+ * @author GraviteeSource Team
+ */
+public class IntrospectionResultTest {
+
+    private static final String ACTIVE_RESPONSE =
+        "{\"exp\":1700000000,\"realm_access\":{\"roles\":[\"admin\",\"user\"]},\"groups\":[{\"name\":\"a\"}],\"active\":true}";
+
+    @Test
+    public void shouldReadActiveTokenAndExpiration() throws IOException {
+        IntrospectionResult result = IntrospectionResult.parse(Buffer.buffer(ACTIVE_RESPONSE), true);
+
+        assertTrue(result.active());
+        assertEquals(1700000000L, result.expiration());
+    }
+
+    @Test
+    public void shouldReadActiveTokenFromDirectBuffer() throws IOException {
+        ByteBuf direct = Unpooled.directBuffer().writeBytes(ACTIVE_RESPONSE.getBytes(StandardCharsets.UTF_8));
+
+        IntrospectionResult result = IntrospectionResult.parse(Buffer.buffer(direct), true);
+
+        assertTrue(result.active());
+        assertEquals(1700000000L, result.expiration());
+    }
+
+    @Test
+    public void shouldReadInactiveToken() throws IOException {
+        IntrospectionResult result = IntrospectionResult.parse(Buffer.buffer("{\"active\":false}"), true);
+
+        assertFalse(result.active());
+    }
+
+    @Test
+    public void shouldStopOnceActiveIsKnown() throws IOException {
+        // Anything after the active field is not read (the payload is truncated on purpose)
+        IntrospectionResult result = IntrospectionResult.parse(Buffer.buffer("{\"active\":true,\"exp\":1700000000,\"scope\":"), false);
+
+        assertTrue(result.active());
+        assertEquals(0, result.expiration());
+    }
+
+    @Test
+    public void shouldReadIdentityOfActiveToken() throws IOException {
+        IntrospectionResult result = IntrospectionResult.parse(
+            Buffer.buffer("{\"active\":true,\"sub\":\"jane\",\"session_state\":\"session-1\",\"client_id\":\"app\",\"iat\":1700000000}"),
+            true,
+            true
+        );
+
+        assertEquals(new TokenIdentity("session-1", 1700000000L), result.identity());
+    }
+
+        @Test
+    public void shouldNotBeActiveWithoutActiveField() throws IOException {
+        assertFalse(IntrospectionResult.parse(Buffer.buffer("{\"exp\":1700000000}"), true).active());
+    }
+
+    @Test(expected = IOException.class)
+    public void shouldRejectInvalidPayload() throws IOException {
+        IntrospectionResult.parse(Buffer.buffer("not json"), true);
+    }
+}
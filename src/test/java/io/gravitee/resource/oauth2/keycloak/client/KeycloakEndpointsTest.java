@@ -0,0 +1,123 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.resource.oauth2.keycloak.client;
+
+import static org.junit.Assert.*;
+
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author GraviteeSource Team
+ */
+public class KeycloakEndpointsTest {
+
+    private final AtomicLong now = new AtomicLong(1_000);
+    private KeycloakEndpoints endpoints;
+
+    @Before
+    public void init() {
+        endpoints =
+            new KeycloakEndpoints(
+                List.of(URI.create("http://keycloak-1:8080"), URI.create("https://keycloak-2"), URI.create("http://keycloak-3:8080")),
+                2,
+                500,
+                now::get
+            );
+    }
+
+    @Test
+    public void shouldReadEndpoints() {
+        KeycloakEndpoints.Endpoint endpoint = endpoints.all().get(1);
+
+        assertEquals(1, endpoint.index());
+        assertEquals("keycloak-2", endpoint.host());
+        assertEquals(443, endpoint.port());
+        assertTrue(endpoint.ssl());
+        assertEquals(8080, endpoints.all().get(0).port());
+        assertFalse(endpoints.all().get(0).ssl());
+    }
+
+    @Test
+    public void shouldPreferLeastLoadedOfTwoChoices() {
+        endpoints.all().get(0).requestStarted();
+        endpoints.all().get(0).requestStarted();
+        endpoints.all().get(1).requestStarted();
+
+        for (int i = 0; i < 100; i++) {
+            // keycloak-1 is the most loaded node: it can never win a draw
+            assertNotSame(endpoints.all().get(0), endpoints.select());
+        }
+    }
+
+    @Test
+    public void shouldEjectFailingEndpoint() {
+        KeycloakEndpoints.Endpoint failing = endpoints.all().get(2);
+        failing.record(false);
+        assertFalse(failing.isEjected());
+
+        failing.record(false);
+
+        assertTrue(failing.isEjected());
+        for (int i = 0; i < 100; i++) {
+            assertNotSame(failing, endpoints.select());
+        }
+    }
+
+    @Test
+    public void shouldBringBackEndpointAfterEjectionTime() {
+        KeycloakEndpoints.Endpoint failing = endpoints.all().get(2);
+        failing.record(false);
+        failing.record(false);
+
+        now.addAndGet(500);
+
+        assertFalse(failing.isEjected());
+    }
+
+    @Test
+    public void shouldBringBackEndpointOnSuccess() {
+        KeycloakEndpoints.Endpoint failing = endpoints.all().get(2);
+        failing.record(false);
+        failing.record(false);
+
+        failing.record(true);
+
+        assertFalse(failing.isEjected());
+    }
+
+    @Test
+    public void shouldFallBackToEndpointWhoseEjectionEndsFirst() {
+        for (KeycloakEndpoints.Endpoint endpoint : endpoints.all()) {
+            endpoint.record(false);
+            endpoint.record(false);
+            now.addAndGet(10);
+        }
+
+        assertSame(endpoints.all().get(0), endpoints.select());
+    }
+
+    @Test
+    public void shouldAlwaysSelectSingleEndpoint() {
+        endpoints = new KeycloakEndpoints(List.of(URI.create("http://keycloak:8080")), 1, 500, now::get);
+        endpoints.all().get(0).record(false);
+
+        assertSame(endpoints.all().get(0), endpoints.select());
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.resource.oauth2.keycloak.jwt;
+
+import static org.junit.Assert.*;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.vertx.core.buffer.Buffer;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import org.junit.Test;
+
+/**
+ * @author GraviteeSource Team
+ */
+public class ClaimProjectionTest {
+
+    private static final String PAYLOAD =
+        "{\"active\":true,\"exp\":1700000300,\"sub\":\"248289761001\",\"client_id\":\"gravitee-gateway\",\"scope\":\"openid profile\"," +
+        "\"email\":\"jane@gravitee.io\",\"groups\":[\"admins\",\"users\"]," +
+        "\"realm_access\":{\"roles\":[\"offline_access\",\"uma_authorization\"]}," +
+        "\"resource_access\":{\"gravitee-gateway\":{\"roles\":[\"api-publisher\"]},\"account\":{\"roles\":[\"manage-account\"]}}}";
+
+    @Test
+    public void shouldKeepPayloadWhenDisabled() throws IOException {
+        ClaimProjection projection = ClaimProjection.of(List.of());
+
+        assertFalse(projection.isEnabled());
+        assertEquals(PAYLOAD, projection.project(PAYLOAD.getBytes(StandardCharsets.UTF_8)));
+        assertEquals(PAYLOAD, projection.project(Buffer.buffer(PAYLOAD)));
+    }
+
+    @Test
+    public void shouldKeepListedAndRequiredClaims() throws IOException {
+        ClaimProjection projection = ClaimProjection.of(List.of("email"));
+
+        assertEquals(
+            "{\"active\":true,\"exp\":1700000300,\"sub\":\"248289761001\",\"client_id\":\"gravitee-gateway\",\"scope\":\"openid profile\",\"email\":\"jane@gravitee.io\"}",
+            projection.project(Buffer.buffer(PAYLOAD))
+        );
+    }
+
+    @Test
+    public void shouldProjectDirectBuffer() throws IOException {
+        ClaimProjection projection = ClaimProjection.of(List.of("email"));
+        ByteBuf direct = Unpooled.directBuffer().writeBytes(PAYLOAD.getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(
+            "{\"active\":true,\"exp\":1700000300,\"sub\":\"248289761001\",\"client_id\":\"gravitee-gateway\",\"scope\":\"openid profile\",\"email\":\"jane@gravitee.io\"}",
+            projection.project(Buffer.buffer(direct))
+        );
+    }
+
+    @Test
+    public void shouldKeepNestedClaims() throws IOException {
+        ClaimProjection projection = ClaimProjection.of(List.of("resource_access.gravitee-gateway.roles", "groups"));
+
+        assertEquals(
+            "{\"active\":true,\"exp\":1700000300,\"sub\":\"248289761001\",\"client_id\":\"gravitee-gateway\",\"scope\":\"openid profile\"," +
+            "\"groups\":[\"admins\",\"users\"],\"resource_access\":{\"gravitee-gateway\":{\"roles\":[\"api-publisher\"]}}}",
+            projection.project(PAYLOAD.getBytes(StandardCharsets.UTF_8))
+        );
+    }
+
+    @Test
+    public void shouldKeepWholeClaimListedWithItsChildren() throws IOException {
+        ClaimProjection projection = ClaimProjection.of(List.of("realm_access.roles", "realm_access"));
+
+        assertTrue(projection.project(Buffer.buffer(PAYLOAD)).contains("\"realm_access\":{\"roles\":[\"offline_access\",\"uma_authorization\"]}"));
+    }
+
+    @Test(expected = IOException.class)
+    public void shouldRejectPayloadWhichIsNotAnObject() throws IOException {
+        ClaimProjection.of(List.of("email")).project(Buffer.buffer("[]"));
+    }
+}
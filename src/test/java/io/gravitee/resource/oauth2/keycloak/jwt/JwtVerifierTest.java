@@ -0,0 +1,206 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.resource.oauth2.keycloak.jwt;
+
+import static org.junit.Assert.*;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Base64;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import org.keycloak.common.VerificationException;
+import org.keycloak.common.crypto.CryptoIntegration;
+import org.keycloak.jose.jwk.JWKBuilder;
+import org.keycloak.jose.jwk.JWKParser;
+import org.keycloak.jose.jws.Algorithm;
+import org.keycloak.jose.jws.JWSBuilder;
+import org.keycloak.representations.AccessToken;
+import org.keycloak.representations.JsonWebToken;
+import org.keycloak.util.JsonSerialization;
+
+/**
+ * @author GraviteeSource Team
+ */
+public class JwtVerifierTest {
+
+    private static final String REALM_URL = "http://localhost:8080/realms/gravitee";
+
+    private KeyPair rsaKeyPair;
+    private PublicKey publicKey;
+    private JwtVerifier verifier;
+
+    @Before
+    public void init() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        rsaKeyPair = generator.generateKeyPair();
+        publicKey = rsaKeyPair.getPublic();
+
+        verifier = new JwtVerifier(kid -> publicKey, () -> REALM_URL, null);
+    }
+
+    @Test
+    public void shouldVerifyRs256Token() throws Exception {
+        JwtVerifier.VerifiedToken verified = verifier.verify(sign(accessToken(), Algorithm.RS256, rsaKeyPair));
+
+        assertEquals("248289761001", verified.claims().getSubject());
+        JsonNode payload = new ObjectMapper().readTree(verified.payload());
+        assertEquals("248289761001", payload.get("sub").asText());
+        assertEquals("gravitee-gateway", payload.get("client_id").asText());
+        assertEquals("jane", payload.get("username").asText());
+        assertEquals("value", payload.get("custom").asText());
+    }
+
+    @Test
+    public void shouldVerifyEs256Token() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(new ECGenParameterSpec("secp256r1"));
+        KeyPair ecKeyPair = generator.generateKeyPair();
+        publicKey = ecKeyPair.getPublic();
+
+        JwtVerifier.VerifiedToken verified = verifier.verify(signEs256(accessToken(), ecKeyPair));
+
+        assertEquals("248289761001", verified.claims().getSubject());
+    }
+
+    @Test
+    public void shouldVerifyEs256TokenWithRealmKeyParsedByKeycloak() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(new ECGenParameterSpec("secp256r1"));
+        KeyPair ecKeyPair = generator.generateKeyPair();
+        // Keycloak parses the EC keys published by the realm as BouncyCastle keys
+        CryptoIntegration.init(getClass().getClassLoader());
+        String jwk = JsonSerialization.writeValueAsString(JWKBuilder.create().kid("key-1").algorithm("ES256").ec(ecKeyPair.getPublic()));
+        publicKey = JWKParser.create().parse(jwk).toPublicKey();
+        assertEquals("ECDSA", publicKey.getAlgorithm());
+
+        JwtVerifier.VerifiedToken verified = verifier.verify(signEs256(accessToken(), ecKeyPair));
+
+        assertEquals("248289761001", verified.claims().getSubject());
+    }
+
+    @Test
+    public void shouldSetClientIdAndUsernameFromAuthorizedPartyAndPreferredUsername() throws Exception {
+        AccessToken token = accessToken();
+        token.setOtherClaims("client_id", "other-client");
+        token.setOtherClaims("username", "john");
+
+        JwtVerifier.VerifiedToken verified = verifier.verify(sign(token, Algorithm.RS256, rsaKeyPair));
+
+        JsonNode payload = new ObjectMapper().readTree(verified.payload());
+        assertEquals("gravitee-gateway", payload.get("client_id").asText());
+        assertEquals("jane", payload.get("username").asText());
+        assertEquals("value", payload.get("custom").asText());
+    }
+
+    @Test(expected = VerificationException.class)
+    public void shouldRejectTokenWithoutSubject() throws Exception {
+        verifier.verify(sign(accessToken().subject(null), Algorithm.RS256, rsaKeyPair));
+    }
+
+    @Test
+    public void shouldProjectClaims() throws Exception {
+        verifier = new JwtVerifier(kid -> publicKey, () -> REALM_URL, null, ClaimProjection.of(List.of("custom")));
+
+        JwtVerifier.VerifiedToken verified = verifier.verify(sign(accessToken(), Algorithm.RS256, rsaKeyPair));
+
+        JsonNode payload = new ObjectMapper().readTree(verified.payload());
+        assertEquals("value", payload.get("custom").asText());
+        assertEquals("gravitee-gateway", payload.get("client_id").asText());
+        assertEquals("jane", payload.get("username").asText());
+        assertNull(payload.get("iss"));
+        assertNull(payload.get("preferred_username"));
+    }
+
+    @Test(expected = VerificationException.class)
+    public void shouldRejectTamperedToken() throws Exception {
+        String token = sign(accessToken(), Algorithm.RS256, rsaKeyPair);
+        String[] parts = token.split("\\.");
+        String tampered = sign(accessToken().subject("someone-else"), Algorithm.RS256, rsaKeyPair).split("\\.")[1];
+
+        verifier.verify(parts[0] + "." + tampered + "." + parts[2]);
+    }
+
+    @Test(expected = VerificationException.class)
+    public void shouldRejectExpiredToken() throws Exception {
+        verifier.verify(sign(accessToken().exp(System.currentTimeMillis() / 1000 - 10), Algorithm.RS256, rsaKeyPair));
+    }
+
+    @Test(expected = VerificationException.class)
+    public void shouldRejectNotYetValidToken() throws Exception {
+        verifier.verify(sign(accessToken().nbf(System.currentTimeMillis() / 1000 + 60), Algorithm.RS256, rsaKeyPair));
+    }
+
+    @Test(expected = VerificationException.class)
+    public void shouldRejectTokenFromAnotherIssuer() throws Exception {
+        verifier.verify(sign(accessToken().issuer("http://localhost:8080/realms/other"), Algorithm.RS256, rsaKeyPair));
+    }
+
+    @Test(expected = VerificationException.class)
+    public void shouldRejectTokenForAnotherAudience() throws Exception {
+        verifier = new JwtVerifier(kid -> publicKey, () -> REALM_URL, "gravitee-gateway");
+
+        verifier.verify(sign(accessToken().audience("another-client"), Algorithm.RS256, rsaKeyPair));
+    }
+
+    @Test(expected = VerificationException.class)
+    public void shouldRejectUnknownKey() throws Exception {
+        publicKey = null;
+
+        verifier.verify(sign(accessToken(), Algorithm.RS256, rsaKeyPair));
+    }
+
+    @Test(expected = VerificationException.class)
+    public void shouldRejectMalformedToken() throws Exception {
+        verifier.verify("xxxx-xxxx-xxxx-xxxx");
+    }
+
+    private static AccessToken accessToken() {
+        AccessToken token = new AccessToken();
+        token.issuer(REALM_URL);
+        token.type("Bearer");
+        token.subject("248289761001");
+        token.issuedFor("gravitee-gateway");
+        token.audience("gravitee-gateway");
+        token.setPreferredUsername("jane");
+        token.setOtherClaims("custom", "value");
+        token.iat(System.currentTimeMillis() / 1000);
+        token.exp(System.currentTimeMillis() / 1000 + 300);
+        return token;
+    }
+
+    private static String sign(JsonWebToken token, Algorithm algorithm, KeyPair keyPair) {
+        return new JWSBuilder().kid("key-1").type("JWT").jsonContent(token).sign(algorithm, keyPair.getPrivate());
+    }
+
+    private static String signEs256(JsonWebToken token, KeyPair keyPair) throws Exception {
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        String header = encoder.encodeToString("{\"alg\":\"ES256\",\"typ\":\"JWT\",\"kid\":\"key-1\"}".getBytes(StandardCharsets.UTF_8));
+        String content = header + "." + encoder.encodeToString(JsonSerialization.writeValueAsBytes(token));
+        Signature signature = Signature.getInstance("SHA256withECDSAinP1363Format");
+        signature.initSign(keyPair.getPrivate());
+        signature.update(content.getBytes(StandardCharsets.US_ASCII));
+        return content + "." + encoder.encodeToString(signature.sign());
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.resource.oauth2.keycloak.load;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The reports of reference, per scenario, and the comparison of a run with them.
+ *
+ * A metric regresses when it is worse than its baseline by more than the tolerance (a ratio of the baseline) and by
+ * more than an absolute slack, so that near-zero baselines (heap growth, event loop lag, error ratio) do not fail on
+ * noise. Calls whose handler is never called are always a regression.
+ *
+ * @author GraviteeSource Team
+ */
+final class Baselines {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    private static final double LATENCY_SLACK_MS = 2;
+    private static final double ERROR_RATIO_SLACK = 0.005;
+    private static final double HEAP_GROWTH_SLACK_MB = 32;
+    private static final double EVENT_LOOP_LAG_SLACK_MS = 20;
+
+    private Baselines() {}
+
+    static Map<String, LoadReport> read(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return new LinkedHashMap<>();
+        }
+        return MAPPER.readValue(path.toFile(), new TypeReference<LinkedHashMap<String, LoadReport>>() {});
+    }
+
+    static void write(Path path, Map<String, LoadReport> reports) throws IOException {
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        MAPPER.writeValue(path.toFile(), reports);
+    }
+
+    static List<String> regressions(LoadReport measured, LoadReport baseline, double tolerance) {
+        final List<String> regressions = new ArrayList<>();
+        if (measured.lostCalls() > 0) {
+            regressions.add(measured.lostCalls() + " calls never completed");
+        }
+        if (measured.throughput() < baseline.throughput() * (1 - tolerance)) {
+            regressions.add(String.format("throughput %.0f ops/s, baseline %.0f ops/s", measured.throughput(), baseline.throughput()));
+        }
+        check(regressions, "p99", measured.p99Ms(), baseline.p99Ms(), tolerance, LATENCY_SLACK_MS);
+        check(regressions, "p99.9", measured.p999Ms(), baseline.p999Ms(), tolerance, LATENCY_SLACK_MS);
+        check(regressions, "error ratio", measured.errorRatio(), baseline.errorRatio(), tolerance, ERROR_RATIO_SLACK);
+        check(regressions, "peak connections", measured.peakConnections(), baseline.peakConnections(), tolerance, 0);
+        check(regressions, "heap growth (MB)", measured.heapGrowthMb(), baseline.heapGrowthMb(), tolerance, HEAP_GROWTH_SLACK_MB);
+        check(regressions, "event loop lag (ms)", measured.maxEventLoopLagMs(), baseline.maxEventLoopLagMs(), tolerance, EVENT_LOOP_LAG_SLACK_MS);
+        return regressions;
+    }
+
+    /**
+     * Checks a metric for which lower is better.
+     */
+    private static void check(List<String> regressions, String metric, double measured, double baseline, double tolerance, double slack) {
+        final double limit = Math.max(baseline * (1 + tolerance), baseline + slack);
+        if (measured > limit) {
+            regressions.add(String.format("%s %.3f, baseline %.3f (limit %.3f)", metric, measured, baseline, limit));
+        }
+    }
+}
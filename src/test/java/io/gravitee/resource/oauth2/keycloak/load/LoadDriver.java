@@ -0,0 +1,242 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.resource.oauth2.keycloak.load;
+
+import io.gravitee.resource.oauth2.keycloak.OAuth2KeycloakResource;
+import io.gravitee.resource.oauth2.keycloak.configuration.OAuth2KeycloakResourceConfiguration;
+import io.gravitee.resource.oauth2.keycloak.stub.KeycloakStub;
+import io.gravitee.resource.oauth2.keycloak.stub.ResourceFactory;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs a {@link LoadScenario}: a closed loop of concurrent calls issued from the event loops of a Vert.x instance, as
+ * the gateway does, against a {@link KeycloakStub} running on its own Vert.x instance so that the realm does not
+ * compete for the measured event loops.
+ *
+ * Nothing is measured during the warm-up. Then every call started during the run is recorded, along with the
+ * delays of a periodic timer on each event loop (an event loop blocked by the resource delays its timer), the
+ * connections opened to the realm, and the used heap after a full GC at both ends of the run.
+ *
+ * @author GraviteeSource Team
+ */
+final class LoadDriver {
+
+    private static final long LAG_PROBE_INTERVAL_MS = 10;
+    private static final long DRAIN_TIMEOUT_MS = 30_000;
+    private static final double MB = 1024 * 1024;
+
+    private final int concurrency;
+    private final Duration warmup;
+    private final Duration duration;
+
+    LoadDriver(int concurrency, Duration warmup, Duration duration) {
+        this.concurrency = concurrency;
+        this.warmup = warmup;
+        this.duration = duration;
+    }
+
+    LoadReport run(LoadScenario scenario) throws Exception {
+        final Vertx keycloakVertx = Vertx.vertx();
+        final Vertx vertx = Vertx.vertx();
+        OAuth2KeycloakResource resource = null;
+        try {
+            final KeycloakStub keycloak = new KeycloakStub(keycloakVertx);
+            await(keycloak.start());
+            scenario.keycloak().accept(keycloak);
+
+            final OAuth2KeycloakResourceConfiguration configuration = new OAuth2KeycloakResourceConfiguration();
+            configuration.setKeycloakConfiguration(keycloak.adapterConfiguration());
+            scenario.configuration().accept(configuration);
+            resource = ResourceFactory.start(vertx, configuration);
+
+            return new Run(scenario, vertx, keycloakVertx, keycloak, resource).execute();
+        } finally {
+            if (resource != null) {
+                resource.stop();
+            }
+            await(vertx.close());
+            await(keycloakVertx.close());
+        }
+    }
+
+    private static <T> T await(Future<T> future) throws Exception {
+        return future.toCompletionStage().toCompletableFuture().get(30, TimeUnit.SECONDS);
+    }
+
+    private class Run {
+
+        private final LoadScenario scenario;
+        private final Vertx vertx;
+        private final Vertx keycloakVertx;
+        private final KeycloakStub keycloak;
+        private final OAuth2KeycloakResource resource;
+
+        private final LatencyHistogram latencies = new LatencyHistogram();
+        private final LatencyHistogram eventLoopLags = new LatencyHistogram();
+        private final LongAdder failures = new LongAdder();
+        private final AtomicInteger activeWorkers = new AtomicInteger();
+
+        private volatile String[] tokens;
+        private volatile boolean recording;
+        private volatile boolean stopping;
+
+        private Run(LoadScenario scenario, Vertx vertx, Vertx keycloakVertx, KeycloakStub keycloak, OAuth2KeycloakResource resource) {
+            this.scenario = scenario;
+            this.vertx = vertx;
+            this.keycloakVertx = keycloakVertx;
+            this.keycloak = keycloak;
+            this.resource = resource;
+        }
+
+        private LoadReport execute() throws Exception {
+            tokens = keycloak.rs256Tokens(concurrency);
+
+            final Context[] contexts = new Context[VertxOptions.DEFAULT_EVENT_LOOP_POOL_SIZE];
+            for (int i = 0; i < contexts.length; i++) {
+                // Outside of Vert.x threads, each call creates a context on the next event loop
+                contexts[i] = vertx.getOrCreateContext();
+                contexts[i].runOnContext(v -> probeEventLoopLag());
+            }
+
+            long rotationTimerId = -1;
+            if (!scenario.keyRotationInterval().isZero()) {
+                rotationTimerId =
+                    keycloakVertx.setPeriodic(
+                        scenario.keyRotationInterval().toMillis(),
+                        timerId ->
+                            keycloakVertx.executeBlocking(() -> {
+                                keycloak.rotateKeys();
+                                tokens = keycloak.rs256Tokens(concurrency);
+                                return null;
+                            })
+                    );
+            }
+
+            activeWorkers.set(concurrency);
+            for (int i = 0; i < concurrency; i++) {
+                final Context context = contexts[i % contexts.length];
+                final int worker = i;
+                context.runOnContext(v -> call(context, worker));
+            }
+
+            Thread.sleep(warmup.toMillis());
+            final long heapBefore = usedHeapAfterGc();
+            keycloak.resetPeakConnections();
+            recording = true;
+            final long start = System.nanoTime();
+
+            Thread.sleep(duration.toMillis());
+            recording = false;
+            final double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+            stopping = true;
+
+            final long drainDeadline = System.currentTimeMillis() + DRAIN_TIMEOUT_MS;
+            while (activeWorkers.get() > 0 && System.currentTimeMillis() < drainDeadline) {
+                Thread.sleep(10);
+            }
+            if (rotationTimerId != -1) {
+                keycloakVertx.cancelTimer(rotationTimerId);
+            }
+            final long heapAfter = usedHeapAfterGc();
+
+            final long calls = latencies.count();
+            return new LoadReport(
+                scenario.name(),
+                calls,
+                calls / elapsedSeconds,
+                latencies.percentile(50) / 1000.0,
+                latencies.percentile(99) / 1000.0,
+                latencies.percentile(99.9) / 1000.0,
+                latencies.max() / 1000.0,
+                calls == 0 ? 0 : failures.doubleValue() / calls,
+                keycloak.peakConnections(),
+                (heapAfter - heapBefore) / MB,
+                eventLoopLags.max() / 1000.0,
+                activeWorkers.get()
+            );
+        }
+
+        private void call(Context context, int worker) {
+            if (stopping) {
+                activeWorkers.decrementAndGet();
+                return;
+            }
+
+            final String[] currentTokens = tokens;
+            final boolean measured = recording;
+            final long start = System.nanoTime();
+            try {
+                scenario
+                    .operation()
+                    .call(
+                        resource,
+                        currentTokens[worker % currentTokens.length],
+                        success -> {
+                            if (measured) {
+                                record(start, success);
+                            }
+                            // Do not recurse when the resource answers synchronously
+                            context.runOnContext(v -> call(context, worker));
+                        }
+                    );
+            } catch (RuntimeException re) {
+                if (measured) {
+                    record(start, false);
+                }
+                context.runOnContext(v -> call(context, worker));
+            }
+        }
+
+        private void record(long start, boolean success) {
+            latencies.record((System.nanoTime() - start) / 1000);
+            if (!success) {
+                failures.increment();
+            }
+        }
+
+        private void probeEventLoopLag() {
+            final long[] last = { System.nanoTime() };
+            vertx.setPeriodic(
+                LAG_PROBE_INTERVAL_MS,
+                timerId -> {
+                    final long now = System.nanoTime();
+                    if (recording) {
+                        eventLoopLags.record((now - last[0]) / 1000 - TimeUnit.MILLISECONDS.toMicros(LAG_PROBE_INTERVAL_MS));
+                    }
+                    last[0] = now;
+                }
+            );
+        }
+    }
+
+    private static long usedHeapAfterGc() throws InterruptedException {
+        final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(200);
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.resource.oauth2.keycloak.load;
+
+/**
+ * What has been measured during a scenario, once warmed up. Latencies are in milliseconds.
+ *
+ * @param errorRatio the ratio of calls that did not succeed, whatever the reason.
+ * @param peakConnections the highest number of connections simultaneously opened to the realm.
+ * @param heapGrowthMb the growth of the used heap, after a full GC, between the beginning and the end of the run.
+ * @param maxEventLoopLagMs the longest delay of a periodic timer on the event loops running the calls: how long an
+ *                          event loop has been blocked.
+ * @param lostCalls the calls whose handler has never been called.
+ * @author GraviteeSource Team
+ */
+record LoadReport(
+    String scenario,
+    long calls,
+    double throughput,
+    double p50Ms,
+    double p99Ms,
+    double p999Ms,
+    double maxMs,
+    double errorRatio,
+    int peakConnections,
+    double heapGrowthMb,
+    double maxEventLoopLagMs,
+    long lostCalls
+) {
+    @Override
+    public String toString() {
+        return String.format(
+            "%-22s %,10d calls %,10.0f ops/s  p50 %7.2f ms  p99 %7.2f ms  p99.9 %7.2f ms  max %8.2f ms  errors %6.2f%%  " +
+            "connections %4d  heap %+7.1f MB  event loop lag %6.1f ms  lost %d",
+            scenario,
+            calls,
+            throughput,
+            p50Ms,
+            p99Ms,
+            p999Ms,
+            maxMs,
+            errorRatio * 100,
+            peakConnections,
+            heapGrowthMb,
+            maxEventLoopLagMs,
+            lostCalls
+        );
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.resource.oauth2.keycloak.load;
+
+import io.gravitee.resource.oauth2.keycloak.OAuth2KeycloakResource;
+import io.gravitee.resource.oauth2.keycloak.configuration.OAuth2KeycloakResourceConfiguration;
+import io.gravitee.resource.oauth2.keycloak.stub.KeycloakStub;
+import io.vertx.core.Handler;
+import java.time.Duration;
+import java.util.function.Consumer;
+
+/**
+ * A load scenario: how the resource is configured, how the realm behaves, and which resource operation is called,
+ * each call in flight using its own token so that calls are not coalesced.
+ *
+ * @param keyRotationInterval the interval between two rotations of the realm key, or {@link Duration#ZERO} not to
+ *                            rotate it.
+ * @author GraviteeSource Team
+ */
+record LoadScenario(
+    String name,
+    Operation operation,
+    Consumer<OAuth2KeycloakResourceConfiguration> configuration,
+    Consumer<KeycloakStub> keycloak,
+    Duration keyRotationInterval
+) {
+    enum Operation {
+        INTROSPECT {
+            @Override
+            void call(OAuth2KeycloakResource resource, String token, Handler<Boolean> successHandler) {
+                resource.introspect(token, response -> successHandler.handle(response.isSuccess()));
+            }
+        },
+        USERINFO {
+            @Override
+            void call(OAuth2KeycloakResource resource, String token, Handler<Boolean> successHandler) {
+                resource.userInfo(token, response -> successHandler.handle(response.isSuccess()));
+            }
+        };
+
+        abstract void call(OAuth2KeycloakResource resource, String token, Handler<Boolean> successHandler);
+    }
+}
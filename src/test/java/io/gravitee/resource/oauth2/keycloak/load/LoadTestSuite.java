@@ -0,0 +1,137 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.resource.oauth2.keycloak.load;
+
+import static io.gravitee.resource.oauth2.keycloak.load.LoadScenario.Operation.INTROSPECT;
+import static io.gravitee.resource.oauth2.keycloak.load.LoadScenario.Operation.USERINFO;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Load and soak tests of the resource against a misbehaving in-process realm: thousands of concurrent calls, each
+ * scenario reporting throughput, latency percentiles, errors, connections opened to the realm, heap growth and event
+ * loop blocking, and failing on regressions against the stored baselines.
+ *
+ * <code>mvn test-compile exec:exec -Pload [-Dload.args="duration=4h concurrency=4000 ..."]</code>, with the
+ * arguments:
+ * <ul>
+ *     <li><code>duration</code> of each scenario, <code>30s</code> by default: hours for a soak test</li>
+ *     <li><code>warmup</code> before measuring, <code>10s</code> by default</li>
+ *     <li><code>concurrency</code>, the number of calls in flight, <code>2000</code> by default</li>
+ *     <li><code>scenarios</code>, a comma-separated list of scenarios to run, all by default</li>
+ *     <li><code>tolerance</code>, the ratio by which a metric may be worse than its baseline, <code>0.3</code> by default</li>
+ *     <li><code>baselines</code>, the baselines file, <code>src/test/resources/load/baselines.json</code> by default</li>
+ *     <li><code>record</code>, <code>true</code> to store the results as the new baselines instead of comparing</li>
+ * </ul>
+ * Baselines depend on the machine: record them on the machine that runs the comparison.
+ *
+ * @author GraviteeSource Team
+ */
+public final class LoadTestSuite {
+
+    private static final List<LoadScenario> SCENARIOS = List.of(
+        new LoadScenario(
+            "remote-introspection",
+            INTROSPECT,
+            configuration -> {},
+            keycloak -> keycloak.latency(Duration.ofMillis(2)).errorRate(0.005).slowResponses(0.001, Duration.ofMillis(250)),
+            Duration.ZERO
+        ),
+        new LoadScenario(
+            "userinfo",
+            USERINFO,
+            configuration -> {},
+            keycloak -> keycloak.latency(Duration.ofMillis(2)).errorRate(0.005).slowResponses(0.001, Duration.ofMillis(250)),
+            Duration.ZERO
+        ),
+        // Rotations are spaced beyond the adapter min-time-between-jwks-requests (10s): no token may be rejected
+        new LoadScenario(
+            "local-key-rotation",
+            INTROSPECT,
+            configuration -> configuration.setValidateTokenLocally(true),
+            keycloak -> keycloak.latency(Duration.ofMillis(2)),
+            Duration.ofSeconds(20)
+        )
+    );
+
+    private LoadTestSuite() {}
+
+    public static void main(String[] args) throws Exception {
+        final Map<String, String> arguments = new HashMap<>();
+        for (String arg : args) {
+            final int separator = arg.indexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Arguments are expected as name=value: " + arg);
+            }
+            arguments.put(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+
+        final Duration duration = duration(arguments.getOrDefault("duration", "30s"));
+        final Duration warmup = duration(arguments.getOrDefault("warmup", "10s"));
+        final int concurrency = Integer.parseInt(arguments.getOrDefault("concurrency", "2000"));
+        final double tolerance = Double.parseDouble(arguments.getOrDefault("tolerance", "0.3"));
+        final Path baselinesPath = Path.of(arguments.getOrDefault("baselines", "src/test/resources/load/baselines.json"));
+        final boolean record = Boolean.parseBoolean(arguments.getOrDefault("record", "false"));
+        final Set<String> selected = arguments.containsKey("scenarios") ? Set.of(arguments.get("scenarios").split(",")) : null;
+
+        final LoadDriver driver = new LoadDriver(concurrency, warmup, duration);
+        final Map<String, LoadReport> baselines = Baselines.read(baselinesPath);
+        final Map<String, LoadReport> reports = new LinkedHashMap<>();
+        int regressions = 0;
+
+        for (LoadScenario scenario : SCENARIOS) {
+            if (selected != null && !selected.contains(scenario.name())) {
+                continue;
+            }
+            final LoadReport report = driver.run(scenario);
+            reports.put(scenario.name(), report);
+            System.out.println(report);
+
+            final LoadReport baseline = baselines.get(scenario.name());
+            if (record) {
+                baselines.put(scenario.name(), report);
+            } else if (baseline == null) {
+                System.out.println("  no baseline for " + scenario.name());
+            } else {
+                for (String regression : Baselines.regressions(report, baseline, tolerance)) {
+                    System.out.println("  REGRESSION " + regression);
+                    regressions++;
+                }
+            }
+        }
+
+        Baselines.write(Path.of("target", "load", "report.json"), reports);
+        if (record) {
+            Baselines.write(baselinesPath, baselines);
+            System.out.println("Baselines recorded in " + baselinesPath);
+        }
+        if (regressions > 0) {
+            System.out.println(regressions + " regression(s)");
+        }
+        System.exit(regressions > 0 ? 1 : 0);
+    }
+
+    private static Duration duration(String value) {
+        return Duration.parse("PT" + value.toUpperCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.resource.oauth2.keycloak.revocation;
+
+import static org.junit.Assert.*;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.junit.Test;
+
+/**
+ * @author GraviteeSource Team
+ */
+public class RevocationListTest {
+
+    private static final long NOW = System.currentTimeMillis() / 1000;
+
+    private final RevocationList revocations = new RevocationList("gravitee", 60_000);
+
+    @Test
+    public void shouldNotRevokeAnythingInitially() {
+        assertTrue(revocations.isEmpty());
+        assertFalse(revocations.isRevoked(new TokenIdentity("session-1", NOW)));
+    }
+
+    @Test
+    public void shouldRevokeTokensIssuedBeforeNotBefore() {
+        assertTrue(revocations.apply(new JsonObject().put("action", "PUSH_NOT_BEFORE").put("notBefore", NOW)));
+
+        assertFalse(revocations.isEmpty());
+        assertTrue(revocations.isRevoked(new TokenIdentity("session-1", NOW - 1)));
+        assertFalse(revocations.isRevoked(new TokenIdentity("session-1", NOW)));
+    }
+
+    @Test
+    public void shouldApplyNotBeforePushedToThisClientToEveryToken() {
+        // The resource is the client receiving the event, whatever the client the tokens were issued to
+        revocations.apply(new JsonObject().put("action", "PUSH_NOT_BEFORE").put("resource", "gateway").put("notBefore", NOW));
+
+        assertTrue(revocations.isRevoked(new TokenIdentity("session-1", NOW - 1)));
+        assertTrue(revocations.isRevoked(new TokenIdentity(null, NOW - 1)));
+    }
+
+    @Test
+    public void shouldNotMoveNotBeforeBackwards() {
+        revocations.apply(new JsonObject().put("action", "PUSH_NOT_BEFORE").put("notBefore", NOW));
+        revocations.apply(new JsonObject().put("action", "PUSH_NOT_BEFORE").put("notBefore", NOW - 60));
+
+        assertTrue(revocations.isRevoked(new TokenIdentity("session-1", NOW - 1)));
+    }
+
+    @Test
+    public void shouldRevokeTokensOfLoggedOutSessions() {
+        revocations.apply(new JsonObject().put("action", "LOGOUT").put("keycloakSessionIds", new JsonArray().add("session-1")));
+
+        assertTrue(revocations.isRevoked(new TokenIdentity("session-1", NOW)));
+        assertFalse(revocations.isRevoked(new TokenIdentity("session-2", NOW)));
+        assertFalse(revocations.isRevoked(new TokenIdentity(null, NOW)));
+    }
+
+    @Test
+    public void shouldRevokeTokensIssuedBeforeLogoutNotBefore() {
+        revocations.apply(
+            new JsonObject().put("action", "LOGOUT").put("keycloakSessionIds", new JsonArray().add("session-1")).put("notBefore", NOW)
+        );
+
+        assertTrue(revocations.isRevoked(new TokenIdentity("session-2", NOW - 1)));
+        assertFalse(revocations.isRevoked(new TokenIdentity("session-2", NOW)));
+    }
+
+    @Test
+    public void shouldRevokeTokensIssuedBeforeLogoutOfAllSessions() {
+        revocations.apply(new JsonObject().put("action", "LOGOUT").put("notBefore", NOW));
+
+        assertTrue(revocations.isRevoked(new TokenIdentity("session-1", NOW - 1)));
+    }
+
+    @Test
+    public void shouldIgnoreEventsOfAnotherRealm() {
+        assertFalse(revocations.apply(new JsonObject().put("action", "PUSH_NOT_BEFORE").put("realm", "other").put("notBefore", NOW)));
+
+        assertTrue(revocations.isEmpty());
+    }
+
+    @Test
+    public void shouldIgnoreUnknownActions() {
+        assertFalse(revocations.apply(new JsonObject().put("action", "TEST_AVAILABLE")));
+
+        assertTrue(revocations.isEmpty());
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.resource.oauth2.keycloak.shared;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+/**
+ * @author GraviteeSource Team
+ */
+public class SharedResourcesTest {
+
+    private final SharedResources sharedResources = new SharedResources();
+    private final AtomicInteger created = new AtomicInteger();
+    private final List<Object> disposed = new ArrayList<>();
+
+    @Test
+    public void shouldShareObjectBetweenLeasesOfSameKey() {
+        SharedResources.Lease<Object> first = acquire("key");
+        SharedResources.Lease<Object> second = acquire("key");
+
+        assertSame(first.get(), second.get());
+        assertEquals(1, created.get());
+        assertEquals(1, sharedResources.size());
+    }
+
+    @Test
+    public void shouldNotShareObjectBetweenKeys() {
+        SharedResources.Lease<Object> first = acquire("key");
+        SharedResources.Lease<Object> second = acquire("other-key");
+
+        assertNotSame(first.get(), second.get());
+        assertEquals(2, sharedResources.size());
+    }
+
+    @Test
+    public void shouldDisposeObjectWhenLastLeaseIsReleased() {
+        SharedResources.Lease<Object> first = acquire("key");
+        SharedResources.Lease<Object> second = acquire("key");
+
+        first.release();
+        assertTrue(disposed.isEmpty());
+
+        second.release();
+        assertEquals(List.of(second.get()), disposed);
+        assertEquals(0, sharedResources.size());
+    }
+
+    @Test
+    public void shouldIgnoreLeaseReleasedTwice() {
+        SharedResources.Lease<Object> first = acquire("key");
+        SharedResources.Lease<Object> second = acquire("key");
+
+        first.release();
+        first.release();
+
+        assertTrue(disposed.isEmpty());
+        second.release();
+        assertEquals(1, disposed.size());
+    }
+
+    @Test
+    public void shouldCreateNewObjectOnceDisposed() {
+        SharedResources.Lease<Object> first = acquire("key");
+        first.release();
+
+        SharedResources.Lease<Object> second = acquire("key");
+
+        assertNotSame(first.get(), second.get());
+        assertEquals(2, created.get());
+    }
+
+    @Test
+    public void shouldComputeSameKeyWhateverThePropertiesOrder() {
+        Map<String, Object> settings = new LinkedHashMap<>();
+        settings.put("realm", "gravitee");
+        settings.put("resource", "gateway");
+        Map<String, Object> reordered = new LinkedHashMap<>();
+        reordered.put("resource", "gateway");
+        reordered.put("realm", "gravitee");
+
+        assertEquals(SharedResources.key(settings, 10), SharedResources.key(reordered, 10));
+        assertNotEquals(SharedResources.key(settings, 10), SharedResources.key(settings, 20));
+    }
+
+    private SharedResources.Lease<Object> acquire(String key) {
+        return sharedResources.acquire(
+            key,
+            () -> {
+                created.incrementAndGet();
+                return new Object();
+            },
+            disposed::add
+        );
+    }
+}
@@ -0,0 +1,344 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.resource.oauth2.keycloak.stub;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpConnection;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.http.HttpServer;
+import io.vertx.core.http.HttpServerRequest;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.security.spec.ECGenParameterSpec;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.keycloak.jose.jwk.JSONWebKeySet;
+import org.keycloak.jose.jwk.JWK;
+import org.keycloak.jose.jwk.JWKBuilder;
+import org.keycloak.jose.jws.Algorithm;
+import org.keycloak.jose.jws.JWSBuilder;
+import org.keycloak.representations.AccessToken;
+import org.keycloak.util.JsonSerialization;
+
+/**
+ * An in-process stand-in for a Keycloak realm, served by a Vert.x HTTP server: OpenID discovery, realm keys,
+ * token introspection and userinfo endpoints. It also issues RS256 and ES256 access tokens of a realistic size
+ * (realm and client roles, groups, profile claims) signed with the published keys.
+ *
+ * For load tests, the realm can be made to misbehave: a latency added to every response, a ratio of introspection
+ * and userinfo calls answered with a server error, a ratio of slow responses, and the rotation of its RSA key (the
+ * previous key stays published, as Keycloak does with passive keys). It also counts the connections opened to it.
+ *
+ * @author GraviteeSource Team
+ */
+public class KeycloakStub {
+
+    public static final String REALM = "gravitee";
+    public static final String CLIENT_ID = "gravitee-gateway";
+
+    private static final String REALM_PATH = "/auth/realms/" + REALM;
+    private static final String ERROR_RESPONSE = "{\"error\":\"unknown_error\"}";
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+    private final Vertx vertx;
+    private final KeyPair ecKeyPair;
+    private final AtomicInteger openConnections = new AtomicInteger();
+    private final AtomicInteger peakConnections = new AtomicInteger();
+
+    private volatile KeyPair rsaKeyPair;
+    private volatile String rsaKid = "rsa-key";
+    private KeyPair previousRsaKeyPair;
+    private String previousRsaKid;
+    private int rotations;
+
+    private volatile long latencyMillis;
+    private volatile double errorRate;
+    private volatile double slowResponseRate;
+    private volatile long slowResponseMillis;
+
+    private HttpServer server;
+    private volatile String jwks;
+    private String introspectionResponse;
+    private String userInfoResponse;
+
+    public KeycloakStub(Vertx vertx) throws GeneralSecurityException {
+        this.vertx = vertx;
+
+        this.rsaKeyPair = generateRsaKeyPair();
+
+        KeyPairGenerator ecGenerator = KeyPairGenerator.getInstance("EC");
+        ecGenerator.initialize(new ECGenParameterSpec("secp256r1"));
+        this.ecKeyPair = ecGenerator.generateKeyPair();
+    }
+
+    public Future<Integer> start() throws Exception {
+        publishKeys();
+
+        server = vertx.createHttpServer().connectionHandler(this::track).requestHandler(this::handle);
+        return server.listen(0, "localhost").compose(listening -> vertx.executeBlocking(this::prepareResponses)).map(v -> server.actualPort());
+    }
+
+    /**
+     * Adds the given latency to every response.
+     */
+    public KeycloakStub latency(Duration latency) {
+        this.latencyMillis = latency.toMillis();
+        return this;
+    }
+
+    /**
+     * Answers the given ratio (between 0 and 1) of introspection and userinfo calls with a 500 status code.
+     */
+    public KeycloakStub errorRate(double errorRate) {
+        this.errorRate = errorRate;
+        return this;
+    }
+
+    /**
+     * Delays the given ratio (between 0 and 1) of introspection and userinfo responses by the given delay, on top of
+     * the latency.
+     */
+    public KeycloakStub slowResponses(double rate, Duration delay) {
+        this.slowResponseRate = rate;
+        this.slowResponseMillis = delay.toMillis();
+        return this;
+    }
+
+    /**
+     * Generates a new active RSA key: the tokens issued from now on are signed with it, and the previous key is still
+     * published. Generating a key is slow, do not call it from an event loop.
+     */
+    public void rotateKeys() throws Exception {
+        final KeyPair keyPair = generateRsaKeyPair();
+        synchronized (this) {
+            previousRsaKeyPair = rsaKeyPair;
+            previousRsaKid = rsaKid;
+            rsaKeyPair = keyPair;
+            rsaKid = "rsa-key-" + (++rotations);
+            publishKeys();
+        }
+    }
+
+    /**
+     * The number of connections currently opened to the realm.
+     */
+    public int openConnections() {
+        return openConnections.get();
+    }
+
+    /**
+     * The highest number of connections simultaneously opened to the realm since the last reset.
+     */
+    public int peakConnections() {
+        return peakConnections.get();
+    }
+
+    public void resetPeakConnections() {
+        peakConnections.set(openConnections.get());
+    }
+
+    public Future<Void> stop() {
+        return server == null ? Future.succeededFuture() : server.close();
+    }
+
+    /**
+     * The configuration of the Keycloak adapter of a resource using this realm.
+     */
+    public String adapterConfiguration() {
+        return (
+            "{\"realm\": \"" +
+            REALM +
+            "\", \"auth-server-url\": \"http://localhost:" +
+            server.actualPort() +
+            "/auth\", \"ssl-required\": \"none\", \"resource\": \"" +
+            CLIENT_ID +
+            "\", \"credentials\": {\"secret\": \"secret\"}}"
+        );
+    }
+
+    public String rs256Token() throws Exception {
+        // Read the kid and key pair together, a rotation may be in progress
+        final String kid;
+        final KeyPair keyPair;
+        synchronized (this) {
+            kid = rsaKid;
+            keyPair = rsaKeyPair;
+        }
+        return new JWSBuilder().kid(kid).type("JWT").jsonContent(accessToken()).sign(Algorithm.RS256, keyPair.getPrivate());
+    }
+
+    /**
+     * Issues the given number of distinct RS256 access tokens, signed with the active key.
+     */
+    public String[] rs256Tokens(int count) throws Exception {
+        String[] tokens = new String[count];
+        for (int i = 0; i < count; i++) {
+            tokens[i] = rs256Token();
+        }
+        return tokens;
+    }
+
+    public String es256Token() throws Exception {
+        String header = ENCODER.encodeToString("{\"alg\":\"ES256\",\"typ\":\"JWT\",\"kid\":\"ec-key\"}".getBytes(StandardCharsets.UTF_8));
+        String content = header + "." + ENCODER.encodeToString(JsonSerialization.writeValueAsBytes(accessToken()));
+        Signature signature = Signature.getInstance("SHA256withECDSAinP1363Format");
+        signature.initSign(ecKeyPair.getPrivate());
+        signature.update(content.getBytes(StandardCharsets.US_ASCII));
+        return content + "." + ENCODER.encodeToString(signature.sign());
+    }
+
+    private AccessToken accessToken() throws Exception {
+        final long now = System.currentTimeMillis() / 1000;
+        AccessToken token = new AccessToken();
+        token.id(java.util.UUID.randomUUID().toString());
+        token.issuer(realmUrl());
+        token.type("Bearer");
+        token.subject("f4c2d2a4-2b5e-4f5e-9d8b-6c0b2f3a9e11");
+        token.issuedFor(CLIENT_ID);
+        token.audience(CLIENT_ID, "account");
+        token.iat(now);
+        token.exp(now + 3600);
+        token.setSessionState(java.util.UUID.randomUUID().toString());
+        token.setScope("openid profile email");
+        token.setPreferredUsername("jane.doe");
+        token.setName("Jane Doe");
+        token.setGivenName("Jane");
+        token.setFamilyName("Doe");
+        token.setEmail("jane.doe@gravitee.io");
+        token.setEmailVerified(true);
+
+        AccessToken.Access realmAccess = new AccessToken.Access();
+        for (int i = 0; i < 10; i++) {
+            realmAccess.addRole("realm-role-" + i);
+        }
+        token.setRealmAccess(realmAccess);
+        for (String client : List.of(CLIENT_ID, "account", "billing")) {
+            AccessToken.Access access = token.addAccess(client);
+            for (int i = 0; i < 5; i++) {
+                access.addRole(client + "-role-" + i);
+            }
+        }
+
+        List<String> groups = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            groups.add("/organization/team-" + i);
+        }
+        token.setOtherClaims("groups", groups);
+
+        return token;
+    }
+
+    private static KeyPair generateRsaKeyPair() throws GeneralSecurityException {
+        KeyPairGenerator rsaGenerator = KeyPairGenerator.getInstance("RSA");
+        rsaGenerator.initialize(2048);
+        return rsaGenerator.generateKeyPair();
+    }
+
+    private void publishKeys() throws Exception {
+        List<JWK> keys = new ArrayList<>(3);
+        keys.add(JWKBuilder.create().kid(rsaKid).algorithm(Algorithm.RS256.name()).rsa(rsaKeyPair.getPublic()));
+        if (previousRsaKeyPair != null) {
+            keys.add(JWKBuilder.create().kid(previousRsaKid).algorithm(Algorithm.RS256.name()).rsa(previousRsaKeyPair.getPublic()));
+        }
+        keys.add(JWKBuilder.create().kid("ec-key").algorithm(Algorithm.ES256.name()).ec(ecKeyPair.getPublic()));
+
+        JSONWebKeySet keySet = new JSONWebKeySet();
+        keySet.setKeys(keys.toArray(new JWK[0]));
+        jwks = JsonSerialization.writeValueAsString(keySet);
+    }
+
+    private void track(HttpConnection connection) {
+        peakConnections.accumulateAndGet(openConnections.incrementAndGet(), Math::max);
+        connection.closeHandler(v -> openConnections.decrementAndGet());
+    }
+
+    private Void prepareResponses() throws Exception {
+        // Keycloak answers with the token claims, plus the active flag
+        ObjectNode payload = JsonSerialization.createObjectNode(accessToken());
+        payload.put("client_id", CLIENT_ID);
+        payload.put("username", "jane.doe");
+        payload.put("active", true);
+        introspectionResponse = JsonSerialization.writeValueAsString(payload);
+        userInfoResponse =
+            "{\"sub\":\"f4c2d2a4-2b5e-4f5e-9d8b-6c0b2f3a9e11\",\"email_verified\":true,\"name\":\"Jane Doe\"," +
+            "\"preferred_username\":\"jane.doe\",\"given_name\":\"Jane\",\"family_name\":\"Doe\",\"email\":\"jane.doe@gravitee.io\"}";
+        return null;
+    }
+
+    private String realmUrl() {
+        return "http://localhost:" + server.actualPort() + REALM_PATH;
+    }
+
+    private void handle(HttpServerRequest request) {
+        final String path = request.path();
+        if (path.equals(REALM_PATH + "/.well-known/openid-configuration")) {
+            final String realmUrl = realmUrl();
+            respond(
+                request,
+                "{\"issuer\":\"" +
+                realmUrl +
+                "\",\"authorization_endpoint\":\"" +
+                realmUrl +
+                "/protocol/openid-connect/auth\",\"token_endpoint\":\"" +
+                realmUrl +
+                "/protocol/openid-connect/token\",\"end_session_endpoint\":\"" +
+                realmUrl +
+                "/protocol/openid-connect/logout\",\"jwks_uri\":\"" +
+                realmUrl +
+                "/protocol/openid-connect/certs\"}"
+            );
+        } else if (path.equals(REALM_PATH + "/protocol/openid-connect/certs")) {
+            respond(request, jwks);
+        } else if (path.equals(REALM_PATH + "/protocol/openid-connect/token/introspect")) {
+            request.body().onSuccess(body -> respondOrFail(request, introspectionResponse));
+        } else if (path.equals(REALM_PATH + "/protocol/openid-connect/userinfo")) {
+            respondOrFail(request, userInfoResponse);
+        } else {
+            request.response().setStatusCode(404).end();
+        }
+    }
+
+    private void respondOrFail(HttpServerRequest request, String body) {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final long delay = latencyMillis + (slowResponseRate > 0 && random.nextDouble() < slowResponseRate ? slowResponseMillis : 0);
+        if (errorRate > 0 && random.nextDouble() < errorRate) {
+            delay(delay, () -> request.response().setStatusCode(500).putHeader(HttpHeaders.CONTENT_TYPE, "application/json").end(ERROR_RESPONSE));
+        } else {
+            delay(delay, () -> request.response().putHeader(HttpHeaders.CONTENT_TYPE, "application/json").end(body));
+        }
+    }
+
+    private void respond(HttpServerRequest request, String body) {
+        delay(latencyMillis, () -> request.response().putHeader(HttpHeaders.CONTENT_TYPE, "application/json").end(body));
+    }
+
+    private void delay(long delay, Runnable response) {
+        if (delay > 0) {
+            vertx.setTimer(delay, timerId -> response.run());
+        } else {
+            response.run();
+        }
+    }
+}
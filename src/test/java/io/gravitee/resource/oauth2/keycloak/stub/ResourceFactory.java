@@ -0,0 +1,51 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.resource.oauth2.keycloak.stub;
+
+import static org.mockito.Mockito.mock;
+
+import io.gravitee.node.api.Node;
+import io.gravitee.resource.api.AbstractConfigurableResource;
+import io.gravitee.resource.oauth2.keycloak.OAuth2KeycloakResource;
+import io.gravitee.resource.oauth2.keycloak.configuration.OAuth2KeycloakResourceConfiguration;
+import io.vertx.core.Vertx;
+import java.lang.reflect.Field;
+import org.springframework.context.support.StaticApplicationContext;
+
+/**
+ * Creates and starts resources the way the gateway does, outside of any mocking, for benchmarks and load tests.
+ *
+ * @author GraviteeSource Team
+ */
+public final class ResourceFactory {
+
+    private ResourceFactory() {}
+
+    public static OAuth2KeycloakResource start(Vertx vertx, OAuth2KeycloakResourceConfiguration configuration) throws Exception {
+        StaticApplicationContext applicationContext = new StaticApplicationContext();
+        applicationContext.getBeanFactory().registerSingleton("vertx", vertx);
+        applicationContext.getBeanFactory().registerSingleton("node", mock(Node.class));
+        applicationContext.refresh();
+
+        OAuth2KeycloakResource resource = new OAuth2KeycloakResource();
+        Field configurationField = AbstractConfigurableResource.class.getDeclaredField("configuration");
+        configurationField.setAccessible(true);
+        configurationField.set(resource, configuration);
+        resource.setApplicationContext(applicationContext);
+        resource.start();
+        return resource;
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.resource.oauth2.keycloak.tracing;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * @author GraviteeSource Team
+ */
+public class TraceParentTest {
+
+    private static final String TRACEPARENT = "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01";
+
+    @Test
+    public void shouldParseTraceParent() {
+        TraceParent traceParent = TraceParent.parse(TRACEPARENT);
+
+        assertEquals("4bf92f3577b34da6a3ce929d0e0e4736", traceParent.traceId());
+        assertEquals("00f067aa0ba902b7", traceParent.spanId());
+        assertTrue(traceParent.sampled());
+        assertEquals(TRACEPARENT, traceParent.header());
+    }
+
+    @Test
+    public void shouldParseNotSampledTraceParent() {
+        assertFalse(TraceParent.parse("00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-00").sampled());
+    }
+
+    @Test
+    public void shouldRejectInvalidTraceParents() {
+        assertNull(TraceParent.parse(null));
+        assertNull(TraceParent.parse(""));
+        assertNull(TraceParent.parse("01-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01"));
+        assertNull(TraceParent.parse("00-4BF92F3577B34DA6A3CE929D0E0E4736-00f067aa0ba902b7-01"));
+        assertNull(TraceParent.parse("00-00000000000000000000000000000000-00f067aa0ba902b7-01"));
+        assertNull(TraceParent.parse("00-4bf92f3577b34da6a3ce929d0e0e4736-0000000000000000-01"));
+        assertNull(TraceParent.parse("00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01-extra"));
+        assertNull(TraceParent.parse("00_4bf92f3577b34da6a3ce929d0e0e4736_00f067aa0ba902b7_01"));
+    }
+
+    @Test
+    public void shouldGenerateValidIdentifiers() {
+        TraceParent traceParent = new TraceParent(TraceParent.newTraceId(), TraceParent.newSpanId(), true);
+
+        assertEquals(traceParent, TraceParent.parse(traceParent.header()));
+    }
+}